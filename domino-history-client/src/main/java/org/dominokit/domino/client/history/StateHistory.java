@@ -20,6 +20,7 @@ import static java.util.Objects.nonNull;
 
 import elemental2.core.JsMap;
 import elemental2.dom.*;
+import elemental2.dom.EventListener;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,11 +32,48 @@ public class StateHistory implements AppHistory {
 
   private static final Logger LOGGER = Logger.getLogger(StateHistory.class.getName());
 
-  private Set<HistoryListener> listeners = new HashSet<>();
+  /**
+   * The history instances created by this compiled module, navigations are handed to them directly
+   * instead of through the <b>domino-history-event</b> custom event. The array is replaced, never
+   * modified, when an instance is added or disposed so navigations iterate it without copying.
+   */
+  private static StateHistory[] pageInstances = new StateHistory[0];
+
+  private static final EventListener MODULE_EVENT_LISTENER = StateHistory::onModuleEvent;
+
+  /**
+   * Identifies the custom events dispatched by this compiled module so its instances ignore them,
+   * the custom event is always dispatched since apps compiled separately on the same page,
+   * including ones built with released versions of the history, can only be informed through it.
+   */
+  private static final String ORIGIN_ID =
+      Double.toString(Math.random()).substring(2) + "-" + System.currentTimeMillis();
+
+  /**
+   * The current location token and browser state shared by the page instances, read lazily from the
+   * window and kept until the next navigation of an instance, popstate, hashchange or a navigation
+   * of another app on the page. They are only trusted while the window location href is still the
+   * one they were read for, so a location changed by code outside the history is read again.
+   */
+  private static String locationToken;
+
+  private static String locationHref;
+
+  private static JsState locationState;
+  private static boolean locationStateRead;
+
+  private final ListenerRegistry<HistoryListener> listeners =
+      new ListenerRegistry<>(new HistoryListener[0]);
   private final History history = Js.cast(DomGlobal.self.history);
   private String rootPath;
 
-  private final List<HistoryInterceptor> interceptors = new ArrayList<>();
+  private final InterceptorRegistry interceptors = new InterceptorRegistry();
+  private final DispatchPlanCache<HistoryListener> dispatchPlans = new DispatchPlanCache<>();
+  private final NavigationBatch<Void> batch = new NavigationBatch<>();
+  private String locationTokenValue;
+  private String locationTokenValueOf;
+  private final EventListener popStateListener = this::onPopState;
+  private final EventListener hashChangeListener = event -> locationChanged();
 
   /** Default constructor */
   public StateHistory() {
@@ -45,80 +83,173 @@ public class StateHistory implements AppHistory {
   /** Default constructor */
   public StateHistory(String rootPath) {
     setRootPath(rootPath);
-    DomGlobal.self.addEventListener(
-        "popstate",
-        event -> {
-          if (isInformOnPopState()) {
-            PopStateEvent popStateEvent = Js.cast(event);
-            JsState state = Js.cast(popStateEvent.state);
-            if (nonNull(state) && nonNull(state.historyToken)) {
-              inform(
-                  new EffectiveToken(
-                      "", StateToken.of(state.historyToken).title(state.title).data(state.data)));
-            } else {
-              inform(
-                  new EffectiveToken(
-                      "", StateToken.of(windowToken()).title(windowTitle()).data("")));
-            }
-          }
-        });
+    DomGlobal.self.addEventListener("popstate", popStateListener);
+    DomGlobal.self.addEventListener("hashchange", hashChangeListener);
+    addPageInstance(this);
+  }
+
+  private void onPopState(Event event) {
+    PopStateEvent popStateEvent = Js.cast(event);
+    JsState state = Js.cast(popStateEvent.state);
+    locationChanged(state);
+    if (isInformOnPopState()) {
+      if (nonNull(state) && nonNull(state.historyToken)) {
+        inform(
+            new EffectiveToken(
+                "", StateToken.of(state.historyToken).title(state.title).data(state.data)));
+      } else {
+        inform(new EffectiveToken("", StateToken.of(windowToken()).title(windowTitle()).data("")));
+      }
+    }
+  }
+
+  /** Hands the navigations made by another app on the page to all the instances of this module */
+  private static void onModuleEvent(Event evt) {
+    CustomEvent tokenEvent = Js.uncheckedCast(evt);
+    JsMap<String, String> tokenMap = Js.uncheckedCast(tokenEvent.detail);
+    if (ORIGIN_ID.equals(tokenMap.get("origin"))) {
+      return;
+    }
+    locationChanged();
+    String token = tokenMap.get("token");
+    String title = tokenMap.get("title");
+    String stateJson = tokenMap.get("stateJson");
+    EffectiveToken effectiveToken =
+        new EffectiveToken("", StateToken.of(token).title(title).data(stateJson));
+    for (StateHistory instance : pageInstances) {
+      instance.callListeners(effectiveToken);
+    }
+  }
+
+  /**
+   * Removes the browser listeners of this instance and stops it from receiving the navigations of
+   * the other instances on the page, the instance must not be used afterwards.
+   */
+  public void dispose() {
+    DomGlobal.self.removeEventListener("popstate", popStateListener);
+    DomGlobal.self.removeEventListener("hashchange", hashChangeListener);
+    removePageInstance(this);
+  }
 
-    DomGlobal.document.addEventListener(
-        "domino-history-event",
-        evt -> {
-          CustomEvent tokenEvent = Js.uncheckedCast(evt);
-          JsMap<String, String> tokenMap = Js.uncheckedCast(tokenEvent.detail);
-          String token = tokenMap.get("token");
-          String title = tokenMap.get("title");
-          String stateJson = tokenMap.get("stateJson");
-          callListeners(new EffectiveToken("", StateToken.of(token).title(title).data(stateJson)));
-        });
+  private static void addPageInstance(StateHistory instance) {
+    StateHistory[] instances = Arrays.copyOf(pageInstances, pageInstances.length + 1);
+    instances[pageInstances.length] = instance;
+    if (pageInstances.length == 0) {
+      DomGlobal.document.addEventListener("domino-history-event", MODULE_EVENT_LISTENER);
+    }
+    pageInstances = instances;
   }
 
+  private static void removePageInstance(StateHistory instance) {
+    StateHistory[] instances =
+        Arrays.stream(pageInstances).filter(item -> item != instance).toArray(StateHistory[]::new);
+    if (instances.length == pageInstances.length) {
+      return;
+    }
+    pageInstances = instances;
+    if (instances.length == 0) {
+      DomGlobal.document.removeEventListener("domino-history-event", MODULE_EVENT_LISTENER);
+    }
+  }
+
+  /**
+   * Calls all the matching listeners of a navigation in a single microtask, a failing listener is
+   * logged and does not prevent the remaining listeners from being called.
+   */
   private void callListeners(EffectiveToken effectiveToken) {
-    if (!isSameRoot(effectiveToken.getToken())) {
+    if (!isSameRoot(effectiveToken.getToken()) || listeners.size() == 0) {
       return;
     }
-    final List<HistoryListener> completedListeners = new ArrayList<>();
-    listeners.stream()
-        .filter(
-            listener -> {
-              NormalizedToken normalized =
-                  getNormalizedToken(rootPath, effectiveToken.getToken(), listener);
-              if (isNull(normalized)) {
-                normalized = new DefaultNormalizedToken(rootPath, effectiveToken.getToken());
-              }
-              return listener
-                  .getTokenFilter()
-                  .filter(
-                      new DominoHistoryState(
-                              normalized.getToken().value(),
-                              effectiveToken.getTitle(),
-                              effectiveToken.getData())
-                          .token);
-            })
-        .forEach(
-            listener -> {
-              if (listener.isRemoveOnComplete()) {
-                completedListeners.add(listener);
-              }
-              DomGlobal.setTimeout(
-                  p0 -> {
-                    NormalizedToken normalized =
-                        getNormalizedToken(rootPath, effectiveToken.getToken(), listener);
-                    listener
-                        .getListener()
-                        .onPopState(
-                            new DominoHistoryState(
-                                normalized,
-                                effectiveToken.getToken(),
-                                effectiveToken.getTitle(),
-                                effectiveToken.getData()));
-                  },
-                  0);
-            });
+    DomGlobal.queueMicrotask(() -> dispatch(effectiveToken));
+  }
+
+  /**
+   * Calls the matching listeners in priority order until one of them stops the propagation and
+   * removes the called listeners registered with removeOnComplete. When the token has no cached
+   * plan the filters are evaluated while dispatching, so the filters of the listeners after the one
+   * stopping the propagation are never evaluated, and the plan is only cached if it was resolved
+   * completely.
+   */
+  private void dispatch(EffectiveToken effectiveToken) {
+    String token = effectiveToken.getToken();
+    Propagation propagation = new Propagation();
+    List<HistoryListener> completedListeners;
+    DispatchPlan<HistoryListener> plan = dispatchPlans.get(token, listeners.getVersion());
+    if (nonNull(plan)) {
+      int called = 0;
+      while (called < plan.size() && !propagation.stopped) {
+        call(
+            plan.getListener(called), plan.getNormalizedToken(called), effectiveToken, propagation);
+        called++;
+      }
+      completedListeners = plan.getCompletedListeners(called);
+    } else {
+      completedListeners = resolveAndDispatch(effectiveToken, propagation);
+    }
 
-    listeners.removeAll(completedListeners);
+    if (!completedListeners.isEmpty()) {
+      listeners.removeAll(completedListeners);
+    }
+  }
+
+  /** @return the called listeners that should be removed */
+  private List<HistoryListener> resolveAndDispatch(
+      EffectiveToken effectiveToken, Propagation propagation) {
+    String token = effectiveToken.getToken();
+    int version = listeners.getVersion();
+    DispatchPlan<HistoryListener> plan = new DispatchPlan<>();
+    for (HistoryListener listener : listeners.snapshot()) {
+      NormalizedToken normalized = match(effectiveToken, listener);
+      if (nonNull(normalized)) {
+        plan.add(listener, normalized, listener.isRemoveOnComplete());
+        call(listener, plan.getNormalizedToken(plan.size() - 1), effectiveToken, propagation);
+        if (propagation.stopped) {
+          return plan.getCompletedListeners();
+        }
+      }
+    }
+    dispatchPlans.put(token, version, plan);
+    return plan.getCompletedListeners();
+  }
+
+  private void call(
+      HistoryListener listener,
+      NormalizedToken normalized,
+      EffectiveToken effectiveToken,
+      Propagation propagation) {
+    try {
+      listener
+          .getListener()
+          .onPopState(
+              new DominoHistoryState(
+                  normalized,
+                  effectiveToken.getToken(),
+                  effectiveToken.getTitle(),
+                  effectiveToken.getPayload(),
+                  propagation));
+    } catch (Exception e) {
+      LOGGER.log(
+          Level.SEVERE, "History listener failed for token : " + effectiveToken.getToken(), e);
+    }
+  }
+
+  /**
+   * @return the token normalized for the listener, or <b>null</b> if the listener does not match
+   */
+  private NormalizedToken match(EffectiveToken effectiveToken, HistoryListener listener) {
+    String token = effectiveToken.getToken();
+    NormalizedToken normalized = getNormalizedToken(rootPath, token, listener);
+    if (isNull(normalized)) {
+      normalized = new DefaultNormalizedToken(rootPath, token);
+    }
+    if (listener
+        .getTokenFilter()
+        .filter(
+            new DominoHistoryState(normalized.getToken().value(), effectiveToken.getTitle(), "")
+                .token)) {
+      return normalized;
+    }
+    return null;
   }
 
   private void inform(EffectiveToken effectiveToken) {
@@ -127,8 +258,13 @@ public class StateHistory implements AppHistory {
       return;
     }
 
+    for (StateHistory instance : pageInstances) {
+      instance.callListeners(effectiveToken);
+    }
+
     try {
       JsMap<String, String> tokenMap = new JsMap<>();
+      tokenMap.set("origin", ORIGIN_ID);
       tokenMap.set("token", effectiveToken.getToken());
       tokenMap.set("title", effectiveToken.getTitle());
       tokenMap.set("stateJson", effectiveToken.getData());
@@ -142,7 +278,6 @@ public class StateHistory implements AppHistory {
       LOGGER.log(
           Level.WARNING,
           "Custom events not supported for this browser, multi-app support wont work. will inform local app listeners only");
-      callListeners(effectiveToken);
     }
   }
 
@@ -207,13 +342,30 @@ public class StateHistory implements AppHistory {
   @Override
   public DirectState listen(
       TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
+    return listen(tokenFilter, listener, removeOnComplete, DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter with the specified priority and will be removed after being fired if
+   * {removeOnComplete} is true.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @param priority the listener priority, higher priority listeners are called first
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete, int priority) {
     HistoryListener historyListener = new HistoryListener(listener, tokenFilter, removeOnComplete);
-    listeners.add(historyListener);
+    listeners.add(historyListener, priority);
     return new DominoDirectState(tokenFilter, currentState(), listener)
         .onCompleted(
             dominoDirectState -> {
               if (historyListener.isRemoveOnComplete()) {
-                listeners.remove(historyListener);
+                listeners.removeIf(registered -> registered == historyListener);
               }
             });
   }
@@ -225,21 +377,38 @@ public class StateHistory implements AppHistory {
    */
   @Override
   public void removeListener(StateListener listener) {
-    listeners.remove(listener);
+    listeners.removeIf(historyListener -> historyListener.getListener() == listener);
   }
 
   /** Go back one step simulating the browser back button */
   @Override
   public void back() {
+    batch.flushNow((pending, callbacks) -> applyPendingNavigation(pending));
     history.back();
   }
 
   /** Go forward one step simulating the browser forward button */
   @Override
   public void forward() {
+    batch.flushNow((pending, callbacks) -> applyPendingNavigation(pending));
     history.forward();
   }
 
+  /**
+   * Moves any number of entries back or forward using the browser history, listeners are called
+   * once for the final entry by its popstate event. A batched or coalesced navigation still pending
+   * is applied first, so the move happens from the entry it adds.
+   *
+   * @param delta the number of entries to move, negative to go back
+   */
+  @Override
+  public void go(int delta) {
+    if (delta != 0) {
+      batch.flushNow((pending, callbacks) -> applyPendingNavigation(pending));
+      history.go(delta);
+    }
+  }
+
   /**
    * The count if the current browser history entries
    *
@@ -262,27 +431,105 @@ public class StateHistory implements AppHistory {
    */
   @Override
   public void pushState(StateToken stateToken, TokenParameter... parameters) {
-    pushState(stateToken, () -> {}, parameters);
+    navigate(stateToken, false, false, parameters);
+  }
+
+  private void navigate(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    if (batch.isDeferred()) {
+      if (batch.add(stateToken, replace, fire, parameters)) {
+        scheduleFlush();
+      }
+    } else if (replace) {
+      replaceState(new EffectiveToken(rootPath, stateToken));
+    } else {
+      pushState(stateToken, fire, Collections.emptyList(), parameters);
+    }
+  }
+
+  private void scheduleFlush() {
+    NavigationCoalescing coalescing = batch.getCoalescing();
+    if (coalescing.getMode() == NavigationCoalescing.Mode.FRAME) {
+      DomGlobal.requestAnimationFrame(timestamp -> flushPendingNavigation());
+    } else {
+      DomGlobal.setTimeout(p0 -> flushPendingNavigation(), coalescing.getWindowMillis());
+    }
+  }
+
+  private void flushPendingNavigation() {
+    batch.flush((pending, callbacks) -> applyPendingNavigation(pending));
+  }
+
+  private void applyPendingNavigation(PendingNavigation pending) {
+    if (pending.isPush()) {
+      pushState(
+          pending.getStateToken(),
+          pending.isFire(),
+          pending.getCoalescedTokens(),
+          pending.getParameters());
+    } else {
+      replaceState(new EffectiveToken(rootPath, pending.getStateToken(), pending.getParameters()));
+    }
+  }
+
+  /**
+   * Runs the navigations made by the runnable as a single navigation to the final token, the
+   * interceptors run once for the final token, one history entry is written and listeners are
+   * called once with the final state. If the runnable throws, its navigations are discarded while a
+   * coalesced navigation pending from before the batch is kept.
+   *
+   * @param navigations the navigations to batch
+   */
+  @Override
+  public void batch(Runnable navigations) {
+    if (batch.run(navigations, discarded -> {})) {
+      flushPendingNavigation();
+    }
+  }
+
+  /**
+   * Collapse bursts of push, replace and fire navigations into a single history entry and a single
+   * listeners call for the final state, see {@link NavigationCoalescing}. Changing the coalescing
+   * applies any navigation pending from the previous one immediately.
+   *
+   * @param coalescing {@link NavigationCoalescing}
+   */
+  @Override
+  public void setCoalescing(NavigationCoalescing coalescing) {
+    flushPendingNavigation();
+    batch.setCoalescing(coalescing);
   }
 
   private void pushState(
-      StateToken stateToken, Runnable onPushHandler, TokenParameter... parameters) {
-    InterceptorChain interceptorChain =
-        new InterceptorChain(
-            interceptors,
-            () -> {
-              EffectiveToken effectiveToken = new EffectiveToken(rootPath, stateToken, parameters);
-              if (nonNull(currentToken().value())
-                  && !currentToken().value().equals(effectiveToken.getToken())) {
-                history.pushState(
-                    JsState.state(effectiveToken),
-                    Optional.ofNullable(effectiveToken.getTitle()).orElse(windowTitle()),
-                    "/" + effectiveToken.getToken());
-                setPageTitle(effectiveToken);
-                onPushHandler.run();
-              }
-            });
-    interceptorChain.intercept(new TokenEvent(rootPath, stateToken));
+      StateToken stateToken,
+      boolean fire,
+      List<StateToken> coalescedTokens,
+      TokenParameter... parameters) {
+    Runnable onCompleted =
+        () -> {
+          EffectiveToken effectiveToken = new EffectiveToken(rootPath, stateToken, parameters);
+          String currentToken = currentTokenValue();
+          if (nonNull(currentToken) && !currentToken.equals(effectiveToken.getToken())) {
+            JsState state = JsState.state(effectiveToken);
+            history.pushState(
+                state,
+                Optional.ofNullable(effectiveToken.getTitle()).orElse(windowTitle()),
+                "/" + effectiveToken.getToken());
+            locationChanged(state);
+            setPageTitle(effectiveToken);
+            if (fire) {
+              fireCurrentStateHistory();
+            }
+          }
+        };
+    HistoryInterceptor[] snapshot =
+        interceptors.select(rootPath, TokenTemplate.apply(stateToken.getToken(), parameters));
+    if (snapshot.length == 0) {
+      onCompleted.run();
+    } else {
+      new InterceptorChain(snapshot, onCompleted)
+          .intercept(new TokenEvent(rootPath, stateToken, coalescedTokens));
+    }
   }
 
   private static void setPageTitle(EffectiveToken effectiveToken) {
@@ -312,7 +559,7 @@ public class StateHistory implements AppHistory {
    */
   @Override
   public void fireState(StateToken token, TokenParameter... parameters) {
-    pushState(token, this::fireCurrentStateHistory, parameters);
+    navigate(token, false, true, parameters);
   }
 
   /**
@@ -333,7 +580,7 @@ public class StateHistory implements AppHistory {
    */
   @Override
   public void replaceState(StateToken stateToken) {
-    replaceState(new EffectiveToken(rootPath, stateToken));
+    navigate(stateToken, true, false);
   }
 
   /**
@@ -343,10 +590,12 @@ public class StateHistory implements AppHistory {
    * @param effectiveToken {@link EffectiveToken}.
    */
   private void replaceState(EffectiveToken effectiveToken) {
+    JsState state = JsState.state(effectiveToken);
     history.replaceState(
-        JsState.state(effectiveToken),
+        state,
         Optional.ofNullable(effectiveToken.getTitle()).orElse(windowTitle()),
         "/" + effectiveToken.getToken());
+    locationChanged(state);
     setPageTitle(effectiveToken);
   }
 
@@ -360,6 +609,16 @@ public class StateHistory implements AppHistory {
     return new StateHistoryToken(rootPath, windowToken());
   }
 
+  /** @return the value of {@link #currentToken()}, parsed once per location */
+  private String currentTokenValue() {
+    String token = windowToken();
+    if (isNull(locationTokenValue) || !token.equals(locationTokenValueOf)) {
+      locationTokenValue = currentToken().value();
+      locationTokenValueOf = token;
+    }
+    return locationTokenValue;
+  }
+
   /** {@inheritDoc} */
   @Override
   public String getRootPath() {
@@ -369,6 +628,19 @@ public class StateHistory implements AppHistory {
   @Override
   public void setRootPath(String path) {
     this.rootPath = isNull(path) ? "" : path.trim();
+    this.locationTokenValue = null;
+    dispatchPlans.invalidate();
+    interceptors.invalidate();
+  }
+
+  /**
+   * Sets the maximum number of tokens to keep a resolved {@link DispatchPlan} for, use <b>0</b> to
+   * disable the cache when token filters depend on anything other than the token itself.
+   *
+   * @param size int
+   */
+  public void setDispatchPlanCacheSize(int size) {
+    dispatchPlans.setMaxSize(size);
   }
 
   @Override
@@ -378,6 +650,13 @@ public class StateHistory implements AppHistory {
     }
   }
 
+  @Override
+  public void addInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    if (nonNull(tokenFilter) && nonNull(interceptor)) {
+      this.interceptors.add(tokenFilter, interceptor);
+    }
+  }
+
   @Override
   public void removeInterceptor(HistoryInterceptor interceptor) {
     if (nonNull(interceptor)) {
@@ -443,11 +722,36 @@ public class StateHistory implements AppHistory {
   }
 
   private JsState getJsState() {
-    return Js.uncheckedCast(DomGlobal.self.history.state);
+    validateLocation();
+    if (!locationStateRead) {
+      locationState = Js.uncheckedCast(DomGlobal.self.history.state);
+      locationStateRead = true;
+    }
+    return locationState;
   }
 
   private boolean isNullState() {
-    return isNull(DomGlobal.self.history.state);
+    return isNull(getJsState());
+  }
+
+  /**
+   * Resets the cached location after a navigation of this instance or a popstate
+   *
+   * @param state the browser state of the new location
+   */
+  private static void locationChanged(JsState state) {
+    locationToken = null;
+    locationHref = DomGlobal.location.href;
+    locationState = state;
+    locationStateRead = true;
+  }
+
+  /** Resets the cached location after a navigation this instance has no browser state for */
+  private static void locationChanged() {
+    locationToken = null;
+    locationHref = null;
+    locationState = null;
+    locationStateRead = false;
   }
 
   private State nullState() {
@@ -486,9 +790,22 @@ public class StateHistory implements AppHistory {
     return DomGlobal.document.title;
   }
 
+  /** Drops the cached location if the window location href changed since it was read */
+  private static void validateLocation() {
+    String href = DomGlobal.location.href;
+    if (!href.equals(locationHref)) {
+      locationChanged();
+      locationHref = href;
+    }
+  }
+
   private String windowToken() {
-    Location location = Js.uncheckedCast(DomGlobal.location);
-    return location.pathname.substring(1) + location.search + location.hash;
+    validateLocation();
+    if (isNull(locationToken)) {
+      Location location = Js.uncheckedCast(DomGlobal.location);
+      locationToken = location.pathname.substring(1) + location.search + location.hash;
+    }
+    return locationToken;
   }
 
   private State currentState() {
@@ -502,23 +819,30 @@ public class StateHistory implements AppHistory {
   private class DominoHistoryState implements State {
 
     private final HistoryToken token;
-    private final String data;
+    private final StatePayload payload;
     private final String title;
     private NormalizedToken normalizedToken;
+    private final Propagation propagation;
 
     public DominoHistoryState(String token, String title, String data) {
       this.token = new StateHistoryToken(rootPath, token);
-      this.data = data;
+      this.payload = StatePayload.ofData(data);
       this.title = title;
       this.normalizedToken = new DefaultNormalizedToken(new StateHistoryToken(rootPath, token));
+      this.propagation = new Propagation();
     }
 
     public DominoHistoryState(
-        NormalizedToken normalizedToken, String token, String title, String data) {
+        NormalizedToken normalizedToken,
+        String token,
+        String title,
+        StatePayload payload,
+        Propagation propagation) {
       this.token = new StateHistoryToken(rootPath, token);
-      this.data = data;
+      this.payload = payload;
       this.title = title;
       this.normalizedToken = normalizedToken;
+      this.propagation = propagation;
     }
 
     @Override
@@ -533,7 +857,12 @@ public class StateHistory implements AppHistory {
 
     @Override
     public Optional<String> data() {
-      return Optional.ofNullable(this.data);
+      return Optional.ofNullable(this.payload).map(StatePayload::data);
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return Optional.ofNullable(this.payload).map(statePayload -> statePayload.value(codec));
     }
 
     @Override
@@ -550,5 +879,20 @@ public class StateHistory implements AppHistory {
     public void setNormalizedToken(NormalizedToken normalizedToken) {
       this.normalizedToken = normalizedToken;
     }
+
+    @Override
+    public void stopPropagation() {
+      propagation.stopped = true;
+    }
+
+    @Override
+    public boolean isPropagationStopped() {
+      return propagation.stopped;
+    }
+  }
+
+  /** The propagation status shared by the states of a single dispatch */
+  private static class Propagation {
+    private boolean stopped;
   }
 }
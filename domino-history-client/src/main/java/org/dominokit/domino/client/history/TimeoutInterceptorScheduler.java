@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import elemental2.dom.DomGlobal;
+import org.dominokit.domino.history.AsyncInterceptorChain;
+import org.dominokit.domino.history.InterceptorScheduler;
+
+/** An {@link InterceptorScheduler} for {@link AsyncInterceptorChain} using the browser timers */
+public class TimeoutInterceptorScheduler implements InterceptorScheduler {
+
+  @Override
+  public ScheduledTask schedule(Runnable task, int delayMillis) {
+    double timeoutId = DomGlobal.setTimeout(p0 -> task.run(), delayMillis);
+    return () -> DomGlobal.clearTimeout(timeoutId);
+  }
+
+  /** The browser runs the timers and the navigations on the same thread */
+  @Override
+  public void execute(Runnable task) {
+    task.run();
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import org.dominokit.domino.history.NavigationStack;
+import org.dominokit.domino.history.StatePayload;
+
+/**
+ * The entries of a virtual history stored compactly in a {@link NavigationStack}, with the same
+ * navigation semantics.
+ *
+ * <p>Tokens are split into <b>/</b> separated segments and every distinct segment is interned once
+ * in a dictionary. Each entry stores only the number of leading segments it shares with the
+ * previous entry followed by the ids of its remaining segments, and every {@link
+ * #KEYFRAME_INTERVAL} entries at most an entry stores all its segments so rebuilding a token never
+ * walks more than that many entries. Segments no longer used by any entry are released from the
+ * dictionary.
+ *
+ * <p>Entries are rebuilt with the entry factory when they are read, only the current entry is kept
+ * rebuilt. Every other read, including {@link #go(int)}, returns a new entry, so entries of the
+ * store must be compared by their content and not by identity.
+ *
+ * @param <E> the rebuilt entry type
+ */
+public class CompactEntryStore<E> {
+
+  /** The maximum number of entries between two entries storing all their segments */
+  public static final int KEYFRAME_INTERVAL = 16;
+
+  private static final int SHARED = 0;
+  private static final int DEPTH = 1;
+  private static final int IDS = 2;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final BiFunction<String, StatePayload, E> entryFactory;
+  private final CodeStack codes;
+
+  private final Map<String, Integer> segmentIds = new HashMap<>();
+  private String[] segments = new String[INITIAL_CAPACITY];
+  private int[] references = new int[INITIAL_CAPACITY];
+  private int[] freeIds = new int[INITIAL_CAPACITY];
+  private int freeCount;
+  private int nextId;
+
+  private int[] decodedCode;
+  private int[] decodedIds;
+  private E currentEntry;
+
+  /**
+   * Creates an unbounded store
+   *
+   * @param entryFactory creates an entry from its token and payload
+   */
+  public CompactEntryStore(BiFunction<String, StatePayload, E> entryFactory) {
+    this(entryFactory, NavigationStack.UNBOUNDED);
+  }
+
+  /**
+   * @param entryFactory creates an entry from its token and payload
+   * @param maxSize the maximum number of entries kept by the store
+   */
+  public CompactEntryStore(BiFunction<String, StatePayload, E> entryFactory, int maxSize) {
+    this.entryFactory = entryFactory;
+    this.codes = new CodeStack(maxSize);
+  }
+
+  /**
+   * Sets the maximum number of entries kept by the store, see {@link
+   * NavigationStack#setMaxSize(int)}.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  public void setMaxSize(int maxSize) {
+    codes.setMaxSize(maxSize);
+  }
+
+  /** @return the maximum number of entries kept by the store */
+  public int getMaxSize() {
+    return codes.getMaxSize();
+  }
+
+  /**
+   * Adds an entry after the current one and makes it the current entry, the entries after the
+   * current one are dropped.
+   *
+   * @param token the entry token
+   * @param payload the entry payload, can be null
+   * @return the new current entry
+   */
+  public E push(String token, StatePayload payload) {
+    Code code = new Code(payload);
+    codes.push(code);
+    code.ids = encode(token, codes.getCursor() - 1);
+    currentEntry = entryFactory.apply(token, payload);
+    return currentEntry;
+  }
+
+  /**
+   * Replaces the current entry, or pushes the entry if the store is empty
+   *
+   * @param token the entry token
+   * @param payload the entry payload, can be null
+   * @return the new current entry
+   */
+  public E replace(String token, StatePayload payload) {
+    if (codes.isEmpty()) {
+      return push(token, payload);
+    }
+    Code code = new Code(payload);
+    codes.replace(code);
+    code.ids = encode(token, codes.getCursor() - 1);
+    currentEntry = entryFactory.apply(token, payload);
+    return currentEntry;
+  }
+
+  /** @return the current entry, or <b>null</b> if the store is empty */
+  public E current() {
+    if (codes.isEmpty()) {
+      return null;
+    }
+    if (isNull(currentEntry)) {
+      currentEntry = entryAt(codes.getCursor());
+    }
+    return currentEntry;
+  }
+
+  /**
+   * Moves the cursor by the delta, moving outside the store does nothing
+   *
+   * @param delta the number of entries to move, negative to move back
+   * @return a new entry rebuilt for the new current position, or <b>null</b> if the cursor did not
+   *     move
+   */
+  public E go(int delta) {
+    if (isNull(codes.go(delta))) {
+      return null;
+    }
+    currentEntry = null;
+    return current();
+  }
+
+  /**
+   * @param position the entry position, <b>0</b> being the oldest entry
+   * @return the entry at the position
+   */
+  public E get(int position) {
+    if (position < 0 || position >= codes.size()) {
+      throw new IndexOutOfBoundsException("Entry position is out of range : " + position);
+    }
+    return position == codes.getCursor() ? current() : entryAt(position);
+  }
+
+  /** @return the position of the current entry, <b>-1</b> if the store is empty */
+  public int getCursor() {
+    return codes.getCursor();
+  }
+
+  /** @return the number of entries in the store */
+  public int size() {
+    return codes.size();
+  }
+
+  /** @return <b>true</b> if the store has no entries */
+  public boolean isEmpty() {
+    return codes.isEmpty();
+  }
+
+  /** @return the number of entries evicted since the store was created */
+  public long getEvictedCount() {
+    return codes.getEvictedCount();
+  }
+
+  /** @return the number of distinct segments currently interned */
+  public int getSegmentsCount() {
+    return segmentIds.size();
+  }
+
+  /** @return a snapshot of the entries up to the current one, the current entry first */
+  public Deque<E> toBackDeque() {
+    int cursor = codes.getCursor();
+    Deque<E> deque = new ArrayDeque<>(Math.max(cursor + 1, 1));
+    for (int i = cursor; i >= 0; i--) {
+      deque.addLast(i == cursor ? current() : entryAt(i));
+    }
+    return deque;
+  }
+
+  /** @return a snapshot of the entries after the current one, the nearest entry first */
+  public Deque<E> toForwardDeque() {
+    int cursor = codes.getCursor();
+    Deque<E> deque = new ArrayDeque<>(Math.max(codes.size() - cursor - 1, 1));
+    for (int i = cursor + 1; i < codes.size(); i++) {
+      deque.addLast(entryAt(i));
+    }
+    return deque;
+  }
+
+  private E entryAt(int position) {
+    int[] ids = decode(position);
+    StringBuilder token = new StringBuilder();
+    for (int i = 0; i < ids.length; i++) {
+      if (i > 0) {
+        token.append('/');
+      }
+      token.append(segments[ids[i]]);
+    }
+    return entryFactory.apply(token.toString(), codes.get(position).payload);
+  }
+
+  /**
+   * Encodes a token against the entry at the predecessor position
+   *
+   * @return the entry code, the shared segments count, the keyframe depth and the segments ids
+   */
+  private int[] encode(String token, int predecessor) {
+    String[] parts = token.split("/", -1);
+    int[] ids = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      ids[i] = intern(parts[i]);
+    }
+
+    int shared = 0;
+    int depth = 0;
+    if (predecessor >= 0) {
+      int[] previousCode = codes.get(predecessor).ids;
+      if (previousCode[DEPTH] + 1 < KEYFRAME_INTERVAL) {
+        int[] previousIds = decode(predecessor);
+        int limit = Math.min(previousIds.length, ids.length);
+        while (shared < limit && previousIds[shared] == ids[shared]) {
+          shared++;
+        }
+        depth = shared > 0 ? previousCode[DEPTH] + 1 : 0;
+      }
+    }
+
+    int[] code = new int[IDS + ids.length - shared];
+    code[SHARED] = shared;
+    code[DEPTH] = depth;
+    for (int i = shared; i < ids.length; i++) {
+      code[IDS + i - shared] = ids[i];
+      references[ids[i]]++;
+    }
+    decodedCode = code;
+    decodedIds = ids;
+    return code;
+  }
+
+  /** @return the ids of all the segments of the entry at the position */
+  private int[] decode(int position) {
+    int[] code = codes.get(position).ids;
+    if (code == decodedCode) {
+      return decodedIds;
+    }
+    int[] ids;
+    int shared = code[SHARED];
+    if (shared == 0) {
+      ids = Arrays.copyOfRange(code, IDS, code.length);
+    } else {
+      int[] previousIds = decode(position - 1);
+      ids = Arrays.copyOf(previousIds, shared + code.length - IDS);
+      System.arraycopy(code, IDS, ids, shared, code.length - IDS);
+    }
+    decodedCode = code;
+    decodedIds = ids;
+    return ids;
+  }
+
+  /** Re-encodes the entry at the position with all its segments */
+  private void makeKeyframe(int position) {
+    Code entry = codes.get(position);
+    int shared = entry.ids[SHARED];
+    if (shared == 0) {
+      return;
+    }
+    int[] ids = decode(position);
+    int[] keyframe = new int[IDS + ids.length];
+    System.arraycopy(ids, 0, keyframe, IDS, ids.length);
+    for (int i = 0; i < shared; i++) {
+      references[ids[i]]++;
+    }
+    entry.ids = keyframe;
+    decodedCode = keyframe;
+    decodedIds = ids;
+  }
+
+  private int intern(String segment) {
+    Integer id = segmentIds.get(segment);
+    if (nonNull(id)) {
+      return id;
+    }
+    int newId;
+    if (freeCount > 0) {
+      newId = freeIds[--freeCount];
+    } else {
+      if (nextId == segments.length) {
+        segments = Arrays.copyOf(segments, segments.length * 2);
+        references = Arrays.copyOf(references, references.length * 2);
+      }
+      newId = nextId++;
+    }
+    segments[newId] = segment;
+    references[newId] = 0;
+    segmentIds.put(segment, newId);
+    return newId;
+  }
+
+  private void release(int[] code) {
+    for (int i = IDS; i < code.length; i++) {
+      if (--references[code[i]] == 0) {
+        releaseId(code[i]);
+      }
+    }
+    if (code == decodedCode) {
+      decodedCode = null;
+      decodedIds = null;
+    }
+  }
+
+  private void releaseId(int id) {
+    segmentIds.remove(segments[id]);
+    segments[id] = null;
+    if (freeCount == freeIds.length) {
+      freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+    }
+    freeIds[freeCount++] = id;
+  }
+
+  /** An encoded entry, its segments ids are set right after it is added to the stack */
+  private static final class Code {
+    private final StatePayload payload;
+    private int[] ids;
+
+    private Code(StatePayload payload) {
+      this.payload = payload;
+    }
+  }
+
+  private final class CodeStack extends NavigationStack<Code> {
+
+    private CodeStack(int maxSize) {
+      super(maxSize);
+    }
+
+    /** Keeps the following entry decodable and releases the segments of the removed entry */
+    @Override
+    protected void onRemove(int position, Code entry) {
+      if (position + 1 < size()) {
+        makeKeyframe(position + 1);
+      }
+      release(entry.ids);
+      if (position == getCursor()) {
+        currentEntry = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,671 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.dominokit.domino.history.*;
+
+/**
+ * A thread-safe implementation of the {@link AppHistory} that treat the url virtually as a queue of
+ * strings, for server side applications that drive many navigations from multiple threads.
+ *
+ * <p>Nothing in this implementation takes a lock: the listeners are kept in a copy-on-write array
+ * that is swapped atomically, and the back and forward stacks are immutable linked entries that are
+ * swapped atomically as a whole on each navigation, readers and dispatchers always work on a
+ * consistent snapshot and never block each other.
+ *
+ * <p>Ordering guarantee: concurrent navigations are linearized in the order their stacks swap
+ * succeeds, each entry is assigned a sequence number in that order, see {@link
+ * HistoryState#getSequence()}. A {@code fireState} dispatches the exact entry it pushed even if
+ * other threads pushed newer entries in the meantime, and dispatches of concurrent navigations may
+ * run in parallel on their calling threads. A listener registered with removeOnComplete is called
+ * at most once.
+ *
+ * <p>Only a subset of {@link JVMHistory} is supported: listener priorities are ignored and
+ * listeners are called in registration order, {@link #addInterceptor(TokenFilter,
+ * HistoryInterceptor)} throws an {@link UnsupportedOperationException} as interceptors always apply
+ * to every navigation, {@link #batch(Runnable)} applies the navigations as they are made and
+ * enabling coalescing with {@link #setCoalescing(NavigationCoalescing)} throws an {@link
+ * UnsupportedOperationException}.
+ */
+public class ConcurrentJVMHistory implements AppHistory {
+
+  private static final int DISPATCH_PLAN_CACHE_SIZE = DispatchPlanCache.DEFAULT_SIZE * 8;
+
+  private final AtomicReference<HistoryListener[]> listeners =
+      new AtomicReference<>(new HistoryListener[0]);
+  private final AtomicReference<Stacks> stacks = new AtomicReference<>(Stacks.EMPTY);
+  private final List<HistoryInterceptor> interceptors = new CopyOnWriteArrayList<>();
+  private final AtomicReference<DispatchPlans> dispatchPlans =
+      new AtomicReference<>(new DispatchPlans(listeners.get(), ""));
+
+  public ConcurrentJVMHistory() {
+    this("");
+  }
+
+  public ConcurrentJVMHistory(String rootPath) {
+    setRootPath(rootPath);
+  }
+
+  /**
+   * Create a listener that will listen for any change in the virtual url.
+   *
+   * @param listener {@link StateListener}
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(StateListener listener) {
+    return listen(TokenFilter.any(), listener, false);
+  }
+
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(TokenFilter tokenFilter, StateListener listener) {
+    return listen(tokenFilter, listener, false);
+  }
+
+  /**
+   * Create a listener that will listen to all changes to the virtual url and will be removed after
+   * being fired if {removeOnComplete} is true
+   *
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(StateListener listener, boolean removeOnComplete) {
+    return listen(TokenFilter.any(), listener, removeOnComplete);
+  }
+
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter and will be removed after being fired if {removeOnComplete} is true.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
+    HistoryListener historyListener = new HistoryListener(listener, tokenFilter, removeOnComplete);
+    HistoryListener[] current;
+    HistoryListener[] updated;
+    do {
+      current = listeners.get();
+      updated = Arrays.copyOf(current, current.length + 1);
+      updated[current.length] = historyListener;
+    } while (!listeners.compareAndSet(current, updated));
+    return new DominoDirectState(tokenFilter, currentState(), listener);
+  }
+
+  /**
+   * Manually removes a listener
+   *
+   * @param listener {@link StateListener}
+   */
+  @Override
+  public void removeListener(StateListener listener) {
+    removeListeners(historyListener -> historyListener.listener == listener);
+  }
+
+  private void removeListeners(Predicate<HistoryListener> predicate) {
+    HistoryListener[] current;
+    HistoryListener[] updated;
+    do {
+      current = listeners.get();
+      updated = Arrays.stream(current).filter(predicate.negate()).toArray(HistoryListener[]::new);
+      if (updated.length == current.length) {
+        return;
+      }
+    } while (!listeners.compareAndSet(current, updated));
+  }
+
+  private State currentState() {
+    HistoryState current = stacks.get().current();
+    return new ConcurrentState(isNull(current) ? nullState() : current);
+  }
+
+  private HistoryState nullState() {
+    return new HistoryState("", "", 0);
+  }
+
+  private void inform(HistoryState state) {
+    if (!isSameRoot(state.token)) {
+      return;
+    }
+
+    DispatchPlan<HistoryListener> plan = dispatchPlan(state.token);
+    for (int i = 0; i < plan.size(); i++) {
+      HistoryListener listener = plan.getListener(i);
+      if (listener.removeOnComplete && !listener.completed.compareAndSet(false, true)) {
+        continue;
+      }
+      NormalizedToken normalized = plan.getNormalizedToken(i);
+      listener.listener.onPopState(
+          new ConcurrentState(
+              normalized,
+              new HistoryState(normalized.getToken().value(), state.payload, state.sequence)));
+    }
+
+    if (plan.hasCompletedListeners()) {
+      removeListeners(plan.getCompletedListeners()::contains);
+    }
+  }
+
+  private DispatchPlan<HistoryListener> dispatchPlan(String token) {
+    HistoryListener[] snapshot = listeners.get();
+    DispatchPlans plans = dispatchPlans.get();
+    if (plans.listeners != snapshot) {
+      DispatchPlans current = new DispatchPlans(snapshot, plans.rootPath);
+      dispatchPlans.compareAndSet(plans, current);
+      plans = current;
+    }
+
+    DispatchPlan<HistoryListener> plan = plans.plans.get(token);
+    if (nonNull(plan)) {
+      return plan;
+    }
+
+    String root = plans.rootPath;
+    plan = new DispatchPlan<>();
+    for (HistoryListener listener : snapshot) {
+      NormalizedToken normalized = listener.tokenFilter.normalizeToken(root, token);
+      if (isNull(normalized)) {
+        normalized = new DefaultNormalizedToken(token);
+      }
+      if (listener.tokenFilter.filter(new StateHistoryToken(normalized.getToken().value()))) {
+        plan.add(listener, normalized, listener.removeOnComplete);
+      }
+    }
+    plans.put(token, plan);
+    return plan;
+  }
+
+  private boolean isSameRoot(String token) {
+    String root = getRootPath();
+    if (root.isEmpty()) {
+      return true;
+    }
+    return token.startsWith(root);
+  }
+
+  /** Go back one step simulating a back button */
+  @Override
+  public void back() {
+    Stacks current;
+    Stacks updated;
+    do {
+      current = stacks.get();
+      updated = current.back();
+      if (isNull(updated)) {
+        return;
+      }
+    } while (!stacks.compareAndSet(current, updated));
+    inform(updated.current());
+  }
+
+  /** Go forward one step simulating a forward button */
+  @Override
+  public void forward() {
+    Stacks current;
+    Stacks updated;
+    do {
+      current = stacks.get();
+      updated = current.forward();
+      if (isNull(updated)) {
+        return;
+      }
+    } while (!stacks.compareAndSet(current, updated));
+    inform(updated.current());
+  }
+
+  /**
+   * Moves any number of entries back or forward as a single atomic update and calls the listeners
+   * with the final state only, moving outside the history entries does nothing. Moving costs one
+   * step per entry on the persistent stacks.
+   *
+   * @param delta the number of entries to move, negative to go back
+   */
+  @Override
+  public void go(int delta) {
+    if (delta == 0) {
+      return;
+    }
+    Stacks current;
+    Stacks updated;
+    do {
+      current = stacks.get();
+      updated = current;
+      for (int i = 0; i < Math.abs(delta) && nonNull(updated); i++) {
+        updated = delta < 0 ? updated.back() : updated.forward();
+      }
+      if (isNull(updated)) {
+        return;
+      }
+    } while (!stacks.compareAndSet(current, updated));
+    inform(updated.current());
+  }
+
+  /**
+   * The count of the current history entries
+   *
+   * @return int
+   */
+  @Override
+  public int getHistoryEntriesCount() {
+    return stacks.get().size;
+  }
+
+  /**
+   * Change the virtual url to the specified token without firing url change listeners, sets the
+   * title of the new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void pushState(StateToken stateToken) {
+    push(stateToken, false, state -> {});
+  }
+
+  /**
+   * Change the virtual url to the specified token without firing url change listeners, sets the
+   * title of the new page and assign the data to the new state. In case the new token has
+   * expression parameters in the form <b>:paramName</b> they will be replaced using the
+   * <b>parameters</b>
+   *
+   * @param stateToken {@link StateToken}.
+   * @param parameters a list of {@link TokenParameter} to be used to replace expression params in
+   *     the url token
+   */
+  @Override
+  public void pushState(StateToken stateToken, TokenParameter... parameters) {
+    push(stateToken, false, state -> {}, parameters);
+  }
+
+  /**
+   * Change the virtual url to the specified token and fire change listeners, sets the title of the
+   * new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void fireState(StateToken stateToken) {
+    fireState(stateToken, new TokenParameter[0]);
+  }
+
+  /**
+   * Change the virtual url to the specified token and fire url change listeners, sets the title of
+   * the new page and assign the data to the new state. In case the new token has expression
+   * parameters in the form <b>:paramName</b> they will be replaced using the <b>parameters</b>
+   *
+   * @param stateToken {@link StateToken}.
+   * @param parameters a list of {@link TokenParameter} to be used to replace expression params in
+   *     the url token
+   */
+  @Override
+  public void fireState(StateToken stateToken, TokenParameter... parameters) {
+    push(stateToken, false, this::inform, parameters);
+  }
+
+  /**
+   * Replace the current virtual url with the specified token without firing url change listeners,
+   * sets the title of the new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void replaceState(StateToken stateToken) {
+    push(stateToken, true, state -> {});
+  }
+
+  /**
+   * Parse the current virtual url and return an immutable instance of {@link HistoryToken}
+   *
+   * @return {@link StateHistoryToken}
+   */
+  @Override
+  public HistoryToken currentToken() {
+    HistoryState current = stacks.get().current();
+    return new StateHistoryToken(getRootPath(), isNull(current) ? "" : current.token);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getRootPath() {
+    return dispatchPlans.get().rootPath;
+  }
+
+  @Override
+  public void setRootPath(String path) {
+    dispatchPlans.set(new DispatchPlans(listeners.get(), isNull(path) ? "" : path.trim()));
+  }
+
+  /**
+   * Reapply the current token and virtual url and force calling all listeners with matching token
+   * filters.
+   */
+  @Override
+  public void fireCurrentStateHistory() {
+    HistoryState current = stacks.get().current();
+    if (nonNull(current)) {
+      inform(current);
+    }
+  }
+
+  /**
+   * Reapply the current token and virtual url and force calling all listeners with matching token
+   * filters. and use a new page title.
+   *
+   * @param title The page title
+   */
+  @Override
+  public void fireCurrentStateHistory(String title) {
+    fireCurrentStateHistory();
+  }
+
+  public void initialState(String token, String data) {
+    push(StateToken.of(token).data(data), false, state -> {});
+  }
+
+  private void push(
+      StateToken stateToken,
+      boolean replace,
+      Consumer<HistoryState> onPushHandler,
+      TokenParameter... parameters) {
+    Runnable onCompleted =
+        () -> {
+          String token = TokenTemplate.replace(stateToken.getToken(), parameters);
+          Stacks current;
+          Stacks updated;
+          do {
+            current = stacks.get();
+            updated = current.push(token, stateToken.getPayload(), replace);
+          } while (!stacks.compareAndSet(current, updated));
+          onPushHandler.accept(updated.current());
+        };
+
+    if (interceptors.isEmpty()) {
+      onCompleted.run();
+    } else {
+      new InterceptorChain(interceptors, onCompleted).intercept(new TokenEvent(stateToken));
+    }
+  }
+
+  /** @return the registered listeners snapshot in registration order */
+  public List<HistoryListener> getListeners() {
+    return Collections.unmodifiableList(Arrays.asList(listeners.get()));
+  }
+
+  /**
+   * Same contract as {@link JVMHistory#getForwards()}
+   *
+   * @return a snapshot of the entries up to the current one, the current entry first
+   */
+  public Deque<HistoryState> getForwards() {
+    return stacks.get().past.toDeque();
+  }
+
+  /**
+   * Same contract as {@link JVMHistory#getBackwards()}
+   *
+   * @return a snapshot of the entries after the current one, the nearest entry first
+   */
+  public Deque<HistoryState> getBackwards() {
+    return stacks.get().future.toDeque();
+  }
+
+  @Override
+  public void addInterceptor(HistoryInterceptor interceptor) {
+    if (nonNull(interceptor)) {
+      this.interceptors.add(interceptor);
+    }
+  }
+
+  @Override
+  public void removeInterceptor(HistoryInterceptor interceptor) {
+    if (nonNull(interceptor)) {
+      this.interceptors.remove(interceptor);
+    }
+  }
+
+  @Override
+  public void invoke() {
+    fireCurrentStateHistory();
+  }
+
+  @Override
+  public void reload() {
+    fireCurrentStateHistory();
+  }
+
+  private static final class HistoryListener {
+    private final StateListener listener;
+    private final TokenFilter tokenFilter;
+    private final boolean removeOnComplete;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private HistoryListener(
+        StateListener listener, TokenFilter tokenFilter, boolean removeOnComplete) {
+      this.listener = listener;
+      this.tokenFilter = tokenFilter;
+      this.removeOnComplete = removeOnComplete;
+    }
+  }
+
+  /**
+   * The plans resolved against one listeners snapshot and root path, published as a whole so a plan
+   * resolved against an older root path is never cached with the new one.
+   */
+  private static final class DispatchPlans {
+    private final HistoryListener[] listeners;
+    private final String rootPath;
+    private final Map<String, DispatchPlan<HistoryListener>> plans = new ConcurrentHashMap<>();
+
+    private DispatchPlans(HistoryListener[] listeners, String rootPath) {
+      this.listeners = listeners;
+      this.rootPath = rootPath;
+    }
+
+    /** Caches the plan, evicting an arbitrary plan once the cache is full */
+    private void put(String token, DispatchPlan<HistoryListener> plan) {
+      if (plans.size() >= DISPATCH_PLAN_CACHE_SIZE) {
+        Iterator<String> tokens = plans.keySet().iterator();
+        if (tokens.hasNext()) {
+          plans.remove(tokens.next());
+        }
+      }
+      plans.put(token, plan);
+    }
+  }
+
+  /** An immutable linked stack of history entries */
+  private static final class Entries {
+    private static final Entries EMPTY = new Entries(null, null, 0);
+
+    private final HistoryState head;
+    private final Entries tail;
+    private final int size;
+
+    private Entries(HistoryState head, Entries tail, int size) {
+      this.head = head;
+      this.tail = tail;
+      this.size = size;
+    }
+
+    private Entries push(HistoryState state) {
+      return new Entries(state, this, size + 1);
+    }
+
+    private Deque<HistoryState> toDeque() {
+      Deque<HistoryState> deque = new ArrayDeque<>(size);
+      for (Entries entries = this; entries.size > 0; entries = entries.tail) {
+        deque.addLast(entries.head);
+      }
+      return deque;
+    }
+  }
+
+  /** An immutable pair of the navigation stacks, swapped as a whole on each navigation */
+  private static final class Stacks {
+    private static final Stacks EMPTY = new Stacks(Entries.EMPTY, Entries.EMPTY, 0);
+
+    private final Entries past;
+    private final Entries future;
+    private final long sequence;
+    private final int size;
+
+    private Stacks(Entries past, Entries future, long sequence) {
+      this.past = past;
+      this.future = future;
+      this.sequence = sequence;
+      this.size = past.size + future.size;
+    }
+
+    private HistoryState current() {
+      return past.head;
+    }
+
+    private Stacks push(String token, StatePayload payload, boolean replace) {
+      long next = sequence + 1;
+      Entries base = replace && past.size > 0 ? past.tail : past;
+      return new Stacks(base.push(new HistoryState(token, payload, next)), Entries.EMPTY, next);
+    }
+
+    private Stacks back() {
+      if (past.size < 2) {
+        return null;
+      }
+      return new Stacks(past.tail, future.push(past.head), sequence);
+    }
+
+    private Stacks forward() {
+      if (future.size == 0) {
+        return null;
+      }
+      return new Stacks(past.push(future.head), future.tail, sequence);
+    }
+  }
+
+  private class ConcurrentState implements State {
+
+    private final HistoryState historyState;
+    private volatile NormalizedToken normalizedToken;
+
+    private ConcurrentState(HistoryState historyState) {
+      this.historyState = historyState;
+    }
+
+    private ConcurrentState(NormalizedToken normalizedToken, HistoryState historyState) {
+      this.normalizedToken = normalizedToken;
+      this.historyState = historyState;
+    }
+
+    @Override
+    public String rootPath() {
+      return getRootPath();
+    }
+
+    @Override
+    public HistoryToken token() {
+      return new StateHistoryToken(historyState.token);
+    }
+
+    @Override
+    public Optional<String> data() {
+      return Optional.ofNullable(historyState.getData());
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return Optional.ofNullable(historyState.payload).map(payload -> payload.value(codec));
+    }
+
+    @Override
+    public String title() {
+      return "";
+    }
+
+    @Override
+    public NormalizedToken normalizedToken() {
+      return normalizedToken;
+    }
+
+    @Override
+    public void setNormalizedToken(NormalizedToken normalizedToken) {
+      this.normalizedToken = normalizedToken;
+    }
+  }
+
+  /** An immutable history entry */
+  public static final class HistoryState {
+    private final String token;
+    private final StatePayload payload;
+    private final long sequence;
+
+    public HistoryState(String token, String data, long sequence) {
+      this(token, StatePayload.ofData(data), sequence);
+    }
+
+    /**
+     * @param token the entry token
+     * @param payload the entry {@link StatePayload}, kept as is without encoding
+     * @param sequence the entry navigation sequence
+     */
+    public HistoryState(String token, StatePayload payload, long sequence) {
+      this.token = token;
+      this.payload = payload;
+      this.sequence = sequence;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    public String getData() {
+      return isNull(payload) ? null : payload.data();
+    }
+
+    public StatePayload getPayload() {
+      return payload;
+    }
+
+    /**
+     * @return the position of the navigation that created this entry in the linearized order of all
+     *     navigations of the history instance.
+     */
+    public long getSequence() {
+      return sequence;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.dominokit.domino.history.AsyncHistoryInterceptor;
+import org.dominokit.domino.history.AsyncInterceptorChain;
+import org.dominokit.domino.history.InterceptorCompletion;
+import org.dominokit.domino.history.InterceptorScheduler;
+import org.dominokit.domino.history.TokenEvent;
+
+/**
+ * An {@link InterceptorScheduler} for {@link AsyncInterceptorChain} using a {@link
+ * ScheduledExecutorService}, the same executor can run blocking guards so that guards added with
+ * {@link AsyncInterceptorChain#addIndependent(AsyncHistoryInterceptor...)} run concurrently.
+ *
+ * <p>The continuations of asynchronous decisions and timeouts, including the navigations proceeding
+ * after them, run on the navigation executor, which should be the executor the history navigations
+ * are made on since {@link JVMHistory} is not thread safe.
+ */
+public class ExecutorInterceptorScheduler implements InterceptorScheduler {
+
+  private final ScheduledExecutorService executor;
+  private final Executor navigationExecutor;
+
+  /**
+   * Creates a scheduler running the continuations on the same executor as the timeouts and guards,
+   * only use it when the navigations are made on that executor as well.
+   *
+   * @param executor the {@link ScheduledExecutorService} for the timeouts and guards
+   */
+  public ExecutorInterceptorScheduler(ScheduledExecutorService executor) {
+    this(executor, executor);
+  }
+
+  /**
+   * @param executor the {@link ScheduledExecutorService} for the timeouts and guards
+   * @param navigationExecutor the {@link Executor} the history navigations are made on
+   */
+  public ExecutorInterceptorScheduler(
+      ScheduledExecutorService executor, Executor navigationExecutor) {
+    this.executor = executor;
+    this.navigationExecutor = navigationExecutor;
+  }
+
+  @Override
+  public ScheduledTask schedule(Runnable task, int delayMillis) {
+    ScheduledFuture<?> future = executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    return () -> future.cancel(false);
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    navigationExecutor.execute(task);
+  }
+
+  /**
+   * Adapts a blocking guard to an {@link AsyncHistoryInterceptor} evaluated on the executor, a
+   * guard that throws blocks the navigation.
+   *
+   * @param guard returns <b>true</b> to let the navigation proceed
+   * @return {@link AsyncHistoryInterceptor}
+   */
+  public AsyncHistoryInterceptor guard(Predicate<TokenEvent> guard) {
+    return tokenEvent -> {
+      InterceptorCompletion completion = InterceptorCompletion.create();
+      executor.execute(
+          () -> {
+            try {
+              if (guard.test(tokenEvent)) {
+                completion.proceed();
+              } else {
+                completion.block();
+              }
+            } catch (RuntimeException e) {
+              completion.block();
+              throw e;
+            }
+          });
+      return completion;
+    };
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.dominokit.domino.client.history.JVMHistory.HistoryState;
+import org.dominokit.domino.history.HistoryToken;
+import org.dominokit.domino.history.StateHistoryToken;
+import org.dominokit.domino.history.TokenFilter;
+
+/**
+ * An index over the entries of a {@link JVMHistory}, used to find the most recent entry before the
+ * current one by path prefix, by query parameter value or by a registered {@link TokenFilter}
+ * without scanning the history.
+ *
+ * <p>The index keeps, for every path prefix, query parameter value and registered filter, the
+ * numbers of the entries matching it in push order. It is updated when an entry is pushed or
+ * replaced, entries dropped from the history are removed from the index as it is updated and a
+ * lookup is a binary search of the matching entries numbers.
+ *
+ * <pre>
+ * TokenFilter orderDetails = TokenFilter.startsWithPathFilter("orders/details");
+ * HistoryIndex index = new HistoryIndex(history).register(orderDetails);
+ * index.lastMatching(orderDetails).ifPresent(match -&gt; history.go(match.getDelta()));
+ * </pre>
+ *
+ * <p>Tokens are matched the same way listeners match them, relative to the history root path.
+ */
+public class HistoryIndex {
+
+  private final JVMHistory history;
+  private final Map<String, Postings> paths = new HashMap<>();
+  private final Map<String, Postings> queries = new HashMap<>();
+  private final Map<TokenFilter, Postings> filters = new LinkedHashMap<>();
+  private final Deque<IndexedEntry> indexed = new ArrayDeque<>();
+
+  /**
+   * Indexes the entries of the history and keeps the index up to date with it
+   *
+   * @param history the {@link JVMHistory} to index
+   */
+  public HistoryIndex(JVMHistory history) {
+    this.history = history;
+    history.setIndex(this);
+    rebuild();
+  }
+
+  /**
+   * Registers a filter to be looked up by {@link #lastMatching(TokenFilter)}, the filter is
+   * evaluated once for every indexed entry.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @return same index instance
+   */
+  public HistoryIndex register(TokenFilter tokenFilter) {
+    if (!filters.containsKey(tokenFilter)) {
+      filters.put(tokenFilter, new Postings(null, tokenFilter));
+      rebuild();
+    }
+    return this;
+  }
+
+  /**
+   * @param prefix the path prefix, e.g <b>orders/details</b>
+   * @return the most recent entry before the current one that starts with the path prefix
+   */
+  public Optional<Match> lastWithPathPrefix(String prefix) {
+    return find(paths.get(String.join("/", new StateHistoryToken(prefix).paths())));
+  }
+
+  /**
+   * @param name the query parameter name
+   * @param value the query parameter value
+   * @return the most recent entry before the current one that has the query parameter value
+   */
+  public Optional<Match> lastWithQueryParameter(String name, String value) {
+    return find(queries.get(queryKey(name, value)));
+  }
+
+  /**
+   * @param tokenFilter a {@link TokenFilter} registered with {@link #register(TokenFilter)}
+   * @return the most recent entry before the current one that matches the filter
+   */
+  public Optional<Match> lastMatching(TokenFilter tokenFilter) {
+    Postings postings = filters.get(tokenFilter);
+    if (isNull(postings)) {
+      throw new IllegalArgumentException("Token filter is not registered in the history index.");
+    }
+    return find(postings);
+  }
+
+  /** Indexes the current entry of the history after it was pushed or replaced */
+  void indexCurrent(String token) {
+    long current = history.currentSequence();
+    removeBefore(history.firstSequence());
+    while (!indexed.isEmpty() && indexed.peekLast().sequence >= current) {
+      for (Postings postings : indexed.pollLast().postings) {
+        postings.pollLast();
+        release(postings);
+      }
+    }
+    index(current, token);
+  }
+
+  /** Indexes all the entries of the history again */
+  void rebuild() {
+    paths.clear();
+    queries.clear();
+    filters.replaceAll((tokenFilter, postings) -> new Postings(null, tokenFilter));
+    indexed.clear();
+    long first = history.firstSequence();
+    for (int i = 0; i < history.getHistoryEntriesCount(); i++) {
+      index(first + i, history.entryAt(first + i).getToken());
+    }
+  }
+
+  private void index(long sequence, String token) {
+    HistoryToken historyToken = new StateHistoryToken(history.getRootPath(), token);
+    List<Postings> matched = new ArrayList<>();
+
+    StringBuilder prefix = new StringBuilder();
+    for (String path : historyToken.paths()) {
+      if (prefix.length() > 0) {
+        prefix.append('/');
+      }
+      prefix.append(path);
+      add(postings(paths, prefix.toString()), sequence, matched);
+    }
+    historyToken
+        .queryParameters()
+        .forEach(
+            (name, values) -> {
+              for (String value : values) {
+                add(postings(queries, queryKey(name, value)), sequence, matched);
+              }
+            });
+    filters.forEach(
+        (tokenFilter, postings) -> {
+          if (tokenFilter.filter(historyToken)) {
+            add(postings, sequence, matched);
+          }
+        });
+
+    indexed.addLast(new IndexedEntry(sequence, matched.toArray(new Postings[0])));
+  }
+
+  private static void add(Postings postings, long sequence, List<Postings> matched) {
+    if (postings.isEmpty() || postings.last() != sequence) {
+      postings.addLast(sequence);
+      matched.add(postings);
+    }
+  }
+
+  private void removeBefore(long first) {
+    while (!indexed.isEmpty() && indexed.peekFirst().sequence < first) {
+      for (Postings postings : indexed.pollFirst().postings) {
+        postings.pollFirst();
+        release(postings);
+      }
+    }
+  }
+
+  private Optional<Match> find(Postings postings) {
+    if (isNull(postings) || history.getHistoryEntriesCount() == 0) {
+      return Optional.empty();
+    }
+    long current = history.currentSequence();
+    long sequence = postings.lastBefore(current);
+    if (sequence < history.firstSequence()) {
+      return Optional.empty();
+    }
+    return Optional.of(new Match(history.entryAt(sequence), (int) (sequence - current)));
+  }
+
+  private static Postings postings(Map<String, Postings> owner, String key) {
+    return owner.computeIfAbsent(key, k -> new Postings(owner, k));
+  }
+
+  private static void release(Postings postings) {
+    if (postings.isEmpty() && nonNull(postings.owner)) {
+      postings.owner.remove(postings.key);
+    }
+  }
+
+  private static String queryKey(String name, String value) {
+    return name + "=" + value;
+  }
+
+  /** An entry found by the index */
+  public static class Match {
+    private final HistoryState state;
+    private final int delta;
+
+    private Match(HistoryState state, int delta) {
+      this.state = state;
+      this.delta = delta;
+    }
+
+    /** @return the found entry */
+    public HistoryState getState() {
+      return state;
+    }
+
+    /** @return the delta to pass to {@link JVMHistory#go(int)} to navigate to the entry */
+    public int getDelta() {
+      return delta;
+    }
+  }
+
+  private static final class IndexedEntry {
+    private final long sequence;
+    private final Postings[] postings;
+
+    private IndexedEntry(long sequence, Postings[] postings) {
+      this.sequence = sequence;
+      this.postings = postings;
+    }
+  }
+
+  /** The ascending numbers of the entries matching a key, in a ring buffer */
+  private static final class Postings {
+    private final Map<?, Postings> owner;
+    private final Object key;
+    private long[] sequences = new long[4];
+    private int head;
+    private int size;
+
+    private Postings(Map<?, Postings> owner, Object key) {
+      this.owner = owner;
+      this.key = key;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private long last() {
+      return sequences[index(size - 1)];
+    }
+
+    private void addLast(long sequence) {
+      if (size == sequences.length) {
+        long[] grown = new long[sequences.length * 2];
+        for (int i = 0; i < size; i++) {
+          grown[i] = sequences[index(i)];
+        }
+        sequences = grown;
+        head = 0;
+      }
+      sequences[index(size++)] = sequence;
+    }
+
+    private void pollFirst() {
+      head = index(1);
+      size--;
+    }
+
+    private void pollLast() {
+      size--;
+    }
+
+    /** @return the greatest number less than the bound, <b>-1</b> if there is none */
+    private long lastBefore(long bound) {
+      int low = 0;
+      int high = size - 1;
+      long found = -1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        long sequence = sequences[index(middle)];
+        if (sequence < bound) {
+          found = sequence;
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return found;
+    }
+
+    private int index(int position) {
+      int index = head + position;
+      return index < sequences.length ? index : index - sequences.length;
+    }
+  }
+}
@@ -0,0 +1,677 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.dominokit.domino.history.NavigationStack;
+import org.dominokit.domino.history.StatePayload;
+
+/**
+ * A write-ahead journal of the navigations of a {@link JVMHistory}, used to recover the history
+ * entries after the process restarts.
+ *
+ * <p>Push, replace and go operations are appended to a memory-mapped segment file, appending only
+ * copies the record into the mapped memory and the segment is forced to disk in batches by a
+ * background task every flush interval. Once a segment is full the journal continues in a new
+ * segment and a background task folds the full segments into a checkpoint file, so recovery reads
+ * the checkpoint and replays only the segments written after it. Full segments are folded once they
+ * add up to half the checkpoint size, which keeps the compaction cost proportional to the appended
+ * records however large the history grows. A record torn by a crash is detected by its checksum and
+ * ends the replay of its segment.
+ *
+ * <pre>
+ * HistoryJournal journal = HistoryJournal.builder(sessionDirectory).build();
+ * JVMHistory history = new JVMHistory();
+ * journal.attach(history);
+ * </pre>
+ *
+ * <p>Entries payloads are journaled as their data strings. A navigation that cannot be journaled,
+ * like an entry that does not fit in a segment, is logged and fails the journal: it is detached
+ * from its history and journals nothing more, so the journal files recover the history as it was
+ * before that navigation instead of replaying the later moves on the wrong entries. The history
+ * keeps the navigation.
+ *
+ * <p>The background tasks run on a single thread owned by the journal, or on an executor shared by
+ * several journals set with {@link Builder#executor(ScheduledExecutorService)}.
+ */
+public class HistoryJournal implements AutoCloseable {
+
+  private static final Logger LOGGER = Logger.getLogger(HistoryJournal.class.getName());
+
+  /** The default size of a journal segment file in bytes */
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+
+  /** The default interval between two flushes of the journal to disk */
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+  private static final String CHECKPOINT_FILE = "checkpoint.bin";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int CHECKPOINT_MAGIC = 0x444a4331;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final byte PUSH = 1;
+  private static final byte REPLACE = 2;
+  private static final byte GO = 3;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long flushIntervalMillis;
+  private final ScheduledExecutorService background;
+  private final boolean ownsBackground;
+  private final Object backgroundLock = new Object();
+  private final Object taskLock = new Object();
+  private final CRC32C checksum = new CRC32C();
+
+  private int maxEntries = NavigationStack.UNBOUNDED;
+  private long segmentNumber = -1;
+  private MappedByteBuffer segment;
+  private FileChannel segmentChannel;
+  private boolean dirty;
+  private boolean closed;
+  private boolean failed;
+  private JVMHistory history;
+  private ScheduledFuture<?> flushTask;
+
+  /** Guarded by the background lock */
+  private int pendingTasks;
+
+  /** Only used by the background tasks, under the task lock */
+  private long unfoldedBytes;
+
+  private long checkpointBytes;
+
+  private HistoryJournal(Builder builder) {
+    this.directory = builder.directory;
+    this.segmentSize = builder.segmentSize;
+    this.flushIntervalMillis = builder.flushIntervalMillis;
+    this.ownsBackground = isNull(builder.executor);
+    this.background =
+        ownsBackground
+            ? Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                  Thread thread =
+                      new Thread(runnable, "history-journal-" + directory.getFileName());
+                  thread.setDaemon(true);
+                  return thread;
+                })
+            : builder.executor;
+  }
+
+  /**
+   * @param directory the directory of the journal files, created if missing
+   * @return a new {@link Builder}
+   */
+  public static Builder builder(Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Restores the entries recovered from the journal files into the history and journals its
+   * navigations from now on, the history should not have any entries yet.
+   *
+   * @param history the {@link JVMHistory} to recover and journal
+   */
+  public synchronized void attach(JVMHistory history) {
+    if (nonNull(segment)) {
+      throw new IllegalStateException("The journal is already attached to a history.");
+    }
+    this.maxEntries = history.getMaxEntries();
+    try {
+      Files.createDirectories(directory);
+      NavigationStack<JournalEntry> entries = recovered();
+      long lastFolded = readCheckpoint(entries);
+      List<Long> segments = segmentNumbers();
+      for (long number : segments) {
+        if (number > lastFolded) {
+          replay(segmentPath(number), entries);
+        }
+      }
+      restore(history, entries);
+      Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+      checkpointBytes = Files.exists(checkpoint) ? Files.size(checkpoint) : 0;
+
+      long last =
+          segments.isEmpty() ? lastFolded : Math.max(lastFolded, segments.get(segments.size() - 1));
+      openSegment(last + 1);
+      if (!segments.isEmpty()) {
+        runInBackground(() -> fold(last));
+      }
+      flushTask =
+          background.scheduleWithFixedDelay(
+              this::flushInBackground,
+              flushIntervalMillis,
+              flushIntervalMillis,
+              TimeUnit.MILLISECONDS);
+    } catch (IOException e) {
+      throw new JournalException("Failed to recover the history journal in " + directory, e);
+    }
+    this.history = history;
+    history.setJournal(this);
+  }
+
+  /**
+   * Appends a push or replace of an entry
+   *
+   * @param replace <b>true</b> if the entry replaces the current one
+   * @param token the entry token
+   * @param payload the entry payload, can be null
+   */
+  void append(boolean replace, String token, StatePayload payload) {
+    byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+    String data = isNull(payload) ? null : payload.data();
+    byte[] dataBytes = isNull(data) ? null : data.getBytes(StandardCharsets.UTF_8);
+    int length = 1 + 4 + tokenBytes.length + 4 + (isNull(dataBytes) ? 0 : dataBytes.length);
+    synchronized (this) {
+      if (failed) {
+        return;
+      }
+      try {
+        ByteBuffer buffer = reserve(length);
+        int start = buffer.position();
+        buffer.put(replace ? REPLACE : PUSH);
+        buffer.putInt(tokenBytes.length).put(tokenBytes);
+        if (isNull(dataBytes)) {
+          buffer.putInt(-1);
+        } else {
+          buffer.putInt(dataBytes.length).put(dataBytes);
+        }
+        seal(buffer, start, length);
+      } catch (RuntimeException e) {
+        fail("Failed to journal the navigation to " + token, e);
+      }
+    }
+  }
+
+  /**
+   * Appends a move of the current entry
+   *
+   * @param delta the number of entries moved, negative when moving back
+   */
+  synchronized void appendGo(int delta) {
+    if (failed) {
+      return;
+    }
+    try {
+      ByteBuffer buffer = reserve(5);
+      int start = buffer.position();
+      buffer.put(GO).putInt(delta);
+      seal(buffer, start, 5);
+    } catch (RuntimeException e) {
+      fail("Failed to journal the navigation by " + delta, e);
+    }
+  }
+
+  /** Stops journaling and detaches the journal so no later navigation is journaled */
+  private void fail(String message, RuntimeException error) {
+    LOGGER.log(Level.SEVERE, message + ", the journal is detached from its history", error);
+    failed = true;
+    if (nonNull(history)) {
+      history.setJournal(null);
+    }
+  }
+
+  /**
+   * @return <b>true</b> if a navigation could not be journaled and the journal was detached from
+   *     its history
+   */
+  public synchronized boolean isFailed() {
+    return failed;
+  }
+
+  /** Forces the appended records to disk */
+  public void flush() {
+    MappedByteBuffer toForce;
+    synchronized (this) {
+      toForce = segment;
+      dirty = false;
+    }
+    if (nonNull(toForce)) {
+      toForce.force();
+    }
+  }
+
+  /**
+   * Detaches the journal from its history, flushes it and waits for its background tasks, a journal
+   * owning its background thread stops it while a shared executor is left running.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    if (nonNull(history)) {
+      history.setJournal(null);
+    }
+    if (nonNull(flushTask)) {
+      flushTask.cancel(false);
+    }
+    flush();
+    try {
+      awaitBackgroundTasks(TimeUnit.MINUTES.toMillis(1));
+      if (ownsBackground) {
+        background.shutdown();
+        background.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      synchronized (this) {
+        if (nonNull(segmentChannel)) {
+          segmentChannel.close();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      throw new JournalException("Failed to close the history journal in " + directory, e);
+    }
+  }
+
+  /** @return the directory of the journal files */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  private ByteBuffer reserve(int length) {
+    if (closed) {
+      throw new IllegalStateException("The history journal is closed.");
+    }
+    if (RECORD_HEADER_SIZE + length > segmentSize) {
+      throw new JournalException(
+          "Journal record of " + length + " bytes does not fit in a segment of " + segmentSize);
+    }
+    if (segment.remaining() < RECORD_HEADER_SIZE + length) {
+      rollSegment();
+    }
+    segment.position(segment.position() + RECORD_HEADER_SIZE);
+    return segment;
+  }
+
+  private void seal(ByteBuffer buffer, int start, int length) {
+    checksum.reset();
+    ByteBuffer body = buffer.duplicate();
+    body.position(start).limit(start + length);
+    checksum.update(body);
+    buffer.putInt(start - RECORD_HEADER_SIZE + 4, (int) checksum.getValue());
+    buffer.putInt(start - RECORD_HEADER_SIZE, length);
+    dirty = true;
+  }
+
+  private void rollSegment() {
+    long full = segmentNumber;
+    MappedByteBuffer fullSegment = segment;
+    try {
+      segmentChannel.close();
+      openSegment(full + 1);
+    } catch (IOException e) {
+      throw new JournalException("Failed to roll the history journal in " + directory, e);
+    }
+    runInBackground(
+        () -> {
+          fullSegment.force();
+          unfoldedBytes += segmentSize;
+          if (unfoldedBytes >= Math.max(segmentSize, checkpointBytes / 2)) {
+            fold(full);
+          }
+        });
+  }
+
+  private void openSegment(long number) throws IOException {
+    segmentChannel =
+        FileChannel.open(
+            segmentPath(number),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    segmentNumber = number;
+  }
+
+  /**
+   * Runs a background task, the tasks of a journal never run concurrently even on a shared executor
+   */
+  private void runInBackground(Runnable task) {
+    synchronized (backgroundLock) {
+      pendingTasks++;
+    }
+    try {
+      background.execute(
+          () -> {
+            try {
+              synchronized (taskLock) {
+                task.run();
+              }
+            } finally {
+              synchronized (backgroundLock) {
+                pendingTasks--;
+                backgroundLock.notifyAll();
+              }
+            }
+          });
+    } catch (RuntimeException e) {
+      synchronized (backgroundLock) {
+        pendingTasks--;
+      }
+      throw e;
+    }
+  }
+
+  private void awaitBackgroundTasks(long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (backgroundLock) {
+      long remaining;
+      while (pendingTasks > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+        backgroundLock.wait(remaining);
+      }
+    }
+  }
+
+  private void flushInBackground() {
+    boolean needed;
+    synchronized (this) {
+      needed = dirty;
+    }
+    if (needed) {
+      flush();
+    }
+  }
+
+  /** Folds the segments up to the number into the checkpoint and deletes them */
+  private void fold(long upTo) {
+    try {
+      NavigationStack<JournalEntry> entries = recovered();
+      long lastFolded = readCheckpoint(entries);
+      List<Long> folded = new ArrayList<>();
+      for (long number : segmentNumbers()) {
+        if (number > lastFolded && number <= upTo) {
+          replay(segmentPath(number), entries);
+          folded.add(number);
+        }
+      }
+      if (folded.isEmpty()) {
+        return;
+      }
+      checkpointBytes = writeCheckpoint(entries, folded.get(folded.size() - 1));
+      unfoldedBytes = 0;
+      for (long number : folded) {
+        Files.deleteIfExists(segmentPath(number));
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.log(Level.SEVERE, "Failed to compact the history journal in " + directory, e);
+    }
+  }
+
+  private NavigationStack<JournalEntry> recovered() {
+    return new NavigationStack<>(maxEntries);
+  }
+
+  private void replay(Path path, NavigationStack<JournalEntry> entries) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+    CRC32C recordChecksum = new CRC32C();
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      int length = buffer.getInt();
+      int expected = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        return;
+      }
+      ByteBuffer body = buffer.slice();
+      body.limit(length);
+      recordChecksum.reset();
+      recordChecksum.update(body.duplicate());
+      if ((int) recordChecksum.getValue() != expected) {
+        return;
+      }
+      buffer.position(buffer.position() + length);
+      byte operation = body.get();
+      if (operation == GO) {
+        entries.go(body.getInt());
+      } else {
+        JournalEntry entry = new JournalEntry(readBytes(body), readBytes(body));
+        if (operation == REPLACE) {
+          entries.replace(entry);
+        } else {
+          entries.push(entry);
+        }
+      }
+    }
+  }
+
+  /** @return the last segment folded into the checkpoint, <b>-1</b> without a checkpoint */
+  private long readCheckpoint(NavigationStack<JournalEntry> entries) throws IOException {
+    Path path = directory.resolve(CHECKPOINT_FILE);
+    if (!Files.exists(path)) {
+      return -1;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+    if (buffer.getInt() != CHECKPOINT_MAGIC) {
+      throw new JournalException("Not a history journal checkpoint : " + path);
+    }
+    long lastFolded = buffer.getLong();
+    int cursor = buffer.getInt();
+    int size = buffer.getInt();
+    for (int i = 0; i < size; i++) {
+      entries.push(new JournalEntry(readBytes(buffer), readBytes(buffer)));
+    }
+    goTo(entries, cursor - (size - entries.size()));
+    return lastFolded;
+  }
+
+  /** @return the size of the written checkpoint */
+  private long writeCheckpoint(NavigationStack<JournalEntry> entries, long lastFolded)
+      throws IOException {
+    List<JournalEntry> ordered = ordered(entries);
+    int length = 4 + 8 + 4 + 4;
+    List<byte[]> encoded = new ArrayList<>(ordered.size() * 2);
+    for (JournalEntry entry : ordered) {
+      encoded.add(entry.token);
+      encoded.add(entry.data);
+      length += 8 + entry.token.length + (isNull(entry.data) ? 0 : entry.data.length);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.putInt(CHECKPOINT_MAGIC).putLong(lastFolded);
+    buffer.putInt(entries.getCursor()).putInt(ordered.size());
+    for (byte[] bytes : encoded) {
+      if (isNull(bytes)) {
+        buffer.putInt(-1);
+      } else {
+        buffer.putInt(bytes.length).put(bytes);
+      }
+    }
+    Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(
+        temporary,
+        directory.resolve(CHECKPOINT_FILE),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return length;
+  }
+
+  /** Moves to the position, clamped to the entries, counted from the oldest entry */
+  private static void goTo(NavigationStack<JournalEntry> entries, int position) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    int target = Math.max(0, Math.min(position, entries.size() - 1));
+    entries.go(target - entries.getCursor());
+  }
+
+  private static List<JournalEntry> ordered(NavigationStack<JournalEntry> entries) {
+    List<JournalEntry> ordered = new ArrayList<>(entries.size());
+    Deque<JournalEntry> back = entries.toBackDeque();
+    for (Iterator<JournalEntry> iterator = back.descendingIterator(); iterator.hasNext(); ) {
+      ordered.add(iterator.next());
+    }
+    ordered.addAll(entries.toForwardDeque());
+    return ordered;
+  }
+
+  private static void restore(JVMHistory history, NavigationStack<JournalEntry> entries) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    List<JournalEntry> ordered = ordered(entries);
+    List<String> tokens = new ArrayList<>(ordered.size());
+    List<String> data = new ArrayList<>(ordered.size());
+    for (JournalEntry entry : ordered) {
+      tokens.add(new String(entry.token, StandardCharsets.UTF_8));
+      data.add(isNull(entry.data) ? null : new String(entry.data, StandardCharsets.UTF_8));
+    }
+    history.restore(tokens, data, entries.getCursor());
+  }
+
+  private static byte[] readBytes(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private List<Long> segmentNumbers() throws IOException {
+    List<Long> numbers = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(
+          file -> {
+            String name = file.getFileName().toString();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+              numbers.add(
+                  Long.parseLong(
+                      name.substring(
+                          SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+          });
+    }
+    numbers.sort(Long::compare);
+    return numbers;
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  /** Configures a {@link HistoryJournal} */
+  public static class Builder {
+    private final Path directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private ScheduledExecutorService executor;
+
+    private Builder(Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * @param segmentSize the size of a journal segment file in bytes, a full segment is folded into
+     *     the checkpoint in the background
+     * @return same builder instance
+     */
+    public Builder segmentSize(int segmentSize) {
+      if (segmentSize < 64) {
+        throw new IllegalArgumentException("Journal segment size is too small : " + segmentSize);
+      }
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * @param flushIntervalMillis the interval between two flushes of the journal to disk
+     * @return same builder instance
+     */
+    public Builder flushIntervalMillis(long flushIntervalMillis) {
+      if (flushIntervalMillis < 1) {
+        throw new IllegalArgumentException(
+            "Journal flush interval must be positive : " + flushIntervalMillis);
+      }
+      this.flushIntervalMillis = flushIntervalMillis;
+      return this;
+    }
+
+    /**
+     * @param executor a {@link ScheduledExecutorService} shared by several journals to flush and
+     *     fold them, it is not shut down when the journal is closed. By default each journal starts
+     *     its own background thread
+     * @return same builder instance
+     */
+    public Builder executor(ScheduledExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** @return a new {@link HistoryJournal} */
+    public HistoryJournal build() {
+      return new HistoryJournal(this);
+    }
+  }
+
+  /** A journaled entry kept as its UTF-8 bytes, only decoded when restoring the history */
+  private static final class JournalEntry {
+    private final byte[] token;
+    private final byte[] data;
+
+    private JournalEntry(byte[] token, byte[] data) {
+      this.token = token;
+      this.data = data;
+    }
+  }
+
+  /** Thrown when the journal files cannot be read or written */
+  public static class JournalException extends RuntimeException {
+    public JournalException(String message) {
+      super(message);
+    }
+
+    public JournalException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.dominokit.domino.client.history.JVMHistory.HistoryState;
+
+/**
+ * A compact binary snapshot of a {@link JVMHistory}, used to move a session history between
+ * processes.
+ *
+ * <p>A snapshot holds the root path, the maximum number of entries, the entries and the position of
+ * the current entry. The tokens path segments are written once in a dictionary and each entry
+ * refers to its segments by their index, all numbers are written as variable length integers so a
+ * typical session snapshot takes a few bytes per entry. Snapshots can be encoded to and decoded
+ * from a {@link ByteBuffer} or streamed through a channel in small chunks.
+ *
+ * <pre>
+ * ByteBuffer snapshot = HistorySnapshot.encode(history);
+ * JVMHistory migrated = new JVMHistory();
+ * HistorySnapshot.decode(snapshot, migrated);
+ * </pre>
+ *
+ * <p>Entries payloads are written as their data strings, and restoring a snapshot does not call the
+ * history interceptors or listeners.
+ */
+public class HistorySnapshot {
+
+  /** The size of the chunks written to and read from a channel */
+  public static final int CHUNK_SIZE = 8 * 1024;
+
+  /** The maximum length or count read from a streamed snapshot, protects from malformed input */
+  public static final int MAX_STREAMED_LENGTH = 16 * 1024 * 1024;
+
+  private static final int MAGIC = 0x44485331;
+  private static final int VERSION = 1;
+  private static final int INITIAL_SIZE = 512;
+
+  private HistorySnapshot() {}
+
+  /**
+   * @param history the {@link JVMHistory} to snapshot
+   * @return a buffer holding the snapshot, ready to be read
+   */
+  public static ByteBuffer encode(JVMHistory history) {
+    SnapshotWriter writer = new SnapshotWriter(ByteBuffer.allocate(INITIAL_SIZE), null);
+    write(history, writer);
+    ByteBuffer buffer = writer.buffer;
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Streams the snapshot of the history to the channel
+   *
+   * @param history the {@link JVMHistory} to snapshot
+   * @param channel the channel to write the snapshot to, it is not closed
+   */
+  public static void encode(JVMHistory history, WritableByteChannel channel) {
+    SnapshotWriter writer = new SnapshotWriter(ByteBuffer.allocate(CHUNK_SIZE), channel);
+    write(history, writer);
+    writer.flush();
+  }
+
+  /**
+   * Restores a snapshot into a history that has no entries
+   *
+   * @param buffer the buffer holding the snapshot from its position, the position is moved past the
+   *     snapshot
+   * @param history the {@link JVMHistory} to restore the snapshot into
+   */
+  public static void decode(ByteBuffer buffer, JVMHistory history) {
+    read(new SnapshotReader(buffer, null), history);
+  }
+
+  /**
+   * Restores a snapshot streamed from the channel into a history that has no entries. The channel
+   * is read in chunks of {@link #CHUNK_SIZE} bytes, so it must hold only the snapshot, bytes
+   * following the snapshot may be consumed and dropped.
+   *
+   * @param channel the channel to read the snapshot from, it is not closed
+   * @param history the {@link JVMHistory} to restore the snapshot into
+   */
+  public static void decode(ReadableByteChannel channel, JVMHistory history) {
+    ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    buffer.limit(0);
+    read(new SnapshotReader(buffer, channel), history);
+  }
+
+  private static void write(JVMHistory history, SnapshotWriter writer) {
+    List<HistoryState> entries = new ArrayList<>(history.getHistoryEntriesCount());
+    Deque<HistoryState> back = history.getForwards();
+    for (Iterator<HistoryState> iterator = back.descendingIterator(); iterator.hasNext(); ) {
+      entries.add(iterator.next());
+    }
+    entries.addAll(history.getBackwards());
+
+    Map<String, Integer> segmentIds = new HashMap<>();
+    List<String> segments = new ArrayList<>();
+    int[][] codes = new int[entries.size()][];
+    for (int i = 0; i < entries.size(); i++) {
+      codes[i] = encodeToken(entries.get(i).getToken(), segmentIds, segments);
+    }
+
+    writer.putInt(MAGIC);
+    writer.putVarint(VERSION);
+    writer.putString(history.getRootPath());
+    writer.putVarint(history.getMaxEntries());
+    writer.putVarint(segments.size());
+    for (String segment : segments) {
+      writer.putString(segment);
+    }
+    writer.putVarint(entries.size());
+    writer.putVarint(Math.max(0, back.size() - 1));
+    for (int i = 0; i < entries.size(); i++) {
+      writer.putVarint(codes[i].length);
+      for (int id : codes[i]) {
+        writer.putVarint(id);
+      }
+      writer.putNullableString(entries.get(i).getData());
+    }
+  }
+
+  private static void read(SnapshotReader reader, JVMHistory history) {
+    if (reader.getInt() != MAGIC) {
+      throw new SnapshotException("Not a history snapshot.");
+    }
+    int version = reader.getVarint();
+    if (version != VERSION) {
+      throw new SnapshotException("Unsupported history snapshot version : " + version);
+    }
+    String rootPath = reader.getString();
+    int maxEntries = reader.getVarint();
+    String[] segments = new String[reader.getLength()];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = reader.getString();
+    }
+    int size = reader.getLength();
+    int cursor = reader.getVarint();
+    List<String> tokens = new ArrayList<>(size);
+    List<String> data = new ArrayList<>(size);
+    StringBuilder token = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      token.setLength(0);
+      int count = reader.getLength();
+      for (int j = 0; j < count; j++) {
+        if (j > 0) {
+          token.append('/');
+        }
+        token.append(segment(segments, reader.getVarint()));
+      }
+      tokens.add(token.toString());
+      data.add(reader.getNullableString());
+    }
+    if (size > 0 && cursor >= size) {
+      throw new SnapshotException("History snapshot cursor is out of range : " + cursor);
+    }
+
+    history.setMaxEntries(maxEntries);
+    history.restore(tokens, data, cursor);
+    history.setRootPath(rootPath);
+  }
+
+  private static int[] encodeToken(
+      String token, Map<String, Integer> segmentIds, List<String> segments) {
+    int count = 1;
+    for (int i = 0; i < token.length(); i++) {
+      if (token.charAt(i) == '/') {
+        count++;
+      }
+    }
+    int[] code = new int[count];
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = token.indexOf('/', start);
+      if (end < 0) {
+        end = token.length();
+      }
+      String segment = token.substring(start, end);
+      Integer id = segmentIds.get(segment);
+      if (isNull(id)) {
+        id = segments.size();
+        segmentIds.put(segment, id);
+        segments.add(segment);
+      }
+      code[i] = id;
+      start = end + 1;
+    }
+    return code;
+  }
+
+  private static String segment(String[] segments, int id) {
+    if (id >= segments.length) {
+      throw new SnapshotException("History snapshot segment is out of range : " + id);
+    }
+    return segments[id];
+  }
+
+  private static class SnapshotWriter {
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+
+    private SnapshotWriter(ByteBuffer buffer, WritableByteChannel channel) {
+      this.buffer = buffer;
+      this.channel = channel;
+    }
+
+    private void putInt(int value) {
+      ensure(4);
+      buffer.putInt(value);
+    }
+
+    private void putVarint(int value) {
+      ensure(5);
+      while ((value & ~0x7f) != 0) {
+        buffer.put((byte) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      buffer.put((byte) value);
+    }
+
+    private void putString(String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putVarint(bytes.length);
+      putBytes(bytes);
+    }
+
+    /** Writes the length plus one, so a <b>null</b> string is written as <b>0</b> */
+    private void putNullableString(String value) {
+      if (isNull(value)) {
+        putVarint(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putVarint(bytes.length + 1);
+      putBytes(bytes);
+    }
+
+    private void putBytes(byte[] bytes) {
+      int offset = 0;
+      while (offset < bytes.length) {
+        ensure(1);
+        int length = Math.min(buffer.remaining(), bytes.length - offset);
+        buffer.put(bytes, offset, length);
+        offset += length;
+      }
+    }
+
+    private void ensure(int length) {
+      if (buffer.remaining() >= length) {
+        return;
+      }
+      if (nonNull(channel)) {
+        flush();
+        return;
+      }
+      ByteBuffer grown =
+          ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
+
+    private void flush() {
+      buffer.flip();
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      } catch (IOException e) {
+        throw new SnapshotException("Failed to write the history snapshot", e);
+      }
+      buffer.clear();
+    }
+  }
+
+  private static class SnapshotReader {
+    private final ByteBuffer buffer;
+    private final ReadableByteChannel channel;
+
+    private SnapshotReader(ByteBuffer buffer, ReadableByteChannel channel) {
+      this.buffer = buffer;
+      this.channel = channel;
+    }
+
+    private int getInt() {
+      ensure(4);
+      return buffer.getInt();
+    }
+
+    private int getVarint() {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        ensure(1);
+        byte next = buffer.get();
+        value |= (next & 0x7f) << shift;
+        if (next >= 0) {
+          return value;
+        }
+      }
+      throw new SnapshotException("Malformed history snapshot variable length integer.");
+    }
+
+    /**
+     * Reads a length or a count of items taking at least one byte each, it cannot exceed the bytes
+     * left in a buffer or {@link #MAX_STREAMED_LENGTH} for a channel
+     */
+    private int getLength() {
+      return checkLength(getVarint());
+    }
+
+    private int checkLength(int length) {
+      int limit = isNull(channel) ? buffer.remaining() : MAX_STREAMED_LENGTH;
+      if (length < 0 || length > limit) {
+        throw new SnapshotException("Malformed history snapshot length : " + length);
+      }
+      return length;
+    }
+
+    private String getString() {
+      return new String(getBytes(getLength()), StandardCharsets.UTF_8);
+    }
+
+    private String getNullableString() {
+      int length = getVarint();
+      if (length == 0) {
+        return null;
+      }
+      return new String(getBytes(checkLength(length - 1)), StandardCharsets.UTF_8);
+    }
+
+    private byte[] getBytes(int length) {
+      byte[] bytes = new byte[length];
+      int offset = 0;
+      while (offset < length) {
+        ensure(1);
+        int count = Math.min(buffer.remaining(), length - offset);
+        buffer.get(bytes, offset, count);
+        offset += count;
+      }
+      return bytes;
+    }
+
+    private void ensure(int length) {
+      if (buffer.remaining() >= length) {
+        return;
+      }
+      if (isNull(channel)) {
+        throw new SnapshotException("Truncated history snapshot.");
+      }
+      buffer.compact();
+      try {
+        while (buffer.position() < length) {
+          if (channel.read(buffer) < 0) {
+            throw new SnapshotException("Truncated history snapshot.");
+          }
+        }
+      } catch (IOException e) {
+        throw new SnapshotException("Failed to read the history snapshot", e);
+      } finally {
+        buffer.flip();
+      }
+    }
+  }
+
+  /** Thrown when a snapshot cannot be read or written */
+  public static class SnapshotException extends RuntimeException {
+    public SnapshotException(String message) {
+      super(message);
+    }
+
+    public SnapshotException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -19,6 +19,9 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.dominokit.domino.history.*;
 
 /**
@@ -27,12 +30,22 @@ import org.dominokit.domino.history.*;
  */
 public class JVMHistory implements AppHistory {
 
-  private Set<HistoryListener> listeners = new HashSet<>();
-  private Deque<HistoryState> forwards = new LinkedList<>();
-  private Deque<HistoryState> backwards = new LinkedList<>();
+  private final ListenerRegistry<HistoryListener> listeners =
+      new ListenerRegistry<>(new HistoryListener[0]);
+  private final CompactEntryStore<HistoryState> entries =
+      new CompactEntryStore<>(HistoryState::new);
   private String rootPath;
 
-  private List<HistoryInterceptor> interceptors = new ArrayList<>();
+  private final InterceptorRegistry interceptors = new InterceptorRegistry();
+  private final DispatchPlanCache<HistoryListener> dispatchPlans = new DispatchPlanCache<>();
+  private Executor dispatchExecutor;
+  private boolean orderedListeners;
+  private CompletableFuture<Void> lastDispatch = CompletableFuture.completedFuture(null);
+  private final NavigationBatch<PendingCallback> batch = new NavigationBatch<>();
+  private InterceptorScheduler coalescingScheduler;
+  private InterceptorScheduler.ScheduledTask scheduledFlush;
+  private HistoryJournal journal;
+  private HistoryIndex index;
 
   public JVMHistory() {
     this("");
@@ -91,7 +104,25 @@ public class JVMHistory implements AppHistory {
   @Override
   public DirectState listen(
       TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
-    listeners.add(new HistoryListener(listener, tokenFilter, removeOnComplete));
+    return listen(tokenFilter, listener, removeOnComplete, DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter with the specified priority and will be removed after being fired if
+   * {removeOnComplete} is true. When listeners are run by a dispatch executor all the matching
+   * listeners are called and {@link State#stopPropagation()} is ignored.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @param priority the listener priority, higher priority listeners are called first
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete, int priority) {
+    listeners.add(new HistoryListener(listener, tokenFilter, removeOnComplete), priority);
     return new DominoDirectState(tokenFilter, currentState(), listener);
   }
 
@@ -102,46 +133,157 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void removeListener(StateListener listener) {
-    listeners.remove(listener);
+    listeners.removeIf(historyListener -> historyListener.listener == listener);
   }
 
   private State currentState() {
-    if (forwards.isEmpty()) return new JVMState(nullState());
-    return new JVMState(forwards.peek());
+    if (entries.isEmpty()) return new JVMState(nullState());
+    return new JVMState(entries.current());
   }
 
   private HistoryState nullState() {
     return new HistoryState("", "");
   }
 
-  private void inform(HistoryState state) {
+  private CompletableFuture<Void> inform(HistoryState state) {
     if (!isSameRoot(state.token)) {
-      return;
+      return CompletableFuture.completedFuture(null);
+    }
+
+    CompletableFuture<Void> dispatched;
+    List<HistoryListener> completedListeners;
+    if (nonNull(dispatchExecutor)) {
+      DispatchPlan<HistoryListener> plan = dispatchPlan(state.token);
+      dispatched = dispatchConcurrently(plan, state.payload);
+      lastDispatch = dispatched;
+      completedListeners = plan.getCompletedListeners();
+    } else {
+      dispatched = CompletableFuture.completedFuture(null);
+      completedListeners = dispatch(state);
+    }
+
+    if (!completedListeners.isEmpty()) {
+      listeners.removeAll(completedListeners);
+    }
+    return dispatched;
+  }
+
+  /**
+   * Calls the matching listeners in priority order until one of them stops the propagation. When
+   * the token has no cached plan the filters are evaluated while dispatching, so the filters of the
+   * listeners after the one stopping the propagation are never evaluated, and the plan is only
+   * cached if it was resolved completely.
+   *
+   * @return the called listeners that should be removed
+   */
+  private List<HistoryListener> dispatch(HistoryState state) {
+    String token = state.token;
+    Propagation propagation = new Propagation();
+    DispatchPlan<HistoryListener> plan = dispatchPlans.get(token, listeners.getVersion());
+    if (nonNull(plan)) {
+      int called = 0;
+      while (called < plan.size() && !propagation.stopped) {
+        call(plan.getListener(called), plan.getNormalizedToken(called), state.payload, propagation);
+        called++;
+      }
+      return plan.getCompletedListeners(called);
     }
 
-    List<HistoryListener> completedListeners = new ArrayList<>();
-    listeners.stream()
-        .filter(
-            listener -> {
-              NormalizedToken normalized = getNormalizedToken(rootPath, state.token, listener);
-              if (isNull(normalized)) {
-                normalized = new DefaultNormalizedToken(state.token);
+    int version = listeners.getVersion();
+    plan = new DispatchPlan<>();
+    for (HistoryListener listener : listeners.snapshot()) {
+      NormalizedToken normalized = match(token, listener);
+      if (nonNull(normalized)) {
+        plan.add(listener, normalized, listener.isRemoveOnComplete());
+        call(listener, normalized, state.payload, propagation);
+        if (propagation.stopped) {
+          return plan.getCompletedListeners();
+        }
+      }
+    }
+    dispatchPlans.put(token, version, plan);
+    return plan.getCompletedListeners();
+  }
+
+  private void call(
+      HistoryListener listener,
+      NormalizedToken normalized,
+      StatePayload payload,
+      Propagation propagation) {
+    listener.listener.onPopState(
+        new JVMState(
+            normalized, new HistoryState(normalized.getToken().value(), payload), propagation));
+  }
+
+  private CompletableFuture<Void> dispatchConcurrently(
+      DispatchPlan<HistoryListener> plan, StatePayload payload) {
+    CompletableFuture<?>[] calls = new CompletableFuture<?>[plan.size()];
+    for (int i = 0; i < plan.size(); i++) {
+      HistoryListener listener = plan.getListener(i);
+      NormalizedToken normalized = plan.getNormalizedToken(i);
+      State listenerState =
+          new JVMState(
+              normalized,
+              new HistoryState(normalized.getToken().value(), payload),
+              new Propagation());
+      Runnable call = () -> listener.listener.onPopState(listenerState);
+      if (orderedListeners) {
+        listener.lastCall =
+            listener.lastCall.handle((result, error) -> null).thenRunAsync(call, dispatchExecutor);
+        calls[i] = listener.lastCall;
+      } else {
+        calls[i] = CompletableFuture.runAsync(call, dispatchExecutor);
+      }
+    }
+
+    return CompletableFuture.allOf(calls)
+        .handle(
+            (result, error) -> {
+              if (isNull(error)) {
+                return null;
               }
-              return listener.tokenFilter.filter(
-                  new JVMState(new HistoryState(normalized.getToken().value(), "")).token());
-            })
-        .forEach(
-            listener -> {
-              if (listener.isRemoveOnComplete()) {
-                completedListeners.add(listener);
+              DispatchException dispatchException = new DispatchException();
+              for (CompletableFuture<?> call : calls) {
+                try {
+                  call.join();
+                } catch (CompletionException callError) {
+                  dispatchException.addSuppressed(callError.getCause());
+                }
               }
-
-              NormalizedToken normalized = getNormalizedToken(rootPath, state.token, listener);
-              listener.listener.onPopState(
-                  new JVMState(normalized, new HistoryState(normalized.getToken().value(), "")));
+              throw dispatchException;
             });
+  }
 
-    listeners.removeAll(completedListeners);
+  private DispatchPlan<HistoryListener> dispatchPlan(String token) {
+    DispatchPlan<HistoryListener> plan = dispatchPlans.get(token, listeners.getVersion());
+    if (nonNull(plan)) {
+      return plan;
+    }
+
+    plan = new DispatchPlan<>();
+    for (HistoryListener listener : listeners.snapshot()) {
+      NormalizedToken normalized = match(token, listener);
+      if (nonNull(normalized)) {
+        plan.add(listener, normalized, listener.isRemoveOnComplete());
+      }
+    }
+    dispatchPlans.put(token, listeners.getVersion(), plan);
+    return plan;
+  }
+
+  /**
+   * @return the token normalized for the listener, or <b>null</b> if the listener does not match
+   */
+  private NormalizedToken match(String token, HistoryListener listener) {
+    NormalizedToken normalized = getNormalizedToken(rootPath, token, listener);
+    if (isNull(normalized)) {
+      normalized = new DefaultNormalizedToken(token);
+    }
+    if (listener.tokenFilter.filter(
+        new JVMState(new HistoryState(normalized.getToken().value(), "")).token())) {
+      return normalized;
+    }
+    return null;
   }
 
   private boolean isSameRoot(String token) {
@@ -159,31 +301,129 @@ public class JVMHistory implements AppHistory {
   /** Go back one step simulating a back button */
   @Override
   public void back() {
-    if (!backwards.isEmpty()) {
-      final HistoryState state = backwards.pop();
-      forwards.push(state);
-      inform(state);
-    }
+    go(-1);
   }
 
   /** Go forward one step simulating a forward button */
   @Override
   public void forward() {
-    if (!forwards.isEmpty()) {
-      final HistoryState state = forwards.pop();
-      backwards.push(state);
+    go(1);
+  }
+
+  /**
+   * Moves any number of entries back or forward and calls the listeners with the final state only,
+   * moving outside the history entries does nothing. A batched or coalesced navigation still
+   * pending is applied first, so the move happens from the entry it adds.
+   *
+   * @param delta the number of entries to move, negative to go back
+   */
+  @Override
+  public void go(int delta) {
+    applyPendingNavigation();
+    HistoryState state = entries.go(delta);
+    if (nonNull(state)) {
+      if (nonNull(journal)) {
+        journal.appendGo(delta);
+      }
       inform(state);
     }
   }
 
   /**
-   * The count if the current history entries
+   * The count of the history entries, including the current entry and the entries after it. Before
+   * the entries were kept in a {@link NavigationStack} this only counted the entries after the
+   * current one.
    *
    * @return int
    */
   @Override
   public int getHistoryEntriesCount() {
-    return backwards.size();
+    return entries.size();
+  }
+
+  /**
+   * Sets the maximum number of history entries to keep, the oldest entries are evicted once the
+   * history holds that many entries. The history is unbounded by default. Lowering the maximum
+   * never evicts the current entry, the entries after it are dropped instead when needed.
+   *
+   * @param maxEntries the maximum number of entries
+   */
+  public void setMaxEntries(int maxEntries) {
+    entries.setMaxSize(maxEntries);
+  }
+
+  /** @return the maximum number of history entries to keep */
+  public int getMaxEntries() {
+    return entries.getMaxSize();
+  }
+
+  /** Journals the navigations of this history, see {@link HistoryJournal#attach(JVMHistory)} */
+  void setJournal(HistoryJournal journal) {
+    this.journal = journal;
+  }
+
+  /** Keeps the index up to date with the entries of this history */
+  void setIndex(HistoryIndex index) {
+    this.index = index;
+  }
+
+  /**
+   * Entries are numbered in the order they were added, the oldest entry has the number of the
+   * evicted entries and a pushed entry takes the number following the current one.
+   *
+   * @return the number of the oldest entry
+   */
+  long firstSequence() {
+    return entries.getEvictedCount();
+  }
+
+  /** @return the number of the current entry, see {@link #firstSequence()} */
+  long currentSequence() {
+    return entries.getEvictedCount() + entries.getCursor();
+  }
+
+  /**
+   * @param sequence the entry number, see {@link #firstSequence()}
+   * @return the entry with the number
+   */
+  HistoryState entryAt(long sequence) {
+    return entries.get((int) (sequence - entries.getEvictedCount()));
+  }
+
+  /**
+   * Restores recovered entries without calling interceptors or listeners. When there are more
+   * entries than the maximum the current entry is kept the way {@link #setMaxEntries(int)} keeps
+   * it, the oldest entries are left out first and then the entries after the current one.
+   *
+   * @param tokens the entries tokens, oldest first
+   * @param data the entries data
+   * @param cursor the position of the current entry
+   * @throws IllegalArgumentException if the cursor is not the position of one of the entries
+   */
+  void restore(List<String> tokens, List<String> data, int cursor) {
+    if (!entries.isEmpty()) {
+      throw new IllegalStateException("Cannot restore entries into a history that has entries.");
+    }
+    if (tokens.isEmpty()) {
+      return;
+    }
+    if (cursor < 0 || cursor >= tokens.size()) {
+      throw new IllegalArgumentException("Cannot restore the current entry at : " + cursor);
+    }
+    int start = 0;
+    int end = tokens.size();
+    int maxEntries = getMaxEntries();
+    if (tokens.size() > maxEntries) {
+      start = Math.min(cursor, tokens.size() - maxEntries);
+      end = start + maxEntries;
+    }
+    for (int i = start; i < end; i++) {
+      entries.push(tokens.get(i), StatePayload.ofData(data.get(i)));
+    }
+    entries.go(cursor - (end - 1));
+    if (nonNull(index)) {
+      index.rebuild();
+    }
   }
 
   /**
@@ -194,7 +434,7 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void pushState(StateToken stateToken) {
-    push(stateToken, new TokenParameter[0]);
+    navigate(stateToken, false, false, new TokenParameter[0]);
   }
 
   /**
@@ -209,12 +449,17 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void pushState(StateToken stateToken, TokenParameter... parameters) {
-    push(stateToken, () -> {}, parameters);
+    navigate(stateToken, false, false, parameters);
   }
 
   public void pushState(
       StateToken stateToken, Runnable onPushHandler, TokenParameter... parameters) {
-    push(stateToken, onPushHandler, parameters);
+    if (batch.isDeferred()) {
+      navigate(stateToken, false, false, parameters);
+      batch.attach(new PendingCallback(onPushHandler, null));
+    } else {
+      push(stateToken, false, onPushHandler, parameters);
+    }
   }
 
   /**
@@ -239,7 +484,51 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void fireState(StateToken stateToken, TokenParameter... parameters) {
-    pushState(stateToken, this::fireCurrentStateHistory, parameters);
+    navigate(stateToken, false, true, parameters);
+  }
+
+  /**
+   * Same as {@link #fireState(StateToken, TokenParameter...)} but returns the completion of the
+   * listeners called for this navigation, unlike {@link #lastDispatch()} it is not affected by
+   * other navigations made before the listeners complete.
+   *
+   * <p>The future completes once the listeners of the navigation complete, right away when
+   * listeners are called synchronously. Inside a {@link #batch(Runnable)} it completes with the
+   * dispatch of the batch final navigation, and is canceled if the batch is discarded. It does not
+   * complete while an interceptor holds the navigation.
+   *
+   * @param stateToken {@link StateToken}.
+   * @param parameters a list of {@link TokenParameter} to be used to replace expression params in
+   *     the url token
+   * @return {@link CompletableFuture}
+   */
+  public CompletableFuture<Void> fireStateAsync(
+      StateToken stateToken, TokenParameter... parameters) {
+    CompletableFuture<Void> completion = new CompletableFuture<>();
+    if (batch.isDeferred()) {
+      navigate(stateToken, false, true, parameters);
+      batch.attach(new PendingCallback(null, completion));
+    } else {
+      push(stateToken, false, () -> completeWith(completion, informCurrent()), parameters);
+    }
+    return completion;
+  }
+
+  private CompletableFuture<Void> informCurrent() {
+    return entries.isEmpty() ? CompletableFuture.completedFuture(null) : inform(entries.current());
+  }
+
+  private static void completeWith(
+      CompletableFuture<Void> completion, CompletableFuture<Void> dispatched) {
+    dispatched.whenComplete(
+        (result, error) -> {
+          if (isNull(error)) {
+            completion.complete(null);
+          } else {
+            completion.completeExceptionally(
+                error instanceof CompletionException ? error.getCause() : error);
+          }
+        });
   }
 
   /**
@@ -250,8 +539,115 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void replaceState(StateToken stateToken) {
-    forwards.pop();
-    push(stateToken);
+    navigate(stateToken, true, false);
+  }
+
+  /**
+   * Runs the navigations made by the runnable as a single navigation to the final token, the
+   * interceptors run once for the final token, one history entry is written and listeners are
+   * called once with the final state. If the runnable throws, its navigations are discarded while a
+   * coalesced navigation pending from before the batch is kept.
+   *
+   * @param navigations the navigations to batch
+   */
+  @Override
+  public void batch(Runnable navigations) {
+    boolean completed =
+        batch.run(
+            navigations,
+            discarded ->
+                discarded.stream()
+                    .filter(callback -> nonNull(callback.completion))
+                    .forEach(callback -> callback.completion.cancel(false)));
+    if (completed) {
+      flushNavigations();
+    }
+  }
+
+  /**
+   * Collapse bursts of push, replace and fire navigations into a single history entry and a single
+   * listeners call for the final state, see {@link NavigationCoalescing}. Changing the coalescing
+   * applies any navigation pending from the previous one immediately.
+   *
+   * <p>The JVM has no rendering frames or event loop, coalesced navigations are applied by {@link
+   * #flushNavigations()}, at the end of a {@link #batch(Runnable)}, or by the scheduler set with
+   * {@link #setCoalescingScheduler(InterceptorScheduler)}.
+   *
+   * @param coalescing {@link NavigationCoalescing}, <b>null</b> disables coalescing
+   */
+  @Override
+  public void setCoalescing(NavigationCoalescing coalescing) {
+    flushNavigations();
+    batch.setCoalescing(coalescing);
+  }
+
+  /**
+   * Sets the scheduler that applies the coalesced navigations once the coalescing window elapses,
+   * frame coalescing is scheduled with no delay. The history is not thread safe, the scheduler must
+   * run the flush on the thread making the navigations.
+   *
+   * @param scheduler {@link InterceptorScheduler}, <b>null</b> to only apply coalesced navigations
+   *     with {@link #flushNavigations()}
+   */
+  public void setCoalescingScheduler(InterceptorScheduler scheduler) {
+    this.coalescingScheduler = scheduler;
+  }
+
+  /**
+   * Applies the navigation collapsed from the coalesced navigations made so far, does nothing
+   * inside a {@link #batch(Runnable)} which applies it when it ends.
+   */
+  public void flushNavigations() {
+    if (!batch.isBatching()) {
+      applyPendingNavigation();
+    }
+  }
+
+  private void applyPendingNavigation() {
+    if (nonNull(scheduledFlush)) {
+      scheduledFlush.cancel();
+      scheduledFlush = null;
+    }
+    batch.flushNow(this::commit);
+  }
+
+  private void navigate(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    if (batch.isDeferred()) {
+      if (batch.add(stateToken, replace, fire, parameters) && nonNull(coalescingScheduler)) {
+        NavigationCoalescing coalescing = batch.getCoalescing();
+        scheduledFlush =
+            coalescingScheduler.schedule(
+                this::flushNavigations,
+                coalescing.getMode() == NavigationCoalescing.Mode.FRAME
+                    ? 0
+                    : coalescing.getWindowMillis());
+      }
+    } else {
+      push(stateToken, replace, fire ? this::fireCurrentStateHistory : () -> {}, parameters);
+    }
+  }
+
+  private void commit(PendingNavigation pending, List<PendingCallback> callbacks) {
+    push(
+        pending.getStateToken(),
+        !pending.isPush(),
+        () -> {
+          for (PendingCallback callback : callbacks) {
+            if (nonNull(callback.onPush)) {
+              callback.onPush.run();
+            }
+          }
+          CompletableFuture<Void> dispatched =
+              pending.isFire() ? informCurrent() : CompletableFuture.completedFuture(null);
+          for (PendingCallback callback : callbacks) {
+            if (nonNull(callback.completion)) {
+              completeWith(callback.completion, dispatched);
+            }
+          }
+        },
+        pending.getCoalescedTokens(),
+        pending.getParameters());
   }
 
   /**
@@ -261,8 +657,8 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public HistoryToken currentToken() {
-    if (isNull(forwards.peek())) return new StateHistoryToken(rootPath, "");
-    return new StateHistoryToken(rootPath, forwards.peek().token);
+    if (entries.isEmpty()) return new StateHistoryToken(rootPath, "");
+    return new StateHistoryToken(rootPath, entries.current().token);
   }
 
   /** {@inheritDoc} */
@@ -274,6 +670,55 @@ public class JVMHistory implements AppHistory {
   @Override
   public void setRootPath(String path) {
     this.rootPath = isNull(path) ? "" : path.trim();
+    dispatchPlans.invalidate();
+    interceptors.invalidate();
+    if (nonNull(index)) {
+      index.rebuild();
+    }
+  }
+
+  /**
+   * Sets the maximum number of tokens to keep a resolved {@link DispatchPlan} for, use <b>0</b> to
+   * disable the cache when token filters depend on anything other than the token itself.
+   *
+   * @param size int
+   */
+  public void setDispatchPlanCacheSize(int size) {
+    dispatchPlans.setMaxSize(size);
+  }
+
+  /**
+   * Runs the matching listeners of each navigation concurrently using the executor instead of
+   * calling them one after the other on the navigating thread, use {@link
+   * #fireStateAsync(StateToken, TokenParameter...)} to wait for the listeners of a navigation to
+   * complete.
+   *
+   * @param executor the executor to run the listeners, <b>null</b> to call listeners synchronously
+   * @param orderedListeners <b>true</b> to never run the same listener concurrently with itself, so
+   *     each listener receives the navigations in the order they were made.
+   */
+  public void setDispatchExecutor(Executor executor, boolean orderedListeners) {
+    this.dispatchExecutor = executor;
+    this.orderedListeners = orderedListeners;
+    if (isNull(executor)) {
+      lastDispatch = CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * The completion of the most recent navigation listeners, when listeners are called synchronously
+   * the returned future is always complete. When any of the listeners fails the future completes
+   * exceptionally with a {@link DispatchException} having all the listeners failures as suppressed
+   * exceptions.
+   *
+   * <p>A later navigation replaces the returned future even if the listeners of the previous one
+   * are still running, use {@link #fireStateAsync(StateToken, TokenParameter...)} to follow a
+   * specific navigation.
+   *
+   * @return {@link CompletableFuture}
+   */
+  public CompletableFuture<Void> lastDispatch() {
+    return lastDispatch;
   }
 
   /**
@@ -282,7 +727,7 @@ public class JVMHistory implements AppHistory {
    */
   @Override
   public void fireCurrentStateHistory() {
-    if (!forwards.isEmpty()) inform(forwards.peek());
+    if (!entries.isEmpty()) inform(entries.current());
   }
 
   /**
@@ -301,36 +746,65 @@ public class JVMHistory implements AppHistory {
   }
 
   private void push(StateToken stateToken, TokenParameter... parameters) {
-    push(stateToken, () -> {}, parameters);
-  }
-
-  private void push(StateToken stateToken, Runnable onPushHandler, TokenParameter... parameters) {
-    InterceptorChain interceptorChain =
-        new InterceptorChain(
-            interceptors,
-            () -> {
-              forwards.push(
-                  new HistoryState(
-                      replaceParameters(stateToken.getToken(), Arrays.asList(parameters)),
-                      stateToken.getData()));
-              onPushHandler.run();
-            });
-
-    interceptorChain.intercept(new TokenEvent(stateToken));
+    push(stateToken, false, () -> {}, parameters);
+  }
+
+  private void push(
+      StateToken stateToken,
+      boolean replace,
+      Runnable onPushHandler,
+      TokenParameter... parameters) {
+    push(stateToken, replace, onPushHandler, Collections.emptyList(), parameters);
+  }
+
+  private void push(
+      StateToken stateToken,
+      boolean replace,
+      Runnable onPushHandler,
+      List<StateToken> coalescedTokens,
+      TokenParameter... parameters) {
+    String token = TokenTemplate.replace(stateToken.getToken(), parameters);
+    Runnable onCompleted =
+        () -> {
+          if (replace) {
+            entries.replace(token, stateToken.getPayload());
+          } else {
+            entries.push(token, stateToken.getPayload());
+          }
+          if (nonNull(journal)) {
+            journal.append(replace, token, stateToken.getPayload());
+          }
+          if (nonNull(index)) {
+            index.indexCurrent(token);
+          }
+          onPushHandler.run();
+        };
+
+    HistoryInterceptor[] snapshot = interceptors.select(rootPath, token);
+    if (snapshot.length == 0) {
+      onCompleted.run();
+    } else {
+      new InterceptorChain(snapshot, onCompleted)
+          .intercept(new TokenEvent("", stateToken, coalescedTokens));
+    }
   }
 
-  private String replaceParameters(String token, List<TokenParameter> parametersList) {
-    String result = token;
-    for (TokenParameter parameter : parametersList) {
-      result = result.replace(":" + parameter.getName(), parameter.getValue());
+  /** A push handler or a navigation completion waiting for the pending navigation */
+  private static final class PendingCallback {
+    private final Runnable onPush;
+    private final CompletableFuture<Void> completion;
+
+    private PendingCallback(Runnable onPush, CompletableFuture<Void> completion) {
+      this.onPush = onPush;
+      this.completion = completion;
     }
-    return result;
   }
 
   private class HistoryListener {
     private final StateListener listener;
     private final TokenFilter tokenFilter;
     private final boolean removeOnComplete;
+    private CompletableFuture<Void> lastCall = CompletableFuture.completedFuture(null);
 
     public HistoryListener(StateListener listener, TokenFilter tokenFilter) {
       this.listener = listener;
@@ -350,16 +824,32 @@ public class JVMHistory implements AppHistory {
     }
   }
 
+  /**
+   * @return a snapshot of the registered listeners in dispatch order, changing the returned set
+   *     does not add or remove listeners
+   */
   public Set<HistoryListener> getListeners() {
-    return listeners;
+    return new LinkedHashSet<>(listeners.asList());
   }
 
+  /**
+   * Returns a copy of the entries taken at the time of the call, changing the returned deque no
+   * longer changes the history and later navigations are not reflected in it.
+   *
+   * @return a snapshot of the entries up to the current one, the current entry first
+   */
   public Deque<HistoryState> getForwards() {
-    return forwards;
+    return entries.toBackDeque();
   }
 
+  /**
+   * Returns a copy of the entries taken at the time of the call, changing the returned deque no
+   * longer changes the history and later navigations are not reflected in it.
+   *
+   * @return a snapshot of the entries after the current one, the nearest entry first
+   */
   public Deque<HistoryState> getBackwards() {
-    return backwards;
+    return entries.toForwardDeque();
   }
 
   @Override
@@ -369,6 +859,13 @@ public class JVMHistory implements AppHistory {
     }
   }
 
+  @Override
+  public void addInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    if (nonNull(tokenFilter) && nonNull(interceptor)) {
+      this.interceptors.add(tokenFilter, interceptor);
+    }
+  }
+
   @Override
   public void removeInterceptor(HistoryInterceptor interceptor) {
     if (nonNull(interceptor)) {
@@ -378,7 +875,7 @@ public class JVMHistory implements AppHistory {
 
   @Override
   public void invoke() {
-    final HistoryState state = forwards.peek();
+    final HistoryState state = entries.current();
     if (nonNull(state)) {
       inform(state);
     }
@@ -393,14 +890,18 @@ public class JVMHistory implements AppHistory {
 
     private final HistoryState historyState;
     private NormalizedToken normalizedToken;
+    private final Propagation propagation;
 
     private JVMState(HistoryState historyState) {
       this.historyState = historyState;
+      this.propagation = new Propagation();
     }
 
-    private JVMState(NormalizedToken normalizedToken, HistoryState historyState) {
+    private JVMState(
+        NormalizedToken normalizedToken, HistoryState historyState, Propagation propagation) {
       this.normalizedToken = normalizedToken;
       this.historyState = historyState;
+      this.propagation = propagation;
     }
 
     @Override
@@ -415,7 +916,12 @@ public class JVMHistory implements AppHistory {
 
     @Override
     public Optional<String> data() {
-      return Optional.ofNullable(historyState.data);
+      return Optional.ofNullable(historyState.getData());
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return Optional.ofNullable(historyState.payload).map(payload -> payload.value(codec));
     }
 
     @Override
@@ -432,15 +938,38 @@ public class JVMHistory implements AppHistory {
     public void setNormalizedToken(NormalizedToken normalizedToken) {
       this.normalizedToken = normalizedToken;
     }
+
+    @Override
+    public void stopPropagation() {
+      propagation.stopped = true;
+    }
+
+    @Override
+    public boolean isPropagationStopped() {
+      return propagation.stopped;
+    }
+  }
+
+  /** The propagation status shared by the states of a single dispatch */
+  private static class Propagation {
+    private boolean stopped;
   }
 
   public class HistoryState {
     private final String token;
-    private final String data;
+    private final StatePayload payload;
 
     public HistoryState(String token, String data) {
+      this(token, StatePayload.ofData(data));
+    }
+
+    /**
+     * @param token the entry token
+     * @param payload the entry {@link StatePayload}, kept as is without encoding
+     */
+    public HistoryState(String token, StatePayload payload) {
       this.token = token;
-      this.data = data;
+      this.payload = payload;
     }
 
     public String getToken() {
@@ -448,7 +977,18 @@ public class JVMHistory implements AppHistory {
     }
 
     public String getData() {
-      return data;
+      return isNull(payload) ? null : payload.data();
+    }
+
+    public StatePayload getPayload() {
+      return payload;
+    }
+  }
+
+  /** Thrown when one or more listeners fail while being called by the dispatch executor */
+  public static class DispatchException extends RuntimeException {
+    public DispatchException() {
+      super("One or more history listeners failed, see suppressed exceptions.");
     }
   }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dominokit.domino.history.DominoHistory;
+import org.dominokit.domino.history.DominoHistory.State;
+import org.dominokit.domino.history.DominoHistory.StateListener;
+import org.dominokit.domino.history.TokenFilter;
+
+/**
+ * A {@link Flow.Publisher} of the navigation states of a {@link DominoHistory}, optionally filtered
+ * by a {@link TokenFilter}.
+ *
+ * <p>Each subscriber receives states only as it requests them, states published while a subscriber
+ * has no outstanding demand are kept according to the publisher {@link OverflowStrategy}. States
+ * are delivered to a subscriber one at a time, either on the navigating thread or on the thread
+ * requesting more demand.
+ *
+ * <pre>
+ * NavigationPublisher publisher =
+ *     new NavigationPublisher(history, TokenFilter.startsWithPathFilter("orders"))
+ *         .overflowStrategy(OverflowStrategy.LATEST);
+ * publisher.subscribe(subscriber);
+ * </pre>
+ */
+public class NavigationPublisher implements Flow.Publisher<State>, AutoCloseable {
+
+  /** The default number of states kept for a subscriber by {@link OverflowStrategy#DROP_OLDEST} */
+  public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+
+  private final DominoHistory history;
+  private final StateListener listener = this::publish;
+  private final CopyOnWriteArrayList<NavigationSubscription> subscriptions =
+      new CopyOnWriteArrayList<>();
+  private volatile OverflowStrategy overflowStrategy = OverflowStrategy.BUFFER;
+  private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+  private volatile boolean closed;
+
+  /**
+   * Publishes all the navigation states of the history
+   *
+   * @param history the {@link DominoHistory} to publish the navigation states of
+   */
+  public NavigationPublisher(DominoHistory history) {
+    this(history, TokenFilter.any());
+  }
+
+  /**
+   * Publishes the navigation states of the history that matches the token filter
+   *
+   * @param history the {@link DominoHistory} to publish the navigation states of
+   * @param tokenFilter {@link TokenFilter}
+   */
+  public NavigationPublisher(DominoHistory history, TokenFilter tokenFilter) {
+    this.history = history;
+    history.listen(tokenFilter, listener);
+  }
+
+  /**
+   * @param overflowStrategy the {@link OverflowStrategy} for subscribers without enough demand
+   * @return same publisher instance
+   */
+  public NavigationPublisher overflowStrategy(OverflowStrategy overflowStrategy) {
+    this.overflowStrategy = requireNonNull(overflowStrategy);
+    return this;
+  }
+
+  /**
+   * @param bufferSize the maximum number of states kept for a subscriber by {@link
+   *     OverflowStrategy#DROP_OLDEST}
+   * @return same publisher instance
+   */
+  public NavigationPublisher bufferSize(int bufferSize) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive : " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    return this;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super State> subscriber) {
+    requireNonNull(subscriber);
+    NavigationSubscription subscription =
+        new NavigationSubscription(subscriber, overflowStrategy, bufferSize);
+    subscriber.onSubscribe(subscription);
+    if (closed) {
+      subscription.complete();
+    } else {
+      subscriptions.add(subscription);
+    }
+  }
+
+  /** @return the number of active subscribers */
+  public int getSubscribersCount() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Stops listening to the history and completes all subscribers after they receive the states
+   * already kept for them.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    history.removeListener(listener);
+    for (NavigationSubscription subscription : subscriptions) {
+      subscription.complete();
+    }
+    subscriptions.clear();
+  }
+
+  private void publish(State state) {
+    for (NavigationSubscription subscription : subscriptions) {
+      subscription.offer(state);
+    }
+  }
+
+  /** What to do with states published while a subscriber has no outstanding demand */
+  public enum OverflowStrategy {
+    /** Keep all states until requested */
+    BUFFER,
+    /** Keep up to the buffer size states, dropping the oldest ones */
+    DROP_OLDEST,
+    /** Keep only the most recent state */
+    LATEST
+  }
+
+  private final class NavigationSubscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super State> subscriber;
+    private final OverflowStrategy overflowStrategy;
+    private final int bufferSize;
+    private final Deque<State> pending = new ArrayDeque<>();
+    private final AtomicInteger drains = new AtomicInteger();
+    private long demand;
+    private boolean completed;
+    private boolean cancelled;
+    private Throwable error;
+
+    private NavigationSubscription(
+        Flow.Subscriber<? super State> subscriber,
+        OverflowStrategy overflowStrategy,
+        int bufferSize) {
+      this.subscriber = subscriber;
+      this.overflowStrategy = overflowStrategy;
+      this.bufferSize = bufferSize;
+    }
+
+    private void offer(State state) {
+      synchronized (this) {
+        if (cancelled || completed) {
+          return;
+        }
+        if (demand == 0) {
+          if (overflowStrategy == OverflowStrategy.LATEST) {
+            pending.clear();
+          } else if (overflowStrategy == OverflowStrategy.DROP_OLDEST
+              && pending.size() >= bufferSize) {
+            pending.pollFirst();
+          }
+        }
+        pending.addLast(state);
+      }
+      drain();
+    }
+
+    private void complete() {
+      synchronized (this) {
+        completed = true;
+      }
+      drain();
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        if (n <= 0) {
+          error =
+              new IllegalArgumentException(
+                  "Subscriber requested a non positive number of states : " + n);
+          pending.clear();
+        } else {
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        pending.clear();
+      }
+      subscriptions.remove(this);
+    }
+
+    /** Delivers the pending signals, only one thread at a time runs the delivery loop */
+    private void drain() {
+      if (drains.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        while (true) {
+          State next = null;
+          Throwable failure = null;
+          boolean done = false;
+          synchronized (this) {
+            if (cancelled) {
+              return;
+            }
+            if (nonNull(error)) {
+              failure = error;
+              cancelled = true;
+            } else if (demand > 0 && !pending.isEmpty()) {
+              demand--;
+              next = pending.pollFirst();
+            } else if (completed && pending.isEmpty()) {
+              done = true;
+              cancelled = true;
+            }
+          }
+          if (nonNull(next)) {
+            subscriber.onNext(next);
+            continue;
+          }
+          if (nonNull(failure)) {
+            subscriptions.remove(this);
+            subscriber.onError(failure);
+          } else if (done) {
+            subscriber.onComplete();
+          }
+          break;
+        }
+        missed = drains.addAndGet(-missed);
+      } while (missed != 0);
+    }
+  }
+}
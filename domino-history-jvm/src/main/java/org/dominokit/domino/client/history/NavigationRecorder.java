@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.client.history.NavigationTrace.Navigation;
+import org.dominokit.domino.client.history.NavigationTrace.Operation;
+import org.dominokit.domino.history.DominoHistory;
+import org.dominokit.domino.history.HistoryInterceptor;
+import org.dominokit.domino.history.HistoryToken;
+import org.dominokit.domino.history.NavigationCoalescing;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.dominokit.domino.history.TokenParameter;
+import org.dominokit.domino.history.TokenTemplate;
+
+/**
+ * A {@link DominoHistory} that records the navigations made through it into a {@link
+ * NavigationTrace} and delegates all the calls to another history.
+ *
+ * <p>Push, replace and fire navigations are recorded with their filled token, title and data, back,
+ * forward and go navigations are recorded as they are called whether the history can move or not.
+ *
+ * <pre>
+ * NavigationRecorder recorder = new NavigationRecorder(history);
+ * // navigate through the recorder
+ * recorder.getTrace().write(traceFile);
+ * </pre>
+ */
+public class NavigationRecorder implements DominoHistory {
+
+  private final DominoHistory delegate;
+  private final List<Navigation> navigations = new ArrayList<>();
+  private final long startNanos = System.nanoTime();
+
+  /** @param delegate the {@link DominoHistory} to delegate the calls to */
+  public NavigationRecorder(DominoHistory delegate) {
+    this.delegate = delegate;
+  }
+
+  /** @return a trace of the navigations recorded so far */
+  public synchronized NavigationTrace getTrace() {
+    return new NavigationTrace(navigations);
+  }
+
+  /** Drops the navigations recorded so far */
+  public synchronized void clear() {
+    navigations.clear();
+  }
+
+  private synchronized void record(Navigation navigation) {
+    navigations.add(navigation);
+  }
+
+  private void record(Operation operation, StateToken stateToken, TokenParameter... parameters) {
+    record(
+        Navigation.of(
+            operation,
+            elapsedNanos(),
+            TokenTemplate.replace(stateToken.getToken(), parameters),
+            stateToken.getTitle(),
+            stateToken.getData()));
+  }
+
+  private long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  @Override
+  public DirectState listen(StateListener listener) {
+    return delegate.listen(listener);
+  }
+
+  @Override
+  public void removeListener(StateListener listener) {
+    delegate.removeListener(listener);
+  }
+
+  @Override
+  public DirectState listen(TokenFilter tokenFilter, StateListener listener) {
+    return delegate.listen(tokenFilter, listener);
+  }
+
+  @Override
+  public DirectState listen(StateListener listener, boolean removeOnComplete) {
+    return delegate.listen(listener, removeOnComplete);
+  }
+
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
+    return delegate.listen(tokenFilter, listener, removeOnComplete);
+  }
+
+  @Override
+  public DirectState listen(TokenFilter tokenFilter, StateListener listener, int priority) {
+    return delegate.listen(tokenFilter, listener, priority);
+  }
+
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete, int priority) {
+    return delegate.listen(tokenFilter, listener, removeOnComplete, priority);
+  }
+
+  @Override
+  public boolean isInformOnPopState() {
+    return delegate.isInformOnPopState();
+  }
+
+  @Override
+  public void back() {
+    record(Navigation.back(elapsedNanos()));
+    delegate.back();
+  }
+
+  @Override
+  public void forward() {
+    record(Navigation.forward(elapsedNanos()));
+    delegate.forward();
+  }
+
+  @Override
+  public void go(int delta) {
+    record(Navigation.go(elapsedNanos(), delta));
+    delegate.go(delta);
+  }
+
+  @Override
+  public int getHistoryEntriesCount() {
+    return delegate.getHistoryEntriesCount();
+  }
+
+  @Override
+  public void pushState(StateToken stateToken) {
+    record(Operation.PUSH, stateToken);
+    delegate.pushState(stateToken);
+  }
+
+  @Override
+  public void pushState(StateToken stateToken, TokenParameter... parameters) {
+    record(Operation.PUSH, stateToken, parameters);
+    delegate.pushState(stateToken, parameters);
+  }
+
+  @Override
+  public void fireState(StateToken stateToken) {
+    record(Operation.FIRE, stateToken);
+    delegate.fireState(stateToken);
+  }
+
+  @Override
+  public void fireState(StateToken stateToken, TokenParameter... parameters) {
+    record(Operation.FIRE, stateToken, parameters);
+    delegate.fireState(stateToken, parameters);
+  }
+
+  @Override
+  public void replaceState(StateToken stateToken) {
+    record(Operation.REPLACE, stateToken);
+    delegate.replaceState(stateToken);
+  }
+
+  @Override
+  public HistoryToken currentToken() {
+    return delegate.currentToken();
+  }
+
+  @Override
+  public String getRootPath() {
+    return delegate.getRootPath();
+  }
+
+  @Override
+  public void setRootPath(String path) {
+    delegate.setRootPath(path);
+  }
+
+  @Override
+  public void addInterceptor(HistoryInterceptor interceptor) {
+    delegate.addInterceptor(interceptor);
+  }
+
+  @Override
+  public void addInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    delegate.addInterceptor(tokenFilter, interceptor);
+  }
+
+  @Override
+  public void removeInterceptor(HistoryInterceptor interceptor) {
+    delegate.removeInterceptor(interceptor);
+  }
+
+  @Override
+  public void reload() {
+    delegate.reload();
+  }
+
+  @Override
+  public void batch(Runnable navigations) {
+    delegate.batch(navigations);
+  }
+
+  @Override
+  public void setCoalescing(NavigationCoalescing coalescing) {
+    delegate.setCoalescing(coalescing);
+  }
+}
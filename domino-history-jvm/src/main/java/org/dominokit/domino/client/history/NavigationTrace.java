@@ -0,0 +1,407 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded sequence of navigations with their timing, see {@link NavigationRecorder} and {@link
+ * ReplayDriver}.
+ *
+ * <p>A trace file holds one record per navigation: the operation, the time since the previous
+ * navigation in microseconds and the token, title and data of the navigation. Tokens and titles are
+ * written in full the first time they appear and referred to by their index afterwards, all numbers
+ * are written as variable length integers, so a recorded session takes a few bytes per navigation.
+ */
+public class NavigationTrace {
+
+  /**
+   * The largest navigations count or string length accepted when reading a trace, a corrupt trace
+   * fails with a {@link TraceException} before anything is allocated for a larger one
+   */
+  public static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+  private static final int MAGIC = 0x44485452;
+  private static final int VERSION = 1;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final List<Navigation> navigations;
+
+  /** @param navigations the navigations of the trace, ordered by their time */
+  public NavigationTrace(List<Navigation> navigations) {
+    this.navigations = Collections.unmodifiableList(new ArrayList<>(navigations));
+  }
+
+  /** @return the navigations of the trace, ordered by their time */
+  public List<Navigation> getNavigations() {
+    return navigations;
+  }
+
+  /** @return the number of navigations in the trace */
+  public int size() {
+    return navigations.size();
+  }
+
+  /**
+   * Writes the trace to a file, replacing it if it exists
+   *
+   * @param path the trace file
+   */
+  public void write(Path path) {
+    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+      write(output);
+    } catch (IOException e) {
+      throw new TraceException("Failed to write the navigation trace " + path, e);
+    }
+  }
+
+  /**
+   * @param path the trace file
+   * @return the trace read from the file
+   */
+  public static NavigationTrace read(Path path) {
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(path))) {
+      return read(input);
+    } catch (IOException e) {
+      throw new TraceException("Failed to read the navigation trace " + path, e);
+    }
+  }
+
+  /**
+   * Writes the trace to the stream
+   *
+   * @param output the stream to write to, it is not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(OutputStream output) throws IOException {
+    TraceWriter writer = new TraceWriter(output);
+    writer.putInt(MAGIC);
+    writer.putVarint(VERSION);
+    writer.putVarint(navigations.size());
+    long previousMicros = 0;
+    for (Navigation navigation : navigations) {
+      long micros = navigation.offsetNanos / 1000;
+      output.write(navigation.operation.ordinal());
+      writer.putVarint(Math.max(0, micros - previousMicros));
+      previousMicros = Math.max(micros, previousMicros);
+      if (navigation.operation == Operation.GO) {
+        writer.putVarint(((navigation.delta << 1) ^ (navigation.delta >> 31)) & 0xffffffffL);
+      } else if (navigation.operation.hasToken()) {
+        writer.putText(navigation.token);
+        writer.putText(navigation.title);
+        writer.putNullableString(navigation.data);
+      }
+    }
+  }
+
+  /**
+   * @param input the stream to read from, it is not closed
+   * @return the trace read from the stream
+   * @throws IOException if the stream cannot be read
+   */
+  public static NavigationTrace read(InputStream input) throws IOException {
+    TraceReader reader = new TraceReader(input);
+    if (reader.getInt() != MAGIC) {
+      throw new TraceException("Not a navigation trace.");
+    }
+    int version = (int) reader.getVarint();
+    if (version != VERSION) {
+      throw new TraceException("Unsupported navigation trace version : " + version);
+    }
+    int size = reader.getLength();
+    Operation[] operations = Operation.values();
+    List<Navigation> navigations = new ArrayList<>(Math.min(size, INITIAL_CAPACITY));
+    long micros = 0;
+    for (int i = 0; i < size; i++) {
+      int ordinal = reader.getByte();
+      if (ordinal >= operations.length) {
+        throw new TraceException("Unknown navigation trace operation : " + ordinal);
+      }
+      Operation operation = operations[ordinal];
+      micros += reader.getVarint();
+      Navigation navigation;
+      if (operation == Operation.GO) {
+        int zigzag = (int) reader.getVarint();
+        navigation = Navigation.go(micros * 1000, (zigzag >>> 1) ^ -(zigzag & 1));
+      } else if (operation.hasToken()) {
+        String token = reader.getText();
+        String title = reader.getText();
+        navigation =
+            new Navigation(operation, micros * 1000, token, title, reader.getNullableString(), 0);
+      } else {
+        navigation = new Navigation(operation, micros * 1000, null, null, null, 0);
+      }
+      navigations.add(navigation);
+    }
+    return new NavigationTrace(navigations);
+  }
+
+  /** The recorded history operations */
+  public enum Operation {
+    PUSH,
+    REPLACE,
+    FIRE,
+    BACK,
+    FORWARD,
+    GO;
+
+    private boolean hasToken() {
+      return this == PUSH || this == REPLACE || this == FIRE;
+    }
+  }
+
+  /** A recorded navigation */
+  public static class Navigation {
+    private final Operation operation;
+    private final long offsetNanos;
+    private final String token;
+    private final String title;
+    private final String data;
+    private final int delta;
+
+    private Navigation(
+        Operation operation, long offsetNanos, String token, String title, String data, int delta) {
+      this.operation = operation;
+      this.offsetNanos = offsetNanos;
+      this.token = token;
+      this.title = title;
+      this.data = data;
+      this.delta = delta;
+    }
+
+    /**
+     * @param operation {@link Operation#PUSH}, {@link Operation#REPLACE} or {@link Operation#FIRE}
+     * @param offsetNanos the time of the navigation since the start of the recording
+     * @param token the navigation token
+     * @param title the navigation title
+     * @param data the navigation data, can be null
+     * @return a new navigation
+     */
+    public static Navigation of(
+        Operation operation, long offsetNanos, String token, String title, String data) {
+      if (!operation.hasToken()) {
+        throw new IllegalArgumentException("Navigation operation has no token : " + operation);
+      }
+      return new Navigation(operation, offsetNanos, token, isNull(title) ? "" : title, data, 0);
+    }
+
+    /**
+     * @param offsetNanos the time of the navigation since the start of the recording
+     * @return a new back navigation
+     */
+    public static Navigation back(long offsetNanos) {
+      return new Navigation(Operation.BACK, offsetNanos, null, null, null, 0);
+    }
+
+    /**
+     * @param offsetNanos the time of the navigation since the start of the recording
+     * @return a new forward navigation
+     */
+    public static Navigation forward(long offsetNanos) {
+      return new Navigation(Operation.FORWARD, offsetNanos, null, null, null, 0);
+    }
+
+    /**
+     * @param offsetNanos the time of the navigation since the start of the recording
+     * @param delta the number of entries moved, negative when moving back
+     * @return a new go navigation
+     */
+    public static Navigation go(long offsetNanos, int delta) {
+      return new Navigation(Operation.GO, offsetNanos, null, null, null, delta);
+    }
+
+    public Operation getOperation() {
+      return operation;
+    }
+
+    /** @return the time of the navigation since the start of the recording in nanoseconds */
+    public long getOffsetNanos() {
+      return offsetNanos;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    public String getTitle() {
+      return title;
+    }
+
+    public String getData() {
+      return data;
+    }
+
+    public int getDelta() {
+      return delta;
+    }
+  }
+
+  private static class TraceWriter {
+    private final OutputStream output;
+    private final Map<String, Integer> textIds = new HashMap<>();
+
+    private TraceWriter(OutputStream output) {
+      this.output = output;
+    }
+
+    private void putInt(int value) throws IOException {
+      output.write(value >>> 24);
+      output.write(value >>> 16);
+      output.write(value >>> 8);
+      output.write(value);
+    }
+
+    private void putVarint(long value) throws IOException {
+      while ((value & ~0x7fL) != 0) {
+        output.write((int) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      output.write((int) value);
+    }
+
+    /** Writes the index of a text already written, or a new index followed by the text */
+    private void putText(String text) throws IOException {
+      Integer id = textIds.get(text);
+      if (isNull(id)) {
+        id = textIds.size();
+        textIds.put(text, id);
+        putVarint(id);
+        putString(text);
+      } else {
+        putVarint(id);
+      }
+    }
+
+    private void putString(String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putVarint(bytes.length);
+      output.write(bytes);
+    }
+
+    /** Writes the length plus one, so a <b>null</b> string is written as <b>0</b> */
+    private void putNullableString(String value) throws IOException {
+      if (isNull(value)) {
+        putVarint(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putVarint(bytes.length + 1L);
+      output.write(bytes);
+    }
+  }
+
+  private static class TraceReader {
+    private final InputStream input;
+    private final List<String> texts = new ArrayList<>();
+
+    private TraceReader(InputStream input) {
+      this.input = input;
+    }
+
+    private int getByte() throws IOException {
+      int value = input.read();
+      if (value < 0) {
+        throw new EOFException("Truncated navigation trace.");
+      }
+      return value;
+    }
+
+    private int getInt() throws IOException {
+      return (getByte() << 24) | (getByte() << 16) | (getByte() << 8) | getByte();
+    }
+
+    private long getVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int next = getByte();
+        value |= (long) (next & 0x7f) << shift;
+        if ((next & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new TraceException("Malformed navigation trace variable length integer.");
+    }
+
+    private String getText() throws IOException {
+      long id = getVarint();
+      if (id < texts.size()) {
+        return texts.get((int) id);
+      }
+      if (id != texts.size()) {
+        throw new TraceException("Navigation trace text is out of range : " + id);
+      }
+      String text = getString(getLength());
+      texts.add(text);
+      return text;
+    }
+
+    private String getNullableString() throws IOException {
+      long length = getVarint();
+      return length == 0 ? null : getString(checkLength(length - 1));
+    }
+
+    /** @return a navigations count or string length, checked against {@link #MAX_LENGTH} */
+    private int getLength() throws IOException {
+      return checkLength(getVarint());
+    }
+
+    private int checkLength(long length) {
+      if (length < 0 || length > MAX_LENGTH) {
+        throw new TraceException("Malformed navigation trace length : " + length);
+      }
+      return (int) length;
+    }
+
+    private String getString(int length) throws IOException {
+      byte[] bytes = new byte[length];
+      int offset = 0;
+      while (offset < bytes.length) {
+        int count = input.read(bytes, offset, bytes.length - offset);
+        if (count < 0) {
+          throw new EOFException("Truncated navigation trace.");
+        }
+        offset += count;
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Thrown when a trace cannot be read or written */
+  public static class TraceException extends RuntimeException {
+    public TraceException(String message) {
+      super(message);
+    }
+
+    public TraceException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
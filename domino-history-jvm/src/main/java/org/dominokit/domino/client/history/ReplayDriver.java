@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import org.dominokit.domino.client.history.NavigationTrace.Navigation;
+import org.dominokit.domino.history.DominoHistory;
+import org.dominokit.domino.history.StateToken;
+
+/**
+ * Replays a {@link NavigationTrace} through a {@link DominoHistory}, for example a {@link
+ * JVMHistory} with the application listeners registered, and reports the replay throughput and the
+ * latency of each navigation.
+ *
+ * <p>The latency of a navigation is the time spent in the history call, with a synchronous history
+ * this includes the interceptors and listeners the navigation runs.
+ *
+ * <pre>
+ * ReplayDriver.Report report =
+ *     new ReplayDriver(NavigationTrace.read(traceFile)).mode(ReplayMode.MAX_SPEED).replay(history);
+ * </pre>
+ */
+public class ReplayDriver {
+
+  private final NavigationTrace trace;
+  private ReplayMode mode = ReplayMode.MAX_SPEED;
+
+  /** @param trace the {@link NavigationTrace} to replay */
+  public ReplayDriver(NavigationTrace trace) {
+    this.trace = requireNonNull(trace);
+  }
+
+  /**
+   * @param mode the {@link ReplayMode}, {@link ReplayMode#MAX_SPEED} by default
+   * @return same driver instance
+   */
+  public ReplayDriver mode(ReplayMode mode) {
+    this.mode = requireNonNull(mode);
+    return this;
+  }
+
+  /**
+   * Replays the trace on the calling thread
+   *
+   * @param history the {@link DominoHistory} to replay the navigations through
+   * @return the replay {@link Report}
+   */
+  public Report replay(DominoHistory history) {
+    List<Navigation> navigations = trace.getNavigations();
+    long[] latencies = new long[navigations.size()];
+    long start = System.nanoTime();
+    for (int i = 0; i < latencies.length; i++) {
+      Navigation navigation = navigations.get(i);
+      if (mode == ReplayMode.REAL_TIME) {
+        waitUntil(start + navigation.getOffsetNanos());
+      }
+      long before = System.nanoTime();
+      navigate(history, navigation);
+      latencies[i] = System.nanoTime() - before;
+    }
+    return new Report(latencies, System.nanoTime() - start);
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+  private static void navigate(DominoHistory history, Navigation navigation) {
+    switch (navigation.getOperation()) {
+      case PUSH:
+        history.pushState(stateToken(navigation));
+        break;
+      case REPLACE:
+        history.replaceState(stateToken(navigation));
+        break;
+      case FIRE:
+        history.fireState(stateToken(navigation));
+        break;
+      case BACK:
+        history.back();
+        break;
+      case FORWARD:
+        history.forward();
+        break;
+      case GO:
+        history.go(navigation.getDelta());
+        break;
+      default:
+        throw new IllegalStateException("Unknown navigation : " + navigation.getOperation());
+    }
+  }
+
+  private static StateToken stateToken(Navigation navigation) {
+    return StateToken.of(navigation.getToken())
+        .title(navigation.getTitle())
+        .data(navigation.getData());
+  }
+
+  /** How fast the navigations are replayed */
+  public enum ReplayMode {
+    /** Each navigation is replayed at its recorded time since the start of the replay */
+    REAL_TIME,
+    /** Each navigation is replayed as soon as the previous one returns */
+    MAX_SPEED
+  }
+
+  /** The throughput and the navigations latencies of a replay */
+  public static class Report {
+    private final long[] latencies;
+    private final long elapsedNanos;
+
+    private Report(long[] latencies, long elapsedNanos) {
+      this.latencies = latencies.clone();
+      Arrays.sort(this.latencies);
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** @return the number of replayed navigations */
+    public int getNavigationsCount() {
+      return latencies.length;
+    }
+
+    /** @return the total replay time in nanoseconds, including the waits of a real time replay */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    /** @return the replayed navigations per second */
+    public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : latencies.length * 1_000_000_000D / elapsedNanos;
+    }
+
+    /**
+     * @param percentile the percentile between <b>0</b> and <b>100</b>
+     * @return the navigation latency in nanoseconds at the percentile, using the nearest rank
+     */
+    public long getLatencyPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile must be between 0 and 100 : " + percentile);
+      }
+      if (latencies.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+      return latencies[Math.max(rank, 1) - 1];
+    }
+
+    /** @return the 50th percentile navigation latency in nanoseconds */
+    public long getP50() {
+      return getLatencyPercentile(50);
+    }
+
+    /** @return the 90th percentile navigation latency in nanoseconds */
+    public long getP90() {
+      return getLatencyPercentile(90);
+    }
+
+    /** @return the 99th percentile navigation latency in nanoseconds */
+    public long getP99() {
+      return getLatencyPercentile(99);
+    }
+
+    /** @return the highest navigation latency in nanoseconds */
+    public long getMax() {
+      return latencies.length == 0 ? 0 : latencies[latencies.length - 1];
+    }
+
+    @Override
+    public String toString() {
+      return "navigations="
+          + getNavigationsCount()
+          + ", throughput="
+          + Math.round(getThroughput())
+          + "/s, p50="
+          + getP50()
+          + "ns, p90="
+          + getP90()
+          + "ns, p99="
+          + getP99()
+          + "ns, max="
+          + getMax()
+          + "ns";
+    }
+  }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.*;
+import org.dominokit.domino.client.history.SessionHistoryFactory.Route;
+import org.dominokit.domino.history.*;
+
+/**
+ * A per session implementation of the {@link AppHistory} created by a {@link
+ * SessionHistoryFactory}, the routes are shared with all other sessions of the same factory while
+ * the instance only holds the session navigation entries.
+ *
+ * <p>Listeners and interceptors added directly to a session history are only applied to that
+ * session, their storage is allocated on first use. The root path is shared by all sessions unless
+ * a session sets its own with {@link #setRootPath(String)}, the routes plans of such a session are
+ * then resolved against its root path and cached by the session instead of the factory.
+ *
+ * @param <S> the session context type
+ */
+public class SessionHistory<S> implements AppHistory {
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private final SessionHistoryFactory<S> factory;
+  private final S session;
+  private SessionEntry[] entries;
+  private int size;
+  private int cursor = -1;
+  private ListenerRegistry<SessionListener> listeners;
+  private List<HistoryInterceptor> interceptors;
+  private String rootPath;
+  private DispatchPlanCache<Route<S>> rootPathPlans;
+
+  SessionHistory(SessionHistoryFactory<S> factory, S session) {
+    this.factory = factory;
+    this.session = session;
+  }
+
+  /** @return the session context of this history */
+  public S getSession() {
+    return session;
+  }
+
+  /**
+   * Create a session listener that will listen for any change in the virtual url.
+   *
+   * @param listener {@link StateListener}
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(StateListener listener) {
+    return listen(TokenFilter.any(), listener, false);
+  }
+
+  /**
+   * Create a session listener that will listen for any change that matches the criteria defined by
+   * the token filter.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(TokenFilter tokenFilter, StateListener listener) {
+    return listen(tokenFilter, listener, false);
+  }
+
+  /**
+   * Create a session listener that will listen to all changes to the virtual url and will be
+   * removed after being fired if {removeOnComplete} is true
+   *
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(StateListener listener, boolean removeOnComplete) {
+    return listen(TokenFilter.any(), listener, removeOnComplete);
+  }
+
+  /**
+   * Create a session listener that will listen for any change that matches the criteria defined by
+   * the token filter and will be removed after being fired if {removeOnComplete} is true.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @return {@link DirectState}
+   */
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
+    if (isNull(listeners)) {
+      listeners = new ListenerRegistry<>(new SessionListener[0]);
+    }
+    listeners.add(new SessionListener(listener, tokenFilter, removeOnComplete));
+    return new DominoDirectState(tokenFilter, currentState(), listener);
+  }
+
+  /**
+   * Manually removes a session listener
+   *
+   * @param listener {@link StateListener}
+   */
+  @Override
+  public void removeListener(StateListener listener) {
+    if (nonNull(listeners)) {
+      listeners.removeIf(sessionListener -> sessionListener.listener == listener);
+    }
+  }
+
+  private State currentState() {
+    SessionEntry current = current();
+    return new SessionState(
+        isNull(current) ? new SessionEntry("", StatePayload.ofData("")) : current);
+  }
+
+  private SessionEntry current() {
+    return cursor < 0 ? null : entries[cursor];
+  }
+
+  private void inform(SessionEntry entry) {
+    String rootPath = getRootPath();
+    if (!rootPath.isEmpty() && !entry.token.startsWith(rootPath)) {
+      return;
+    }
+
+    DispatchPlan<Route<S>> plan = dispatchPlan(entry.token);
+    for (int i = 0; i < plan.size(); i++) {
+      NormalizedToken normalized = plan.getNormalizedToken(i);
+      plan.getListener(i).listener.onPopState(session, new SessionState(normalized, entry.payload));
+    }
+
+    if (nonNull(listeners)) {
+      informSessionListeners(entry);
+    }
+  }
+
+  private void informSessionListeners(SessionEntry entry) {
+    List<SessionListener> completed = null;
+    for (SessionListener listener : listeners.snapshot()) {
+      NormalizedToken normalized = listener.tokenFilter.normalizeToken(getRootPath(), entry.token);
+      if (isNull(normalized)) {
+        normalized = new DefaultNormalizedToken(entry.token);
+      }
+      if (listener.tokenFilter.filter(new StateHistoryToken(normalized.getToken().value()))) {
+        listener.listener.onPopState(new SessionState(normalized, entry.payload));
+        if (listener.removeOnComplete) {
+          if (isNull(completed)) {
+            completed = new ArrayList<>();
+          }
+          completed.add(listener);
+        }
+      }
+    }
+    if (nonNull(completed)) {
+      listeners.removeAll(completed);
+    }
+  }
+
+  /** Go back one step simulating a back button */
+  @Override
+  public void back() {
+    go(-1);
+  }
+
+  /** Go forward one step simulating a forward button */
+  @Override
+  public void forward() {
+    go(1);
+  }
+
+  /**
+   * Moves any number of entries back or forward and calls the listeners with the final state only,
+   * moving outside the session entries does nothing.
+   *
+   * @param delta the number of entries to move, negative to go back
+   */
+  @Override
+  public void go(int delta) {
+    long target = (long) cursor + delta;
+    if (delta != 0 && target >= 0 && target < size) {
+      cursor = (int) target;
+      inform(entries[cursor]);
+    }
+  }
+
+  /**
+   * The count of the session history entries
+   *
+   * @return int
+   */
+  @Override
+  public int getHistoryEntriesCount() {
+    return size;
+  }
+
+  /**
+   * Change the virtual url to the specified token without firing url change listeners, sets the
+   * title of the new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void pushState(StateToken stateToken) {
+    push(stateToken, false, false);
+  }
+
+  /**
+   * Change the virtual url to the specified token without firing url change listeners, sets the
+   * title of the new page and assign the data to the new state. In case the new token has
+   * expression parameters in the form <b>:paramName</b> they will be replaced using the
+   * <b>parameters</b>
+   *
+   * @param stateToken {@link StateToken}.
+   * @param parameters a list of {@link TokenParameter} to be used to replace expression params in
+   *     the url token
+   */
+  @Override
+  public void pushState(StateToken stateToken, TokenParameter... parameters) {
+    push(stateToken, false, false, parameters);
+  }
+
+  /**
+   * Change the virtual url to the specified token and fire change listeners, sets the title of the
+   * new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void fireState(StateToken stateToken) {
+    fireState(stateToken, new TokenParameter[0]);
+  }
+
+  /**
+   * Change the virtual url to the specified token and fire url change listeners, sets the title of
+   * the new page and assign the data to the new state. In case the new token has expression
+   * parameters in the form <b>:paramName</b> they will be replaced using the <b>parameters</b>
+   *
+   * @param stateToken {@link StateToken}.
+   * @param parameters a list of {@link TokenParameter} to be used to replace expression params in
+   *     the url token
+   */
+  @Override
+  public void fireState(StateToken stateToken, TokenParameter... parameters) {
+    push(stateToken, false, true, parameters);
+  }
+
+  /**
+   * Replace the current virtual url with the specified token without firing url change listeners,
+   * sets the title of the new page and assign the data to the new state.
+   *
+   * @param stateToken {@link StateToken}.
+   */
+  @Override
+  public void replaceState(StateToken stateToken) {
+    push(stateToken, true, false);
+  }
+
+  /**
+   * Parse the current virtual url and return an immutable instance of {@link HistoryToken}
+   *
+   * @return {@link StateHistoryToken}
+   */
+  @Override
+  public HistoryToken currentToken() {
+    SessionEntry current = current();
+    return new StateHistoryToken(getRootPath(), isNull(current) ? "" : current.token);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getRootPath() {
+    return isNull(rootPath) ? factory.getRootPath() : rootPath;
+  }
+
+  /**
+   * Changes the root path of this session only, setting the factory root path back makes the
+   * session use the plans shared by all sessions again.
+   *
+   * @param path the new root path
+   */
+  @Override
+  public void setRootPath(String path) {
+    String root = isNull(path) ? "" : path.trim();
+    if (root.equals(factory.getRootPath())) {
+      rootPath = null;
+      rootPathPlans = null;
+    } else {
+      rootPath = root;
+      rootPathPlans = new DispatchPlanCache<>();
+    }
+  }
+
+  private DispatchPlan<Route<S>> dispatchPlan(String token) {
+    if (isNull(rootPathPlans)) {
+      return factory.dispatchPlan(token);
+    }
+    DispatchPlan<Route<S>> plan = rootPathPlans.get(token, 0);
+    if (isNull(plan)) {
+      plan = factory.resolvePlan(rootPath, token);
+      rootPathPlans.put(token, 0, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Reapply the current token and virtual url and force calling all listeners with matching token
+   * filters.
+   */
+  @Override
+  public void fireCurrentStateHistory() {
+    SessionEntry current = current();
+    if (nonNull(current)) {
+      inform(current);
+    }
+  }
+
+  /**
+   * Reapply the current token and virtual url and force calling all listeners with matching token
+   * filters. and use a new page title.
+   *
+   * @param title The page title
+   */
+  @Override
+  public void fireCurrentStateHistory(String title) {
+    fireCurrentStateHistory();
+  }
+
+  public void initialState(String token, String data) {
+    push(StateToken.of(token).data(data), false, false);
+  }
+
+  private void push(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    List<HistoryInterceptor> sharedInterceptors = factory.getInterceptors();
+    Runnable onCompleted =
+        () -> {
+          SessionEntry entry =
+              new SessionEntry(
+                  TokenTemplate.replace(stateToken.getToken(), parameters),
+                  stateToken.getPayload());
+          if (replace && cursor >= 0) {
+            entries[cursor] = entry;
+          } else {
+            append(entry);
+          }
+          if (fire) {
+            inform(entry);
+          }
+        };
+
+    if (sharedInterceptors.isEmpty() && isNull(interceptors)) {
+      onCompleted.run();
+      return;
+    }
+
+    List<HistoryInterceptor> chainInterceptors = sharedInterceptors;
+    if (nonNull(interceptors)) {
+      chainInterceptors = new ArrayList<>(sharedInterceptors);
+      chainInterceptors.addAll(interceptors);
+    }
+    new InterceptorChain(chainInterceptors, onCompleted).intercept(new TokenEvent(stateToken));
+  }
+
+  private void append(SessionEntry entry) {
+    if (isNull(entries)) {
+      entries = new SessionEntry[INITIAL_CAPACITY];
+    } else if (cursor + 1 == entries.length) {
+      entries = Arrays.copyOf(entries, entries.length * 2);
+    }
+    cursor++;
+    entries[cursor] = entry;
+    if (size > cursor + 1) {
+      Arrays.fill(entries, cursor + 1, size, null);
+    }
+    size = cursor + 1;
+  }
+
+  /**
+   * Adds an interceptor applied only to this session, after the interceptors shared by all
+   * sessions.
+   *
+   * @param interceptor {@link HistoryInterceptor}
+   */
+  @Override
+  public void addInterceptor(HistoryInterceptor interceptor) {
+    if (nonNull(interceptor)) {
+      if (isNull(interceptors)) {
+        interceptors = new ArrayList<>(1);
+      }
+      this.interceptors.add(interceptor);
+    }
+  }
+
+  @Override
+  public void removeInterceptor(HistoryInterceptor interceptor) {
+    if (nonNull(interceptor) && nonNull(interceptors)) {
+      this.interceptors.remove(interceptor);
+      if (interceptors.isEmpty()) {
+        interceptors = null;
+      }
+    }
+  }
+
+  @Override
+  public void invoke() {
+    fireCurrentStateHistory();
+  }
+
+  @Override
+  public void reload() {
+    fireCurrentStateHistory();
+  }
+
+  private static final class SessionListener {
+    private final StateListener listener;
+    private final TokenFilter tokenFilter;
+    private final boolean removeOnComplete;
+
+    private SessionListener(
+        StateListener listener, TokenFilter tokenFilter, boolean removeOnComplete) {
+      this.listener = listener;
+      this.tokenFilter = tokenFilter;
+      this.removeOnComplete = removeOnComplete;
+    }
+  }
+
+  private static final class SessionEntry {
+    private final String token;
+    private final StatePayload payload;
+
+    private SessionEntry(String token, StatePayload payload) {
+      this.token = token;
+      this.payload = payload;
+    }
+  }
+
+  private class SessionState implements State {
+
+    private final String token;
+    private final StatePayload payload;
+    private NormalizedToken normalizedToken;
+
+    private SessionState(SessionEntry entry) {
+      this.token = entry.token;
+      this.payload = entry.payload;
+    }
+
+    private SessionState(NormalizedToken normalizedToken, StatePayload payload) {
+      this.token = normalizedToken.getToken().value();
+      this.payload = payload;
+      this.normalizedToken = normalizedToken;
+    }
+
+    @Override
+    public String rootPath() {
+      return getRootPath();
+    }
+
+    @Override
+    public HistoryToken token() {
+      return new StateHistoryToken(token);
+    }
+
+    @Override
+    public Optional<String> data() {
+      return Optional.ofNullable(payload).map(StatePayload::data);
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return Optional.ofNullable(payload).map(statePayload -> statePayload.value(codec));
+    }
+
+    @Override
+    public String title() {
+      return "";
+    }
+
+    @Override
+    public NormalizedToken normalizedToken() {
+      return normalizedToken;
+    }
+
+    @Override
+    public void setNormalizedToken(NormalizedToken normalizedToken) {
+      this.normalizedToken = normalizedToken;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.dominokit.domino.history.*;
+
+/**
+ * A factory of {@link SessionHistory} instances that share one immutable, compiled registry of
+ * routes.
+ *
+ * <p>Server side applications keeping one history per session usually register the same listeners
+ * for every session, with a factory the routes are registered once and each session only owns its
+ * navigation entries, the session context passed to the routes listeners and any session specific
+ * listeners. The dispatch plans resolved for the routes are shared by all sessions as well, they
+ * are kept in a least recently used {@link DispatchPlanCache} bounded by {@link
+ * Builder#dispatchPlanCacheSize(int)}.
+ *
+ * <pre>
+ * SessionHistoryFactory&lt;UserSession&gt; factory =
+ *     SessionHistoryFactory.&lt;UserSession&gt;builder()
+ *         .route(TokenFilter.startsWithPathFilter("orders/:id"), (session, state) -&gt; ...)
+ *         .build();
+ * SessionHistory&lt;UserSession&gt; history = factory.create(userSession);
+ * </pre>
+ *
+ * @param <S> the session context type
+ */
+public class SessionHistoryFactory<S> {
+
+  private final String rootPath;
+  private final Route<S>[] routes;
+  private final List<HistoryInterceptor> interceptors;
+  private final DispatchPlanCache<Route<S>> dispatchPlans;
+
+  private SessionHistoryFactory(Builder<S> builder) {
+    this.rootPath = builder.rootPath;
+    this.routes = builder.routes.toArray(newRoutes(builder.routes.size()));
+    this.interceptors = Collections.unmodifiableList(new ArrayList<>(builder.interceptors));
+    this.dispatchPlans = new DispatchPlanCache<>(builder.dispatchPlanCacheSize);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <S> Route<S>[] newRoutes(int size) {
+    return new Route[size];
+  }
+
+  /**
+   * @param <S> the session context type
+   * @return a new {@link Builder} with an empty root path
+   */
+  public static <S> Builder<S> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Creates a new history for a session
+   *
+   * @param session the session context passed to the routes listeners
+   * @return {@link SessionHistory}
+   */
+  public SessionHistory<S> create(S session) {
+    return new SessionHistory<>(this, session);
+  }
+
+  /** @return the root path shared by all sessions */
+  public String getRootPath() {
+    return rootPath;
+  }
+
+  /** @return the number of registered routes */
+  public int getRoutesCount() {
+    return routes.length;
+  }
+
+  List<HistoryInterceptor> getInterceptors() {
+    return interceptors;
+  }
+
+  DispatchPlan<Route<S>> dispatchPlan(String token) {
+    DispatchPlan<Route<S>> plan;
+    synchronized (dispatchPlans) {
+      plan = dispatchPlans.get(token, 0);
+    }
+    if (nonNull(plan)) {
+      return plan;
+    }
+
+    plan = resolvePlan(rootPath, token);
+    synchronized (dispatchPlans) {
+      dispatchPlans.put(token, 0, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Resolves the routes matching a token against a root path without caching the plan
+   *
+   * @param rootPath the root path to normalize the token against
+   * @param token the dispatched token
+   * @return a new {@link DispatchPlan}
+   */
+  DispatchPlan<Route<S>> resolvePlan(String rootPath, String token) {
+    DispatchPlan<Route<S>> plan = new DispatchPlan<>();
+    for (Route<S> route : routes) {
+      NormalizedToken normalized = route.tokenFilter.normalizeToken(rootPath, token);
+      if (isNull(normalized)) {
+        normalized = new DefaultNormalizedToken(token);
+      }
+      if (route.tokenFilter.filter(new StateHistoryToken(normalized.getToken().value()))) {
+        plan.add(route, normalized, false);
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * A listener to be called when the url state of a session history is changed.
+   *
+   * @param <S> the session context type
+   */
+  @FunctionalInterface
+  public interface SessionStateListener<S> {
+    /**
+     * Called when url state is changed and receives the new {@link DominoHistory.State}
+     *
+     * @param session the context of the session that navigated
+     * @param state {@link DominoHistory.State} the new history state
+     */
+    void onPopState(S session, DominoHistory.State state);
+  }
+
+  static final class Route<S> {
+    final TokenFilter tokenFilter;
+    final SessionStateListener<S> listener;
+
+    private Route(TokenFilter tokenFilter, SessionStateListener<S> listener) {
+      this.tokenFilter = tokenFilter;
+      this.listener = listener;
+    }
+  }
+
+  /**
+   * A builder to compile the routes shared by all sessions histories
+   *
+   * @param <S> the session context type
+   */
+  public static class Builder<S> {
+    private String rootPath = "";
+    private final List<Route<S>> routes = new ArrayList<>();
+    private final List<HistoryInterceptor> interceptors = new ArrayList<>();
+    private int dispatchPlanCacheSize = DispatchPlanCache.DEFAULT_SIZE * 8;
+
+    private Builder() {}
+
+    /**
+     * @param rootPath the root path for all sessions histories
+     * @return same builder instance
+     */
+    public Builder<S> rootPath(String rootPath) {
+      this.rootPath = isNull(rootPath) ? "" : rootPath.trim();
+      return this;
+    }
+
+    /**
+     * Adds a route that will be called for any change that matches the criteria defined by the
+     * token filter in any of the sessions.
+     *
+     * @param tokenFilter {@link TokenFilter}
+     * @param listener {@link SessionStateListener}
+     * @return same builder instance
+     */
+    public Builder<S> route(TokenFilter tokenFilter, SessionStateListener<S> listener) {
+      routes.add(new Route<>(tokenFilter, listener));
+      return this;
+    }
+
+    /**
+     * Adds an interceptor shared by all sessions.
+     *
+     * @param interceptor {@link HistoryInterceptor}
+     * @return same builder instance
+     */
+    public Builder<S> interceptor(HistoryInterceptor interceptor) {
+      if (nonNull(interceptor)) {
+        interceptors.add(interceptor);
+      }
+      return this;
+    }
+
+    /**
+     * @param size the maximum number of tokens to keep a shared {@link DispatchPlan} for, <b>0</b>
+     *     disables the cache.
+     * @return same builder instance
+     */
+    public Builder<S> dispatchPlanCacheSize(int size) {
+      this.dispatchPlanCacheSize = Math.max(0, size);
+      return this;
+    }
+
+    /** @return a new {@link SessionHistoryFactory} with the registered routes */
+    public SessionHistoryFactory<S> build() {
+      return new SessionHistoryFactory<>(this);
+    }
+  }
+}
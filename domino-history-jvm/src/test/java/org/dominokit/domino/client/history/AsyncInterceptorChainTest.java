@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.dominokit.domino.history.AsyncInterceptorChain;
+import org.dominokit.domino.history.InterceptorCompletion;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenEvent;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncInterceptorChainTest {
+
+  private final JVMHistory history = new JVMHistory();
+  private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+  private final ExecutorInterceptorScheduler scheduler = new ExecutorInterceptorScheduler(executor);
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void independentGuardsShouldRunConcurrently() throws Exception {
+    CountDownLatch guardsStarted = new CountDownLatch(2);
+    CountDownLatch navigated = new CountDownLatch(1);
+    history.listen(TokenFilter.any(), state -> navigated.countDown());
+    history.addInterceptor(
+        new AsyncInterceptorChain(scheduler)
+            .addIndependent(
+                scheduler.guard(tokenEvent -> awaitOther(guardsStarted)),
+                scheduler.guard(tokenEvent -> awaitOther(guardsStarted))));
+
+    history.fireState(StateToken.of("orders"));
+
+    assertThat(navigated.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void undecidedInterceptorShouldBlockTheNavigationAfterTimeout() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    history.listen(TokenFilter.any(), state -> calls.add(state.token().value()));
+    history.addInterceptor(
+        new AsyncInterceptorChain(scheduler)
+            .add(tokenEvent -> InterceptorCompletion.create())
+            .interceptorTimeout(50)
+            .onBlocked(tokenEvent -> blocked.countDown()));
+
+    history.fireState(StateToken.of("orders"));
+
+    assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(calls).isEmpty();
+    assertThat(history.getForwards()).isEmpty();
+  }
+
+  @Test
+  public void newerNavigationShouldDropTheStaleOne() {
+    InterceptorCompletion stale = InterceptorCompletion.create();
+    history.listen(TokenFilter.any(), state -> calls.add(state.token().value()));
+    history.addInterceptor(
+        new AsyncInterceptorChain(scheduler)
+            .add(
+                tokenEvent ->
+                    tokenEvent.getStateToken().getToken().equals("orders/1")
+                        ? stale
+                        : InterceptorCompletion.proceeded()));
+
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("orders/2"));
+    stale.proceed();
+
+    assertThat(calls).containsExactly("orders/2");
+  }
+
+  @Test
+  public void asyncDecisionsShouldContinueOnTheNavigationExecutor() throws Exception {
+    ExecutorService navigationExecutor =
+        Executors.newSingleThreadExecutor(task -> new Thread(task, "navigation"));
+    ExecutorInterceptorScheduler navigationScheduler =
+        new ExecutorInterceptorScheduler(executor, navigationExecutor);
+    CountDownLatch navigated = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch returned = new CountDownLatch(1);
+    List<TokenEvent> blockedEvents = new CopyOnWriteArrayList<>();
+    history.listen(
+        TokenFilter.any(),
+        state -> {
+          calls.add(Thread.currentThread().getName());
+          navigated.countDown();
+        });
+    history.addInterceptor(
+        new AsyncInterceptorChain(navigationScheduler)
+            .add(
+                navigationScheduler.guard(
+                    tokenEvent ->
+                        tokenEvent.getStateToken().getToken().equals("orders") || !await(returned)))
+            .onBlocked(
+                tokenEvent -> {
+                  blockedEvents.add(tokenEvent);
+                  blocked.countDown();
+                }));
+
+    navigationExecutor.submit(() -> history.fireState(StateToken.of("orders"))).get();
+    assertThat(navigated.await(5, TimeUnit.SECONDS)).isTrue();
+    navigationExecutor.submit(() -> history.fireState(StateToken.of("customers"))).get();
+    returned.countDown();
+    assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+    navigationExecutor.shutdown();
+
+    assertThat(calls).containsExactly("navigation");
+    assertThat(blockedEvents.get(0).isCanceled()).isTrue();
+  }
+
+  private static boolean awaitOther(CountDownLatch guardsStarted) {
+    guardsStarted.countDown();
+    return await(guardsStarted);
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+import org.dominokit.domino.history.NavigationStack;
+import org.dominokit.domino.history.StatePayload;
+import org.dominokit.domino.history.StateToken;
+import org.junit.Test;
+
+public class CompactEntryStoreTest {
+
+  @Test
+  public void entriesShouldBeRebuiltExactlyAsTheNavigationStackKeepsThem() {
+    Random random = new Random(42);
+    CompactEntryStore<String> store = new CompactEntryStore<>((token, payload) -> token, 50);
+    NavigationStack<String> expected = new NavigationStack<>(50);
+
+    for (int i = 0; i < 5000; i++) {
+      int operation = random.nextInt(10);
+      String token = randomToken(random);
+      if (operation < 6) {
+        store.push(token, null);
+        expected.push(token);
+      } else if (operation < 7) {
+        store.replace(token, null);
+        expected.replace(token);
+      } else {
+        int delta = random.nextInt(9) - 4;
+        assertThat(store.go(delta)).isEqualTo(expected.go(delta));
+      }
+      assertThat(store.current()).isEqualTo(expected.current());
+    }
+
+    assertThat(store.toBackDeque()).containsExactlyElementsOf(expected.toBackDeque());
+    assertThat(store.toForwardDeque()).containsExactlyElementsOf(expected.toForwardDeque());
+  }
+
+  @Test
+  public void evictedEntriesShouldReleaseTheirSegments() {
+    CompactEntryStore<String> store = new CompactEntryStore<>((token, payload) -> token, 10);
+
+    for (int i = 0; i < 10_000; i++) {
+      store.push("app/tenant/123/orders/" + i + "/items", null);
+    }
+
+    assertThat(store.size()).isEqualTo(10);
+    assertThat(store.getSegmentsCount()).isEqualTo(15);
+    assertThat(store.toBackDeque().getLast()).isEqualTo("app/tenant/123/orders/9990/items");
+  }
+
+  @Test
+  public void droppedForwardEntriesShouldReleaseTheirSegments() {
+    StatePayload payload = StatePayload.ofData("payload");
+    CompactEntryStore<String> store =
+        new CompactEntryStore<>((token, entryPayload) -> token + ":" + entryPayload.data());
+    store.push("orders", payload);
+    store.push("orders/1", payload);
+    store.push("orders/2", payload);
+    store.go(-2);
+
+    String current = store.push("customers", payload);
+
+    assertThat(current).isEqualTo("customers:payload");
+    assertThat(store.getSegmentsCount()).isEqualTo(2);
+    assertThat(store.toBackDeque()).containsExactly("customers:payload", "orders:payload");
+  }
+
+  @Test
+  public void loweringTheMaxSizeShouldKeepTheRemainingEntriesDecodable() {
+    CompactEntryStore<String> store = new CompactEntryStore<>((token, payload) -> token);
+    for (int i = 1; i <= 5; i++) {
+      store.push("app/orders/" + i, null);
+    }
+    store.go(-3);
+
+    store.setMaxSize(2);
+
+    assertThat(store.current()).isEqualTo("app/orders/2");
+    assertThat(store.toForwardDeque()).containsExactly("app/orders/3");
+    assertThat(store.getSegmentsCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void jvmHistoryShouldRebuildTokensWhenNavigating() {
+    JVMHistory history = new JVMHistory();
+    history.pushState(StateToken.of("app/orders/1?sort=date#top"));
+    history.pushState(StateToken.of("app/orders/2"));
+    history.pushState(StateToken.of("app/orders/2//x/"));
+
+    history.go(-2);
+
+    assertThat(history.currentToken().value()).isEqualTo("app/orders/1?sort=date#top");
+    assertThat(history.getBackwards())
+        .extracting(JVMHistory.HistoryState::getToken)
+        .containsExactly("app/orders/2", "app/orders/2//x/");
+  }
+
+  private static String randomToken(Random random) {
+    StringBuilder token = new StringBuilder("app/tenant/" + random.nextInt(3));
+    int depth = random.nextInt(4);
+    for (int i = 0; i < depth; i++) {
+      token.append('/').append(random.nextInt(5) == 0 ? "" : "s" + random.nextInt(20));
+    }
+    return token.toString();
+  }
+}
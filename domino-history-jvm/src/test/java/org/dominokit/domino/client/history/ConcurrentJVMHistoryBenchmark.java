@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.dominokit.domino.history.AppHistory;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+
+/**
+ * Compares the navigation throughput of a {@link JVMHistory} guarded by a global lock with the
+ * throughput of a {@link ConcurrentJVMHistory}, run with the test classpath:
+ *
+ * <pre>
+ * java -cp ... org.dominokit.domino.client.history.ConcurrentJVMHistoryBenchmark [threads]
+ * </pre>
+ */
+public class ConcurrentJVMHistoryBenchmark {
+
+  private static final int ROUTES = 50;
+  private static final int NAVIGATIONS = 200_000;
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads =
+        args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      JVMHistory locked = new JVMHistory();
+      Object lock = new Object();
+      run(
+          "JVMHistory (global lock)",
+          threads,
+          locked,
+          token -> {
+            synchronized (lock) {
+              locked.fireState(token);
+            }
+          });
+
+      ConcurrentJVMHistory concurrent = new ConcurrentJVMHistory();
+      run("ConcurrentJVMHistory", threads, concurrent, concurrent::fireState);
+    }
+  }
+
+  private static void run(String name, int threads, AppHistory history, Navigation navigation)
+      throws Exception {
+    for (int i = 0; i < ROUTES; i++) {
+      history.listen(TokenFilter.startsWithPathFilter("route" + i + "/:id"), state -> {});
+    }
+
+    // warm up
+    execute(threads, navigation, NAVIGATIONS / 10);
+    long start = System.nanoTime();
+    execute(threads, navigation, NAVIGATIONS);
+    long elapsed = System.nanoTime() - start;
+
+    long total = (long) threads * NAVIGATIONS;
+    System.out.printf(
+        "%-26s threads=%-3d %,12.0f navigations/s%n",
+        name, threads, total / (elapsed / 1_000_000_000d));
+  }
+
+  private static void execute(int threads, Navigation navigation, int count) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CyclicBarrier barrier = new CyclicBarrier(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                barrier.await();
+                for (int i = 0; i < count; i++) {
+                  navigation.navigate(StateToken.of("route" + (i % ROUTES) + "/" + (i % 16)));
+                }
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+  }
+
+  private interface Navigation {
+    void navigate(StateToken token);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dominokit.domino.client.history.ConcurrentJVMHistory.HistoryState;
+import org.dominokit.domino.history.DominoHistory.StateListener;
+import org.dominokit.domino.history.InterceptorDecisionCache;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class ConcurrentJVMHistoryTest {
+
+  private static final int THREADS = 8;
+  private static final int NAVIGATIONS = 2_000;
+
+  private final ConcurrentJVMHistory history = new ConcurrentJVMHistory();
+
+  @Test
+  public void concurrentPushesShouldBeLinearized() throws Exception {
+    AtomicInteger dispatched = new AtomicInteger();
+    history.listen(
+        TokenFilter.startsWithPathFilter("orders"), state -> dispatched.incrementAndGet());
+
+    runConcurrently(
+        thread -> {
+          for (int i = 0; i < NAVIGATIONS; i++) {
+            history.fireState(StateToken.of("orders/" + thread + "/" + i));
+          }
+        });
+
+    int total = THREADS * NAVIGATIONS;
+    assertThat(dispatched.get()).isEqualTo(total);
+    assertThat(history.getHistoryEntriesCount()).isEqualTo(total);
+
+    long expected = total;
+    for (HistoryState state : history.getForwards()) {
+      assertThat(state.getSequence()).isEqualTo(expected--);
+    }
+  }
+
+  @Test
+  public void dispatchShouldNotBeDisturbedByConcurrentRegistrations() throws Exception {
+    AtomicInteger completedCalls = new AtomicInteger();
+    int completedListeners = THREADS * 100;
+    for (int i = 0; i < completedListeners; i++) {
+      history.listen(TokenFilter.any(), state -> completedCalls.incrementAndGet(), true);
+    }
+
+    runConcurrently(
+        thread -> {
+          List<StateListener> registered = new ArrayList<>();
+          for (int i = 0; i < NAVIGATIONS; i++) {
+            StateListener listener = state -> {};
+            registered.add(listener);
+            history.listen(TokenFilter.startsWithPathFilter("orders"), listener);
+            history.fireState(StateToken.of("orders/" + i));
+            if (i % 2 == 0) {
+              history.back();
+            }
+            history.removeListener(registered.remove(0));
+          }
+        });
+
+    assertThat(completedCalls.get()).isEqualTo(completedListeners);
+    assertThat(history.getListeners()).isEmpty();
+  }
+
+  @Test
+  public void sharedDecisionCacheShouldStayConsistentAcrossThreads() throws Exception {
+    InterceptorDecisionCache decisions = new InterceptorDecisionCache(60_000, 16);
+    AtomicInteger dispatched = new AtomicInteger();
+    history.listen(state -> dispatched.incrementAndGet());
+    history.addInterceptor(decisions.cached((tokenEvent, chain) -> chain.next()));
+
+    runConcurrently(
+        thread -> {
+          for (int i = 0; i < NAVIGATIONS; i++) {
+            history.fireState(StateToken.of("orders/" + (i % 32)));
+          }
+        });
+
+    assertThat(dispatched.get()).isEqualTo(THREADS * NAVIGATIONS);
+    assertThat(decisions.size()).isLessThanOrEqualTo(16);
+  }
+
+  @Test
+  public void dispatchPlansShouldFollowTheRootPathAndStayBounded() {
+    List<String> tokens = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+
+    history.fireState(StateToken.of("orders/1"));
+    history.setRootPath("app");
+    history.fireState(StateToken.of("orders/1"));
+    for (int i = 0; i < 1_000; i++) {
+      history.fireState(StateToken.of("app/orders/" + i));
+    }
+    history.fireState(StateToken.of("app/orders/1"));
+
+    assertThat(tokens).hasSize(1_002);
+    assertThat(tokens.get(0)).isEqualTo("orders/1");
+    assertThat(tokens.get(1_001)).isEqualTo("app/orders/1");
+  }
+
+  private void runConcurrently(ThreadTask task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CyclicBarrier barrier = new CyclicBarrier(THREADS);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      int thread = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                barrier.await();
+                task.run(thread);
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+  }
+
+  private interface ThreadTask {
+    void run(int thread);
+  }
+}
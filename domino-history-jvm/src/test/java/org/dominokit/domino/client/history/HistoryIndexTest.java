@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.dominokit.domino.client.history.HistoryIndex.Match;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class HistoryIndexTest {
+
+  private final JVMHistory history = new JVMHistory();
+
+  @Test
+  public void lookupsShouldFindTheMostRecentPastEntry() {
+    TokenFilter orderDetails = TokenFilter.startsWithPathFilter("orders/details");
+    HistoryIndex index = new HistoryIndex(history).register(orderDetails);
+    push(
+        "orders/details?id=1",
+        "customers/7?tab=info",
+        "orders/details?id=2",
+        "orders/details?id=3");
+
+    Match match = index.lastMatching(orderDetails).get();
+    assertThat(match.getState().getToken()).isEqualTo("orders/details?id=2");
+    assertThat(match.getDelta()).isEqualTo(-1);
+    assertThat(index.lastWithQueryParameter("id", "1").get().getDelta()).isEqualTo(-3);
+    assertThat(index.lastWithQueryParameter("id", "3")).isEmpty();
+    assertThat(index.lastWithPathPrefix("customers").get().getState().getToken())
+        .isEqualTo("customers/7?tab=info");
+
+    history.go(index.lastWithPathPrefix("customers").get().getDelta());
+    assertThat(history.currentToken().value()).isEqualTo("customers/7?tab=info");
+    assertThat(index.lastMatching(orderDetails).get().getDelta()).isEqualTo(-1);
+  }
+
+  @Test
+  public void droppedEntriesShouldBeRemovedFromTheIndex() {
+    history.setMaxEntries(3);
+    HistoryIndex index = new HistoryIndex(history);
+    push("orders/1", "customers/1", "orders/2", "customers/2");
+    assertThat(index.lastWithPathPrefix("orders/1")).isEmpty();
+
+    history.back();
+    history.back();
+    push("invoices/1");
+    assertThat(index.lastWithPathPrefix("orders/2")).isEmpty();
+    assertThat(index.lastWithPathPrefix("customers").get().getState().getToken())
+        .isEqualTo("customers/1");
+
+    history.replaceState(StateToken.of("invoices/2"));
+    history.pushState(StateToken.of("reports"));
+    assertThat(index.lastWithPathPrefix("invoices/1")).isEmpty();
+    assertThat(index.lastWithPathPrefix("invoices").get().getState().getToken())
+        .isEqualTo("invoices/2");
+  }
+
+  @Test
+  public void filtersRegisteredLaterShouldIndexTheExistingEntries() {
+    push("orders/1", "customers/1");
+    HistoryIndex index = new HistoryIndex(history);
+    TokenFilter orders = TokenFilter.startsWithPathFilter("orders");
+
+    assertThat(index.register(orders).lastMatching(orders).get().getDelta()).isEqualTo(-1);
+  }
+
+  private void push(String... tokens) {
+    for (String token : tokens) {
+      history.pushState(StateToken.of(token));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.dominokit.domino.history.StateToken;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HistoryJournalTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void attachShouldRecoverTheEntriesAndTheCurrentEntry() throws IOException {
+    Path directory = folder.newFolder("session").toPath();
+    try (HistoryJournal journal = HistoryJournal.builder(directory).build()) {
+      JVMHistory history = new JVMHistory();
+      journal.attach(history);
+      history.pushState(StateToken.of("orders"));
+      history.pushState(StateToken.of("orders/1").data("{\"id\":1}"));
+      history.pushState(StateToken.of("orders/2"));
+      history.replaceState(StateToken.of("orders/3"));
+      history.back();
+    }
+
+    JVMHistory recovered = recover(directory);
+
+    assertThat(recovered.currentToken().value()).isEqualTo("orders/1");
+    assertThat(recovered.getForwards().peek().getData()).isEqualTo("{\"id\":1}");
+    assertThat(recovered.getBackwards())
+        .extracting(JVMHistory.HistoryState::getToken)
+        .containsExactly("orders/3");
+  }
+
+  @Test
+  public void fullSegmentsShouldBeFoldedIntoTheCheckpoint() throws IOException {
+    Path directory = folder.newFolder("session").toPath();
+    try (HistoryJournal journal = HistoryJournal.builder(directory).segmentSize(256).build()) {
+      JVMHistory history = new JVMHistory();
+      journal.attach(history);
+      for (int i = 0; i < 200; i++) {
+        history.pushState(StateToken.of("orders/" + i));
+      }
+      history.go(-5);
+    }
+
+    assertThat(files(directory)).contains("checkpoint.bin").hasSizeLessThan(10);
+    JVMHistory recovered = recover(directory);
+    assertThat(recovered.getHistoryEntriesCount()).isEqualTo(200);
+    assertThat(recovered.currentToken().value()).isEqualTo("orders/194");
+  }
+
+  @Test
+  public void aTornRecordShouldEndTheReplay() throws IOException {
+    Path directory = folder.newFolder("session").toPath();
+    try (HistoryJournal journal = HistoryJournal.builder(directory).build()) {
+      JVMHistory history = new JVMHistory();
+      journal.attach(history);
+      history.pushState(StateToken.of("a"));
+      history.pushState(StateToken.of("b"));
+    }
+    Path segment = directory.resolve(files(directory).get(0));
+    byte[] bytes = Files.readAllBytes(segment);
+    bytes[18 + 8 + 5] = 'x';
+    Files.write(segment, bytes);
+
+    JVMHistory recovered = recover(directory);
+
+    assertThat(recovered.getHistoryEntriesCount()).isEqualTo(1);
+    assertThat(recovered.currentToken().value()).isEqualTo("a");
+  }
+
+  @Test
+  public void aNavigationThatCannotBeJournaledShouldFailTheJournal() throws IOException {
+    Path directory = folder.newFolder("session").toPath();
+    JVMHistory history = new JVMHistory();
+    try (HistoryJournal journal = HistoryJournal.builder(directory).segmentSize(256).build()) {
+      journal.attach(history);
+      history.pushState(StateToken.of("a"));
+      history.pushState(StateToken.of("b"));
+      history.pushState(StateToken.of(String.join("", Collections.nCopies(300, "c"))));
+      history.back();
+
+      assertThat(journal.isFailed()).isTrue();
+    }
+
+    assertThat(history.currentToken().value()).isEqualTo("b");
+    JVMHistory recovered = recover(directory);
+    assertThat(recovered.getHistoryEntriesCount()).isEqualTo(2);
+    assertThat(recovered.currentToken().value()).isEqualTo("b");
+  }
+
+  @Test
+  public void closedJournalsShouldDetachAndLeaveASharedExecutorRunning() throws IOException {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    Path first = folder.newFolder("first").toPath();
+    Path second = folder.newFolder("second").toPath();
+    JVMHistory firstHistory = new JVMHistory();
+    JVMHistory secondHistory = new JVMHistory();
+    try (HistoryJournal firstJournal =
+            HistoryJournal.builder(first).segmentSize(256).executor(executor).build();
+        HistoryJournal secondJournal =
+            HistoryJournal.builder(second).segmentSize(256).executor(executor).build()) {
+      firstJournal.attach(firstHistory);
+      secondJournal.attach(secondHistory);
+      for (int i = 0; i < 100; i++) {
+        firstHistory.pushState(StateToken.of("orders/" + i));
+        secondHistory.pushState(StateToken.of("customers/" + i));
+      }
+    }
+    firstHistory.pushState(StateToken.of("orders/closed"));
+
+    assertThat(executor.isShutdown()).isFalse();
+    executor.shutdown();
+    assertThat(recover(first).currentToken().value()).isEqualTo("orders/99");
+    assertThat(recover(second).getHistoryEntriesCount()).isEqualTo(100);
+  }
+
+  private static JVMHistory recover(Path directory) {
+    JVMHistory history = new JVMHistory();
+    try (HistoryJournal journal = HistoryJournal.builder(directory).build()) {
+      journal.attach(history);
+    }
+    return history;
+  }
+
+  private static List<String> files(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+    }
+  }
+}
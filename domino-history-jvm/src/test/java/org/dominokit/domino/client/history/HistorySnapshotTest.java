@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.dominokit.domino.client.history.HistorySnapshot.SnapshotException;
+import org.dominokit.domino.client.history.JVMHistory.HistoryState;
+import org.dominokit.domino.history.StateToken;
+import org.junit.Test;
+
+public class HistorySnapshotTest {
+
+  @Test
+  public void decodeShouldRestoreTheEntriesRootPathAndCurrentEntry() {
+    JVMHistory history = new JVMHistory("app");
+    history.setMaxEntries(50);
+    history.pushState(StateToken.of("orders").data("{\"page\":1}"));
+    history.pushState(StateToken.of("orders/1"));
+    history.pushState(StateToken.of("orders/1/items/2").data("{\"qty\":3}"));
+    history.pushState(StateToken.of(""));
+    history.back();
+    history.back();
+
+    JVMHistory restored = new JVMHistory();
+    HistorySnapshot.decode(HistorySnapshot.encode(history), restored);
+
+    assertThat(restored.getRootPath()).isEqualTo("app");
+    assertThat(restored.getMaxEntries()).isEqualTo(50);
+    assertThat(restored.currentToken().value()).isEqualTo("app/orders/1");
+    assertThat(tokens(restored.getForwards())).containsExactly("orders/1", "orders");
+    assertThat(tokens(restored.getBackwards())).containsExactly("orders/1/items/2", "");
+    assertThat(restored.getForwards().getLast().getData()).isEqualTo("{\"page\":1}");
+    assertThat(restored.getForwards().getFirst().getData()).isNull();
+    assertThat(restored.getBackwards().getFirst().getData()).isEqualTo("{\"qty\":3}");
+  }
+
+  @Test
+  public void decodeShouldKeepTheCurrentEntryWhateverTheTargetMaximum() {
+    JVMHistory history = new JVMHistory();
+    for (int i = 0; i < 20; i++) {
+      history.pushState(StateToken.of("p" + i));
+    }
+    history.go(-10);
+
+    JVMHistory restored = new JVMHistory();
+    restored.setMaxEntries(5);
+    HistorySnapshot.decode(HistorySnapshot.encode(history), restored);
+
+    assertThat(restored.getMaxEntries()).isEqualTo(history.getMaxEntries());
+    assertThat(restored.getHistoryEntriesCount()).isEqualTo(20);
+    assertThat(restored.currentToken().value()).isEqualTo("p9");
+
+    JVMHistory bounded = new JVMHistory();
+    bounded.setMaxEntries(5);
+    bounded.restore(
+        IntStream.range(0, 20).mapToObj(i -> "p" + i).collect(Collectors.toList()),
+        Collections.nCopies(20, null),
+        9);
+    assertThat(bounded.currentToken().value()).isEqualTo("p9");
+    assertThat(tokens(bounded.getBackwards())).containsExactly("p10", "p11", "p12", "p13");
+  }
+
+  @Test
+  public void snapshotShouldBeStreamedThroughChannelsInChunks() {
+    JVMHistory history = new JVMHistory();
+    char[] large = new char[3 * HistorySnapshot.CHUNK_SIZE];
+    Arrays.fill(large, 'x');
+    for (int i = 0; i < 2000; i++) {
+      history.pushState(StateToken.of("tenant/42/orders/" + (i % 20)));
+    }
+    history.pushState(StateToken.of("tenant/42/report").data(new String(large)));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HistorySnapshot.encode(history, Channels.newChannel(output));
+    JVMHistory restored = new JVMHistory();
+    HistorySnapshot.decode(
+        Channels.newChannel(new ByteArrayInputStream(output.toByteArray())), restored);
+
+    assertThat(output.size()).isLessThan(16 * 1024 + large.length);
+    assertThat(restored.getHistoryEntriesCount()).isEqualTo(2001);
+    assertThat(restored.getForwards().getFirst().getData()).isEqualTo(new String(large));
+    assertThat(tokens(restored.getForwards()).subList(1, 4))
+        .containsExactly("tenant/42/orders/19", "tenant/42/orders/18", "tenant/42/orders/17");
+  }
+
+  @Test
+  public void malformedSnapshotShouldBeRejected() {
+    JVMHistory history = new JVMHistory();
+    history.pushState(StateToken.of("orders/1"));
+    ByteBuffer snapshot = HistorySnapshot.encode(history);
+    ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(snapshot.array(), snapshot.limit() - 2));
+
+    assertThatThrownBy(() -> HistorySnapshot.decode(truncated, new JVMHistory()))
+        .isInstanceOf(SnapshotException.class);
+    assertThatThrownBy(
+            () -> HistorySnapshot.decode(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}), history))
+        .isInstanceOf(SnapshotException.class);
+  }
+
+  @Test
+  public void lengthsBeyondTheSnapshotShouldBeRejectedBeforeAllocating() {
+    ByteBuffer snapshot = HistorySnapshot.encode(new JVMHistory("app"));
+    byte[] bytes = Arrays.copyOf(snapshot.array(), snapshot.limit() + 4);
+    // the root path length follows the 4 bytes magic and the 1 byte version
+    System.arraycopy(
+        new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07}, 0, bytes, 5, 5);
+
+    assertThatThrownBy(() -> HistorySnapshot.decode(ByteBuffer.wrap(bytes), new JVMHistory()))
+        .isInstanceOf(SnapshotException.class)
+        .hasMessageContaining("length");
+    assertThatThrownBy(
+            () ->
+                HistorySnapshot.decode(
+                    Channels.newChannel(new ByteArrayInputStream(bytes)), new JVMHistory()))
+        .isInstanceOf(SnapshotException.class)
+        .hasMessageContaining("length");
+  }
+
+  private static List<String> tokens(Deque<HistoryState> states) {
+    return states.stream().map(HistoryState::getToken).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import org.dominokit.domino.history.HistoryInterceptor;
+import org.dominokit.domino.history.InterceptorChain;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenEvent;
+
+/**
+ * Measures the cost of running an {@link InterceptorChain} of pass-through interceptors on its own
+ * and as part of a {@link JVMHistory} navigation, run with the test classpath:
+ *
+ * <pre>
+ * java -cp ... org.dominokit.domino.client.history.InterceptorChainBenchmark
+ * </pre>
+ */
+public class InterceptorChainBenchmark {
+
+  private static final int[] INTERCEPTORS = {0, 5, 50};
+  private static final int CHAINS = 2_000_000;
+  private static final int NAVIGATIONS = 20_000;
+
+  private static int completed;
+
+  public static void main(String[] args) {
+    for (int count : INTERCEPTORS) {
+      HistoryInterceptor[] interceptors = new HistoryInterceptor[count];
+      for (int i = 0; i < count; i++) {
+        interceptors[i] = (tokenEvent, chain) -> chain.next();
+      }
+      chain(count, interceptors);
+      navigation(count, interceptors);
+    }
+  }
+
+  private static void chain(int count, HistoryInterceptor[] interceptors) {
+    TokenEvent event = new TokenEvent(StateToken.of("orders/1"));
+    Runnable onCompleted = () -> completed++;
+    // warm up
+    for (int i = 0; i < CHAINS / 10; i++) {
+      new InterceptorChain(interceptors, onCompleted).intercept(event);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < CHAINS; i++) {
+      new InterceptorChain(interceptors, onCompleted).intercept(event);
+    }
+    long elapsed = System.nanoTime() - start;
+    System.out.printf(
+        "InterceptorChain interceptors=%-3d %,10.1f ns/chain%n", count, elapsed / (double) CHAINS);
+  }
+
+  private static void navigation(int count, HistoryInterceptor[] interceptors) {
+    JVMHistory history = new JVMHistory();
+    for (HistoryInterceptor interceptor : interceptors) {
+      history.addInterceptor(interceptor);
+    }
+    // warm up
+    for (int i = 0; i < NAVIGATIONS / 10; i++) {
+      history.pushState(StateToken.of("orders/" + (i % 16)));
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < NAVIGATIONS; i++) {
+      history.pushState(StateToken.of("orders/" + (i % 16)));
+    }
+    long elapsed = System.nanoTime() - start;
+    System.out.printf(
+        "JVMHistory.pushState interceptors=%-3d %,10.1f ns/navigation%n",
+        count, elapsed / (double) NAVIGATIONS);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dominokit.domino.history.HistoryInterceptor;
+import org.dominokit.domino.history.InterceptorChain;
+import org.dominokit.domino.history.IsInterceptorChain;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenEvent;
+import org.junit.Test;
+
+public class InterceptorChainTest {
+
+  private final List<String> calls = new ArrayList<>();
+  private final AtomicInteger completed = new AtomicInteger();
+
+  @Test
+  public void lastAddedInterceptorShouldRunFirst() {
+    new InterceptorChain(Arrays.asList(recording("first"), recording("second")), this::complete)
+        .intercept(new TokenEvent(StateToken.of("orders")));
+
+    assertThat(calls).containsExactly("second", "first");
+    assertThat(completed.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void chainShouldResumeWhenNextIsCalledLater() {
+    List<IsInterceptorChain> suspended = new ArrayList<>();
+    HistoryInterceptor async = (tokenEvent, chain) -> suspended.add(chain);
+    new InterceptorChain(Arrays.asList(recording("first"), async), this::complete)
+        .intercept(new TokenEvent(StateToken.of("orders")));
+    assertThat(calls).isEmpty();
+
+    suspended.get(0).next();
+
+    assertThat(calls).containsExactly("first");
+    assertThat(completed.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void canceledEventShouldCompleteWithoutRunningRemainingInterceptors() {
+    HistoryInterceptor canceling = (tokenEvent, chain) -> tokenEvent.cancel();
+    new InterceptorChain(Arrays.asList(recording("first"), canceling), this::complete)
+        .intercept(new TokenEvent(StateToken.of("orders")));
+
+    assertThat(calls).isEmpty();
+    assertThat(completed.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void synchronousInterceptorsShouldNotGrowTheStack() {
+    HistoryInterceptor[] interceptors = new HistoryInterceptor[100_000];
+    Arrays.fill(interceptors, (HistoryInterceptor) (tokenEvent, chain) -> chain.next());
+
+    new InterceptorChain(interceptors, this::complete)
+        .intercept(new TokenEvent(StateToken.of("orders")));
+
+    assertThat(completed.get()).isEqualTo(1);
+  }
+
+  private HistoryInterceptor recording(String name) {
+    return (tokenEvent, chain) -> {
+      calls.add(name);
+      chain.next();
+    };
+  }
+
+  private void complete() {
+    completed.incrementAndGet();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.dominokit.domino.history.InterceptorDecisionCache;
+import org.dominokit.domino.history.PureHistoryInterceptor;
+import org.dominokit.domino.history.StateToken;
+import org.junit.Test;
+
+public class InterceptorDecisionCacheTest {
+
+  private final JVMHistory history = new JVMHistory();
+  private final AtomicLong time = new AtomicLong();
+  private final InterceptorDecisionCache decisions =
+      new InterceptorDecisionCache(1_000, 16, time::get);
+  private final AtomicInteger evaluations = new AtomicInteger();
+  private final PureHistoryInterceptor adminGuard =
+      (tokenEvent, chain) -> {
+        evaluations.incrementAndGet();
+        if (tokenEvent.getParsedToken().value().startsWith("admin")) {
+          tokenEvent.cancel();
+        } else {
+          chain.next();
+        }
+      };
+
+  @Test
+  public void decisionsShouldBeReplayedUntilTheyExpire() {
+    history.addInterceptor(decisions.cached(adminGuard));
+
+    history.pushState(StateToken.of("orders"));
+    history.pushState(StateToken.of("orders"));
+    assertThat(evaluations.get()).isEqualTo(1);
+    assertThat(history.getForwards()).hasSize(2);
+
+    time.addAndGet(1_000);
+    history.pushState(StateToken.of("orders"));
+    assertThat(evaluations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void canceledDecisionsShouldBeReplayedAsCanceled() {
+    AtomicInteger canceled = new AtomicInteger();
+    history.addInterceptor(
+        (tokenEvent, chain) -> {
+          if (tokenEvent.isCanceled()) {
+            canceled.incrementAndGet();
+          }
+        });
+    history.addInterceptor(decisions.cached(adminGuard));
+
+    history.pushState(StateToken.of("admin/users"));
+    history.pushState(StateToken.of("admin/users"));
+
+    assertThat(evaluations.get()).isEqualTo(1);
+    assertThat(decisions.size()).isEqualTo(1);
+    assertThat(canceled.get()).isZero();
+  }
+
+  @Test
+  public void invalidateShouldDropTheDecisions() {
+    history.addInterceptor(decisions.cached(adminGuard));
+
+    history.pushState(StateToken.of("orders"));
+    decisions.invalidate(adminGuard);
+    history.pushState(StateToken.of("orders"));
+
+    assertThat(evaluations.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dominokit.domino.history.DominoHistory.StateListener;
+import org.dominokit.domino.history.HistoryToken;
+import org.dominokit.domino.history.NavigationCoalescing;
+import org.dominokit.domino.history.NormalizedToken;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.dominokit.domino.history.TokenParameter;
+import org.junit.Test;
+
+public class JVMHistoryTest {
+
+  private final JVMHistory history = new JVMHistory();
+
+  @Test
+  public void repeatedDispatchShouldNotReEvaluateFilters() {
+    CountingFilter filter = new CountingFilter(TokenFilter.startsWithPathFilter("orders/:id"));
+    List<String> ids = new ArrayList<>();
+    history.listen(filter, state -> ids.add(state.normalizedToken().getPathParameter("id")));
+
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("orders/2"));
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("orders/2"));
+
+    assertThat(ids).containsExactly("1", "2", "1", "2");
+    assertThat(filter.count.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void listenerChangesToTheNormalizedTokenShouldNotLeakIntoLaterDispatches() {
+    List<String> received = new ArrayList<>();
+    history.listen(
+        TokenFilter.startsWithPathFilter("orders/:id"),
+        state -> {
+          NormalizedToken normalized = state.normalizedToken();
+          received.add(normalized.getPathParameter("id") + " " + normalized.getToken().value());
+          normalized.getPathParameters().put("id", "changed");
+          normalized.getToken().appendPath("changed");
+        });
+
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("orders/1"));
+
+    assertThat(received).containsExactly("1 orders/:id", "1 orders/:id", "1 orders/:id");
+  }
+
+  @Test
+  public void registryChangesShouldInvalidateCachedPlans() {
+    CountingFilter filter = new CountingFilter(TokenFilter.startsWithPathFilter("orders"));
+    List<String> calls = new ArrayList<>();
+    history.listen(filter, state -> calls.add("first"));
+    history.fireState(StateToken.of("orders"));
+
+    StateListener second = state -> calls.add("second");
+    history.listen(TokenFilter.startsWithPathFilter("orders"), second);
+    history.fireCurrentStateHistory();
+    assertThat(filter.count.get()).isEqualTo(2);
+
+    history.removeListener(second);
+    history.fireCurrentStateHistory();
+
+    assertThat(calls).containsExactly("first", "first", "second", "first");
+  }
+
+  @Test
+  public void removeOnCompleteListenerShouldBeCalledOnce() {
+    AtomicInteger calls = new AtomicInteger();
+    history.listen(TokenFilter.any(), state -> calls.incrementAndGet(), true);
+
+    history.fireState(StateToken.of("orders"));
+    history.fireCurrentStateHistory();
+
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void listenersShouldBeCalledInRegistrationOrder() {
+    List<Integer> calls = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      int index = i;
+      history.listen(TokenFilter.any(), state -> calls.add(index));
+    }
+
+    history.fireState(StateToken.of("orders"));
+
+    assertThat(calls).hasSize(20).isSorted();
+  }
+
+  @Test
+  public void listenerRegisteredDuringDispatchShouldNotBeCalledForTheSameDispatch() {
+    List<String> calls = new ArrayList<>();
+    history.listen(
+        TokenFilter.any(),
+        state -> {
+          calls.add("outer");
+          history.listen(TokenFilter.any(), inner -> calls.add("inner"), true);
+        },
+        true);
+
+    history.fireState(StateToken.of("orders"));
+    assertThat(calls).containsExactly("outer");
+
+    history.fireCurrentStateHistory();
+    assertThat(calls).containsExactly("outer", "inner");
+    assertThat(history.getListeners()).isEmpty();
+  }
+
+  @Test
+  public void dispatchExecutorShouldRunListenersConcurrently() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    history.setDispatchExecutor(executor, false);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      history.listen(
+          TokenFilter.any(),
+          state -> {
+            bothStarted.countDown();
+            await(bothStarted);
+          });
+    }
+
+    history.fireState(StateToken.of("orders"));
+
+    history.lastDispatch().get(5, TimeUnit.SECONDS);
+    executor.shutdown();
+  }
+
+  @Test
+  public void orderedListenersShouldReceiveNavigationsInOrder() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    history.setDispatchExecutor(executor, true);
+    List<String> tokens = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+
+    for (int i = 0; i < 100; i++) {
+      history.fireState(StateToken.of("orders/" + i));
+    }
+
+    history.lastDispatch().get(5, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertThat(tokens).hasSize(100).startsWith("orders/0").endsWith("orders/99");
+    for (int i = 0; i < 100; i++) {
+      assertThat(tokens.get(i)).isEqualTo("orders/" + i);
+    }
+  }
+
+  @Test
+  public void listenersFailuresShouldBeReportedOnTheNavigationCompletion() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    history.setDispatchExecutor(executor, false);
+    history.listen(
+        TokenFilter.any(),
+        state -> {
+          throw new IllegalStateException("first");
+        });
+    history.listen(
+        TokenFilter.any(),
+        state -> {
+          throw new IllegalStateException("second");
+        });
+
+    history.fireState(StateToken.of("orders"));
+
+    assertThatThrownBy(() -> history.lastDispatch().get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(JVMHistory.DispatchException.class)
+        .satisfies(error -> assertThat(error.getCause().getSuppressed()).hasSize(2));
+    executor.shutdown();
+  }
+
+  @Test
+  public void eachNavigationShouldHaveItsOwnCompletion() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    history.setDispatchExecutor(executor, false);
+    CountDownLatch release = new CountDownLatch(1);
+    history.listen(
+        TokenFilter.startsWithPathFilter("slow"),
+        state -> {
+          await(release);
+        });
+
+    CompletableFuture<Void> slow = history.fireStateAsync(StateToken.of("slow"));
+    CompletableFuture<Void> fast = history.fireStateAsync(StateToken.of("fast"));
+
+    fast.get(5, TimeUnit.SECONDS);
+    assertThat(slow).isNotDone();
+    release.countDown();
+    slow.get(5, TimeUnit.SECONDS);
+    executor.shutdown();
+
+    history.setDispatchExecutor(null, false);
+    assertThat(history.lastDispatch()).isDone();
+    assertThat(history.fireStateAsync(StateToken.of("orders"))).isDone();
+  }
+
+  @Test
+  public void batchedNavigationsShouldCompleteWithTheBatchDispatch() {
+    List<CompletableFuture<Void>> completions = new ArrayList<>();
+    history.batch(
+        () -> {
+          completions.add(history.fireStateAsync(StateToken.of("orders")));
+          assertThat(completions.get(0)).isNotDone();
+        });
+    assertThat(completions.get(0)).isCompleted();
+
+    assertThatThrownBy(
+            () ->
+                history.batch(
+                    () -> {
+                      completions.add(history.fireStateAsync(StateToken.of("customers")));
+                      throw new IllegalStateException("discarded");
+                    }))
+        .hasMessage("discarded");
+    assertThat(completions.get(1)).isCancelled();
+  }
+
+  @Test
+  public void coalescedNavigationsShouldBeDispatchedOnceWhenFlushed() {
+    List<String> tokens = new ArrayList<>();
+    List<Runnable> scheduled = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+    history.setCoalescingScheduler(
+        (task, delayMillis) -> {
+          assertThat(delayMillis).isEqualTo(50);
+          scheduled.add(task);
+          return () -> scheduled.remove(task);
+        });
+    history.setCoalescing(NavigationCoalescing.window(50));
+
+    history.fireState(StateToken.of("orders"));
+    history.fireState(StateToken.of("orders/1"));
+    history.pushState(StateToken.of("orders/2"));
+    assertThat(tokens).isEmpty();
+    assertThat(scheduled).hasSize(1);
+
+    scheduled.get(0).run();
+    assertThat(tokens).containsExactly("orders/2");
+    assertThat(history.getHistoryEntriesCount()).isEqualTo(1);
+    assertThat(scheduled).isEmpty();
+  }
+
+  @Test
+  public void batchEndShouldFlushTheCoalescedNavigations() {
+    List<String> tokens = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+    history.setCoalescing(NavigationCoalescing.frame());
+
+    history.fireState(StateToken.of("orders"));
+    history.batch(() -> history.fireState(StateToken.of("orders/1")));
+    assertThat(tokens).containsExactly("orders/1");
+
+    history.fireState(StateToken.of("customers"));
+    history.setCoalescing(null);
+    history.fireState(StateToken.of("invoices"));
+    assertThat(tokens).containsExactly("orders/1", "customers", "invoices");
+  }
+
+  @Test
+  public void failedBatchShouldKeepTheNavigationPendingFromBeforeIt() {
+    List<String> tokens = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+    history.setCoalescing(NavigationCoalescing.frame());
+    CompletableFuture<Void> before = history.fireStateAsync(StateToken.of("orders"));
+
+    List<CompletableFuture<Void>> discarded = new ArrayList<>();
+    assertThatThrownBy(
+            () ->
+                history.batch(
+                    () -> {
+                      discarded.add(history.fireStateAsync(StateToken.of("customers")));
+                      throw new IllegalStateException("discarded");
+                    }))
+        .hasMessage("discarded");
+    history.flushNavigations();
+
+    assertThat(tokens).containsExactly("orders");
+    assertThat(before).isCompleted();
+    assertThat(discarded.get(0)).isCancelled();
+  }
+
+  @Test
+  public void backShouldApplyTheBatchedPushFirst() {
+    List<String> tokens = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> tokens.add(state.token().value()));
+    history.pushState(StateToken.of("orders"));
+
+    history.batch(
+        () -> {
+          history.pushState(StateToken.of("orders/1"));
+          history.back();
+        });
+
+    assertThat(history.currentToken().value()).isEqualTo("orders");
+    assertThat(history.getBackwards())
+        .extracting(JVMHistory.HistoryState::getToken)
+        .containsExactly("orders/1");
+    assertThat(tokens).containsExactly("orders");
+  }
+
+  @Test
+  public void backShouldApplyTheCoalescedPushFirst() {
+    history.pushState(StateToken.of("orders"));
+    history.setCoalescing(NavigationCoalescing.frame());
+    history.pushState(StateToken.of("orders/1"));
+    history.back();
+    history.flushNavigations();
+
+    assertThat(history.currentToken().value()).isEqualTo("orders");
+    assertThat(history.getHistoryEntriesCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void higherPriorityListenersShouldBeCalledFirst() {
+    List<String> calls = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> calls.add("default"));
+    history.listen(TokenFilter.any(), state -> calls.add("low"), -1);
+    history.listen(TokenFilter.any(), state -> calls.add("high-1"), 10);
+    history.listen(TokenFilter.any(), state -> calls.add("high-2"), 10);
+
+    history.fireState(StateToken.of("orders"));
+
+    assertThat(calls).containsExactly("high-1", "high-2", "default", "low");
+  }
+
+  @Test
+  public void stoppedPropagationShouldSkipLowerPriorityListenersAndFilters() {
+    List<String> calls = new ArrayList<>();
+    CountingFilter filter = new CountingFilter(TokenFilter.any());
+    history.listen(filter, state -> calls.add("catch-all"));
+    history.listen(
+        TokenFilter.startsWithPathFilter("admin"),
+        state -> {
+          calls.add("auth");
+          state.stopPropagation();
+        },
+        100);
+
+    history.fireState(StateToken.of("admin/users"));
+    history.fireState(StateToken.of("orders"));
+    history.fireState(StateToken.of("admin/users"));
+
+    assertThat(calls).containsExactly("auth", "catch-all", "auth");
+    assertThat(filter.count.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void scopedInterceptorsShouldOnlyRunForMatchingTokens() {
+    List<String> intercepted = new ArrayList<>();
+    CountingFilter filter = new CountingFilter(TokenFilter.startsWithPathFilter("admin/:section"));
+    history.addInterceptor(
+        filter,
+        (tokenEvent, chain) -> {
+          intercepted.add("admin:" + tokenEvent.getStateToken().getToken());
+          chain.next();
+        });
+    history.addInterceptor(
+        (tokenEvent, chain) -> {
+          intercepted.add("global:" + tokenEvent.getStateToken().getToken());
+          chain.next();
+        });
+
+    history.pushState(StateToken.of("orders/1"));
+    history.pushState(StateToken.of("admin/users"));
+    history.pushState(StateToken.of("admin/users"));
+
+    assertThat(intercepted)
+        .containsExactly(
+            "global:orders/1",
+            "global:admin/users",
+            "admin:admin/users",
+            "global:admin/users",
+            "admin:admin/users");
+    assertThat(filter.count.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void scopedInterceptorsShouldBeSelectedByTheFilledToken() {
+    List<String> intercepted = new ArrayList<>();
+    history.addInterceptor(
+        TokenFilter.exactMatch("orders/1"),
+        (tokenEvent, chain) -> {
+          intercepted.add(tokenEvent.getStateToken().getToken());
+          chain.next();
+        });
+
+    history.pushState(StateToken.of("orders/:id"), TokenParameter.of("id", "1"));
+    history.pushState(StateToken.of("orders/:id"), TokenParameter.of("id", "2"));
+
+    assertThat(intercepted).containsExactly("orders/:id");
+  }
+
+  @Test
+  public void batchShouldInterceptAndDispatchOnlyTheFinalState() {
+    List<String> calls = new ArrayList<>();
+    List<String> intercepted = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> calls.add(state.token().value()));
+    history.addInterceptor(
+        (tokenEvent, chain) -> {
+          intercepted.add(tokenEvent.getStateToken().getToken());
+          intercepted.add(String.valueOf(tokenEvent.getCoalescedTokens().size()));
+          chain.next();
+        });
+
+    history.batch(
+        () -> {
+          history.fireState(StateToken.of("login"));
+          history.replaceState(StateToken.of("orders"));
+          history.fireState(StateToken.of("orders/1"));
+        });
+
+    assertThat(intercepted).containsExactly("orders/1", "2");
+    assertThat(calls).containsExactly("orders/1");
+    assertThat(history.getForwards()).hasSize(1);
+  }
+
+  @Test
+  public void failedBatchShouldDiscardItsNavigations() {
+    List<String> calls = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> calls.add(state.token().value()));
+
+    assertThatThrownBy(
+            () ->
+                history.batch(
+                    () -> {
+                      history.fireState(StateToken.of("orders/1"));
+                      throw new IllegalStateException("failed");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+
+    assertThat(calls).isEmpty();
+    assertThat(history.getForwards()).isEmpty();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class CountingFilter implements TokenFilter {
+    private final TokenFilter delegate;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private CountingFilter(TokenFilter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean filter(HistoryToken token) {
+      count.incrementAndGet();
+      return delegate.filter(token);
+    }
+
+    @Override
+    public NormalizedToken normalizeToken(String rootPath, String token) {
+      return delegate.normalizeToken(rootPath, token);
+    }
+  }
+}
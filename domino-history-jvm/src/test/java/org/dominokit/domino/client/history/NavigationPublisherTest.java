@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.dominokit.domino.client.history.NavigationPublisher.OverflowStrategy;
+import org.dominokit.domino.history.DominoHistory.State;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class NavigationPublisherTest {
+
+  private final JVMHistory history = new JVMHistory();
+
+  @Test
+  public void statesShouldBeDeliveredOnlyOnDemand() {
+    NavigationPublisher publisher =
+        new NavigationPublisher(history, TokenFilter.startsWithPathFilter("orders"));
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+
+    fire("orders/1", "customers/1", "orders/2", "orders/3");
+    assertThat(subscriber.tokens).isEmpty();
+
+    subscriber.subscription.request(2);
+    assertThat(subscriber.tokens).containsExactly("orders/1", "orders/2");
+
+    subscriber.subscription.request(5);
+    fire("orders/4");
+    assertThat(subscriber.tokens).containsExactly("orders/1", "orders/2", "orders/3", "orders/4");
+  }
+
+  @Test
+  public void dropOldestShouldKeepTheMostRecentStatesUpToTheBufferSize() {
+    NavigationPublisher publisher =
+        new NavigationPublisher(history)
+            .overflowStrategy(OverflowStrategy.DROP_OLDEST)
+            .bufferSize(2);
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+
+    fire("orders/1", "orders/2", "orders/3");
+    subscriber.subscription.request(Long.MAX_VALUE);
+
+    assertThat(subscriber.tokens).containsExactly("orders/2", "orders/3");
+  }
+
+  @Test
+  public void latestShouldKeepOnlyTheLastState() {
+    NavigationPublisher publisher =
+        new NavigationPublisher(history).overflowStrategy(OverflowStrategy.LATEST);
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+
+    fire("orders/1", "orders/2", "orders/3");
+    subscriber.subscription.request(1);
+    fire("orders/4", "orders/5");
+    subscriber.subscription.request(1);
+
+    assertThat(subscriber.tokens).containsExactly("orders/3", "orders/5");
+  }
+
+  @Test
+  public void closeShouldCompleteSubscribersAfterPendingStates() {
+    NavigationPublisher publisher = new NavigationPublisher(history);
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    fire("orders/1");
+
+    publisher.close();
+    fire("orders/2");
+    assertThat(subscriber.completed).isFalse();
+
+    subscriber.subscription.request(10);
+    assertThat(subscriber.tokens).containsExactly("orders/1");
+    assertThat(subscriber.completed).isTrue();
+  }
+
+  @Test
+  public void nonPositiveRequestShouldSignalAnError() {
+    NavigationPublisher publisher = new NavigationPublisher(history);
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+
+    subscriber.subscription.request(0);
+
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    assertThat(publisher.getSubscribersCount()).isZero();
+  }
+
+  private void fire(String... tokens) {
+    for (String token : tokens) {
+      history.fireState(StateToken.of(token));
+    }
+  }
+
+  private static class RecordingSubscriber implements Flow.Subscriber<State> {
+    private final List<String> tokens = new ArrayList<>();
+    private Flow.Subscription subscription;
+    private Throwable error;
+    private boolean completed;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(State item) {
+      tokens.add(item.token().value());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      this.error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      this.completed = true;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.dominokit.domino.client.history.NavigationTrace.Navigation;
+import org.dominokit.domino.client.history.NavigationTrace.Operation;
+import org.dominokit.domino.client.history.NavigationTrace.TraceException;
+import org.dominokit.domino.client.history.ReplayDriver.ReplayMode;
+import org.dominokit.domino.client.history.ReplayDriver.Report;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenParameter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NavigationReplayTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recordedNavigationsShouldReplayTheSameStates() throws IOException {
+    JVMHistory recorded = new JVMHistory();
+    List<String> recordedTokens = listen(recorded);
+    NavigationRecorder recorder = new NavigationRecorder(recorded);
+    recorder.fireState(StateToken.of("orders"));
+    recorder.pushState(
+        StateToken.of("orders/:id").data("{\"id\":1}"), TokenParameter.of("id", "1"));
+    recorder.fireState(StateToken.of("customers/7").title("Customer"));
+    recorder.back();
+    recorder.forward();
+    recorder.go(-2);
+    recorder.replaceState(StateToken.of("orders?page=2"));
+
+    Path traceFile = folder.newFile("session.trace").toPath();
+    recorder.getTrace().write(traceFile);
+    NavigationTrace trace = NavigationTrace.read(traceFile);
+
+    JVMHistory replayed = new JVMHistory();
+    List<String> replayedTokens = listen(replayed);
+    Report report = new ReplayDriver(trace).replay(replayed);
+
+    assertThat(trace.size()).isEqualTo(7);
+    assertThat(trace.getNavigations().get(1).getToken()).isEqualTo("orders/1");
+    assertThat(trace.getNavigations().get(1).getData()).isEqualTo("{\"id\":1}");
+    assertThat(trace.getNavigations().get(5).getDelta()).isEqualTo(-2);
+    assertThat(replayedTokens).isEqualTo(recordedTokens);
+    assertThat(replayed.currentToken().value()).isEqualTo("orders?page=2");
+    assertThat(report.getNavigationsCount()).isEqualTo(7);
+    assertThat(Files.size(traceFile)).isLessThan(100);
+  }
+
+  @Test
+  public void realTimeReplayShouldKeepTheRecordedTiming() {
+    NavigationTrace trace =
+        new NavigationTrace(
+            Arrays.asList(
+                Navigation.of(Operation.PUSH, 0, "orders", null, null),
+                Navigation.of(Operation.PUSH, 30_000_000, "orders/1", null, null)));
+
+    Report report = new ReplayDriver(trace).mode(ReplayMode.REAL_TIME).replay(new JVMHistory());
+
+    assertThat(report.getElapsedNanos()).isGreaterThanOrEqualTo(30_000_000);
+  }
+
+  @Test
+  public void reportShouldComputeLatencyPercentiles() {
+    List<Navigation> navigations = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      navigations.add(Navigation.of(Operation.PUSH, 0, "orders/" + (i % 50), null, null));
+    }
+
+    Report report = new ReplayDriver(new NavigationTrace(navigations)).replay(new JVMHistory());
+
+    assertThat(report.getNavigationsCount()).isEqualTo(1000);
+    assertThat(report.getThroughput()).isPositive();
+    assertThat(report.getP50()).isPositive().isLessThanOrEqualTo(report.getP90());
+    assertThat(report.getP90()).isLessThanOrEqualTo(report.getP99());
+    assertThat(report.getP99()).isLessThanOrEqualTo(report.getMax());
+  }
+
+  @Test
+  public void lengthsBeyondTheMaximumShouldBeRejectedBeforeAllocating() {
+    byte[] hugeCount = {0x44, 0x48, 0x54, 0x52, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f};
+    byte[] hugeToken = {
+      0x44, 0x48, 0x54, 0x52, 1, 1, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x7f
+    };
+
+    assertThatThrownBy(() -> NavigationTrace.read(new ByteArrayInputStream(hugeCount)))
+        .isInstanceOf(TraceException.class)
+        .hasMessageContaining("length");
+    assertThatThrownBy(() -> NavigationTrace.read(new ByteArrayInputStream(hugeToken)))
+        .isInstanceOf(TraceException.class)
+        .hasMessageContaining("length");
+  }
+
+  private static List<String> listen(JVMHistory history) {
+    List<String> tokens = new ArrayList<>();
+    history.listen(state -> tokens.add(state.token().value()));
+    return tokens;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.history.NavigationStack;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class NavigationStackTest {
+
+  @Test
+  public void pushingPastTheMaxSizeShouldEvictTheOldestEntries() {
+    NavigationStack<String> stack = new NavigationStack<>(3);
+    for (int i = 1; i <= 40; i++) {
+      stack.push("orders/" + i);
+    }
+
+    assertThat(stack.size()).isEqualTo(3);
+    assertThat(stack.getEvictedCount()).isEqualTo(37);
+    assertThat(stack.toBackDeque()).containsExactly("orders/40", "orders/39", "orders/38");
+    assertThat(stack.go(-3)).isNull();
+    assertThat(stack.go(-2)).isEqualTo("orders/38");
+  }
+
+  @Test
+  public void pushingShouldDropTheEntriesAfterTheCursor() {
+    NavigationStack<String> stack = new NavigationStack<>();
+    stack.push("a");
+    stack.push("b");
+    stack.push("c");
+    stack.go(-2);
+
+    stack.push("d");
+
+    assertThat(stack.toBackDeque()).containsExactly("d", "a");
+    assertThat(stack.toForwardDeque()).isEmpty();
+    assertThat(stack.go(1)).isNull();
+  }
+
+  @Test
+  public void loweringTheMaxSizeShouldKeepTheCurrentEntry() {
+    NavigationStack<String> stack = new NavigationStack<>();
+    for (String entry : new String[] {"a", "b", "c", "d", "e"}) {
+      stack.push(entry);
+    }
+    stack.go(-3);
+
+    stack.setMaxSize(2);
+
+    assertThat(stack.current()).isEqualTo("b");
+    assertThat(stack.toBackDeque()).containsExactly("b");
+    assertThat(stack.toForwardDeque()).containsExactly("c");
+    assertThat(stack.getEvictedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void goShouldOnlyDispatchTheFinalState() {
+    JVMHistory history = new JVMHistory();
+    for (int i = 1; i <= 5; i++) {
+      history.pushState(StateToken.of("orders/" + i));
+    }
+    List<String> calls = new ArrayList<>();
+    history.listen(TokenFilter.any(), state -> calls.add(state.token().value()));
+
+    history.go(-3);
+    history.go(10);
+    history.forward();
+
+    assertThat(calls).containsExactly("orders/2", "orders/3");
+    assertThat(history.currentToken().value()).isEqualTo("orders/3");
+    assertThat(history.getBackwards()).hasSize(2);
+    assertThat(history.getHistoryEntriesCount()).isEqualTo(5);
+  }
+}
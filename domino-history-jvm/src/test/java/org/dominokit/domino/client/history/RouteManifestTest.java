@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.history.RouteManifest;
+import org.dominokit.domino.history.RouteManifest.RouteRegistration;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class RouteManifestTest {
+
+  private final JVMHistory history = new JVMHistory();
+  private final List<String> calls = new ArrayList<>();
+  private final List<RouteRegistration> loading = new ArrayList<>();
+
+  @Test
+  public void navigationsShouldBeQueuedUntilTheRouteIsLoaded() {
+    new RouteManifest(history).route(TokenFilter.startsWithPathFilter("orders"), loading::add);
+
+    history.fireState(StateToken.of("orders/1"));
+    history.fireState(StateToken.of("customers/1"));
+    history.fireState(StateToken.of("orders/2"));
+    assertThat(loading).hasSize(1);
+    assertThat(calls).isEmpty();
+
+    RouteRegistration registration = loading.get(0);
+    registration.listen(
+        TokenFilter.startsWithPathFilter("orders/:id"),
+        state -> calls.add(state.normalizedToken().getPathParameter("id")));
+    registration.loaded();
+    assertThat(calls).containsExactly("1", "2");
+
+    history.fireState(StateToken.of("orders/3"));
+    assertThat(calls).containsExactly("1", "2", "3");
+    assertThat(loading).hasSize(1);
+  }
+
+  @Test
+  public void navigationsBetweenListenAndLoadedShouldBeDeliveredOnce() {
+    new RouteManifest(history).route(TokenFilter.startsWithPathFilter("orders"), loading::add);
+    history.fireState(StateToken.of("orders/1"));
+
+    RouteRegistration registration = loading.get(0);
+    registration.listen(
+        TokenFilter.startsWithPathFilter("orders/:id"),
+        state -> calls.add(state.normalizedToken().getPathParameter("id")));
+    history.fireState(StateToken.of("orders/2"));
+    registration.loaded();
+    history.fireState(StateToken.of("orders/3"));
+
+    assertThat(calls).containsExactly("1", "2", "3");
+  }
+
+  @Test
+  public void queuedNavigationsShouldBeReplayedWithTheirOwnNormalizedTokens() {
+    new RouteManifest(history).route(TokenFilter.startsWithPathFilter("orders"), loading::add);
+    history.fireState(StateToken.of("orders/1/items/2"));
+
+    RouteRegistration registration = loading.get(0);
+    registration.listen(
+        TokenFilter.startsWithPathFilter("orders/:id"),
+        state -> {
+          calls.add(state.normalizedToken().getPathParameter("id") + ":" + state.isDirect());
+          state.setNormalizedToken(null);
+        });
+    registration.listen(
+        TokenFilter.startsWithPathFilter("orders/:order/items/:item"),
+        state ->
+            calls.add(state.normalizedToken().getPathParameter("item") + ":" + state.isDirect()));
+    registration.loaded();
+
+    assertThat(calls).containsExactly("1:false", "2:false");
+  }
+
+  @Test
+  public void directUrlShouldLoadTheMatchingRoute() {
+    history.initialState("orders/5", "");
+    RouteManifest manifest =
+        new RouteManifest(history)
+            .route(
+                TokenFilter.startsWithPathFilter("orders"),
+                registration -> {
+                  registration.listen(
+                      TokenFilter.startsWithPathFilter("orders/:id"),
+                      state ->
+                          calls.add(
+                              state.normalizedToken().getPathParameter("id")
+                                  + ":"
+                                  + state.isDirect()));
+                  registration.loaded();
+                })
+            .route(TokenFilter.startsWithPathFilter("customers"), loading::add);
+
+    manifest.onDirectUrl();
+
+    assertThat(calls).containsExactly("5:true");
+    assertThat(loading).isEmpty();
+  }
+
+  @Test
+  public void failedRouteShouldBeLoadedAgainByTheNextNavigation() {
+    new RouteManifest(history).route(TokenFilter.startsWithPathFilter("orders"), loading::add);
+
+    history.fireState(StateToken.of("orders/1"));
+    loading.get(0).failed(new IllegalStateException("network"));
+    history.fireState(StateToken.of("orders/2"));
+
+    assertThat(loading).hasSize(2);
+  }
+}
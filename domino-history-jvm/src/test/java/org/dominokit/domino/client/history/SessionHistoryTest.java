@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class SessionHistoryTest {
+
+  private final List<String> calls = new ArrayList<>();
+
+  private final SessionHistoryFactory<String> factory =
+      SessionHistoryFactory.<String>builder()
+          .route(
+              TokenFilter.startsWithPathFilter("orders/:id"),
+              (session, state) ->
+                  calls.add(session + ":" + state.normalizedToken().getPathParameter("id")))
+          .build();
+
+  @Test
+  public void routesShouldBeSharedAndReceiveTheSessionContext() {
+    SessionHistory<String> first = factory.create("first");
+    SessionHistory<String> second = factory.create("second");
+
+    first.fireState(StateToken.of("orders/1"));
+    second.fireState(StateToken.of("orders/2"));
+    first.fireState(StateToken.of("orders/2"));
+
+    assertThat(calls).containsExactly("first:1", "second:2", "first:2");
+    assertThat(first.getHistoryEntriesCount()).isEqualTo(2);
+    assertThat(second.currentToken().value()).isEqualTo("orders/2");
+  }
+
+  @Test
+  public void sessionListenersShouldOnlyApplyToTheirSession() {
+    SessionHistory<String> first = factory.create("first");
+    SessionHistory<String> second = factory.create("second");
+    first.listen(TokenFilter.any(), state -> calls.add("session:" + state.token().value()));
+
+    first.fireState(StateToken.of("orders/1"));
+    second.fireState(StateToken.of("orders/2"));
+
+    assertThat(calls).containsExactly("first:1", "session:orders/1", "second:2");
+  }
+
+  @Test
+  public void backAndForwardShouldMoveWithinTheSessionEntries() {
+    SessionHistory<String> history = factory.create("first");
+    history.pushState(StateToken.of("orders/1"));
+    history.pushState(StateToken.of("orders/2"));
+    history.pushState(StateToken.of("orders/3"));
+
+    history.back();
+    history.back();
+    history.forward();
+    history.pushState(StateToken.of("orders/4"));
+    history.forward();
+
+    assertThat(calls).containsExactly("first:2", "first:1", "first:2");
+    assertThat(history.getHistoryEntriesCount()).isEqualTo(3);
+    assertThat(history.currentToken().value()).isEqualTo("orders/4");
+  }
+
+  @Test
+  public void sessionRootPathShouldOnlyApplyToItsSession() {
+    SessionHistory<String> first = factory.create("first");
+    SessionHistory<String> second = factory.create("second");
+    first.fireState(StateToken.of("orders/1"));
+
+    first.setRootPath("app");
+    first.fireState(StateToken.of("orders/2"));
+    second.fireState(StateToken.of("orders/1"));
+    assertThat(first.getRootPath()).isEqualTo("app");
+    first.setRootPath("");
+    first.fireState(StateToken.of("orders/4"));
+
+    assertThat(calls).containsExactly("first:1", "second:1", "first:4");
+    assertThat(second.getRootPath()).isEmpty();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.history.PayloadCodec;
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenFilter;
+import org.junit.Test;
+
+public class StatePayloadTest {
+
+  private final JVMHistory history = new JVMHistory();
+  private final CountingCodec codec = new CountingCodec();
+
+  @Test
+  public void typedPayloadShouldReachListenersWithoutEncoding() {
+    Order order = new Order("7");
+    List<Order> received = new ArrayList<>();
+    history.listen(
+        TokenFilter.startsWithPathFilter("orders"),
+        state -> received.add(state.payload(codec).orElse(null)));
+
+    history.fireState(StateToken.of("orders/7").payload(order, codec));
+
+    assertThat(received).containsExactly(order);
+    assertThat(codec.encoded).isZero();
+    assertThat(codec.decoded).isZero();
+  }
+
+  @Test
+  public void dataShouldBeDecodedOnceForAllListeners() {
+    List<Order> received = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      history.listen(
+          TokenFilter.startsWithPathFilter("orders"),
+          state -> received.add(state.payload(codec).orElse(null)));
+    }
+
+    history.fireState(StateToken.of("orders/7").data("7"));
+
+    assertThat(received).hasSize(3);
+    assertThat(received.get(0).id).isEqualTo("7");
+    assertThat(received).allMatch(order -> order == received.get(0));
+    assertThat(codec.decoded).isEqualTo(1);
+  }
+
+  @Test
+  public void typedPayloadShouldBeEncodedOnlyWhenItsDataIsRequested() {
+    List<String> received = new ArrayList<>();
+    history.listen(
+        TokenFilter.startsWithPathFilter("orders"),
+        state -> received.add(state.data().orElse(null)));
+
+    history.fireState(StateToken.of("orders/7").payload(new Order("7"), codec));
+
+    assertThat(received).containsExactly("7");
+    assertThat(codec.encoded).isEqualTo(1);
+  }
+
+  @Test
+  public void typedPayloadAskedWithAnotherCodecShouldBeDecodedFromItsData() {
+    CountingCodec otherCodec = new CountingCodec();
+    Order order = new Order("7");
+    List<Order> received = new ArrayList<>();
+    history.listen(
+        TokenFilter.startsWithPathFilter("orders"),
+        state -> received.add(state.payload(otherCodec).orElse(null)));
+
+    history.fireState(StateToken.of("orders/7").payload(order, codec));
+
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0)).isNotSameAs(order);
+    assertThat(received.get(0).id).isEqualTo("7");
+    assertThat(codec.encoded).isEqualTo(1);
+    assertThat(otherCodec.decoded).isEqualTo(1);
+  }
+
+  private static class Order {
+    private final String id;
+
+    private Order(String id) {
+      this.id = id;
+    }
+  }
+
+  private static class CountingCodec implements PayloadCodec<Order> {
+    private int encoded;
+    private int decoded;
+
+    @Override
+    public String encode(Order payload) {
+      encoded++;
+      return payload.id;
+    }
+
+    @Override
+    public Order decode(String data) {
+      decoded++;
+      return new Order(data);
+    }
+  }
+}
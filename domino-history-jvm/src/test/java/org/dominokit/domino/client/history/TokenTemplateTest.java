@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.client.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.dominokit.domino.history.StateToken;
+import org.dominokit.domino.history.TokenParameter;
+import org.dominokit.domino.history.TokenTemplate;
+import org.junit.Test;
+
+public class TokenTemplateTest {
+
+  @Test
+  public void placeholdersShouldBeFilledByTheLongestMatchingName() {
+    String token =
+        TokenTemplate.apply(
+            "orders/:idx/:id", TokenParameter.of("id", "7"), TokenParameter.of("idx", "3"));
+
+    assertThat(token).isEqualTo("orders/3/7");
+    assertThat(TokenTemplate.apply("orders/:id.json", TokenParameter.of("id", "7")))
+        .isEqualTo("orders/7.json");
+    assertThat(TokenParameter.of("id", "7").apply("orders/:id.json")).isEqualTo("orders/7.json");
+  }
+
+  @Test
+  public void valuesShouldNotBeFilledAgainByLaterParameters() {
+    String token =
+        TokenTemplate.apply(
+            "search/:term/:page",
+            TokenParameter.of("term", ":page"),
+            TokenParameter.of("page", "2"));
+
+    assertThat(token).isEqualTo("search/:page/2");
+  }
+
+  @Test
+  public void unboundPlaceholdersAndQueryParametersShouldBeKept() {
+    TokenTemplate template = TokenTemplate.of("orders/:order-id/:tab");
+
+    assertThat(template.getSlots()).containsExactly("order-id", "tab");
+    assertThat(
+            template.fill(TokenParameter.of("order-id", "7"), TokenParameter.query("sort", "date")))
+        .isEqualTo("orders/7/:tab?sort=date");
+    assertThat(TokenTemplate.of("orders/:order-id/:tab")).isSameAs(template);
+  }
+
+  @Test
+  public void placeholderNamesShouldOnlyEndAtTokenDelimiters() {
+    assertThat(TokenTemplate.of("users/:user-id?tab=:tab.name#:x:y").getSlots())
+        .containsExactly("user-id", "tab.name", "x", "y");
+    assertThat(TokenParameter.of("user-id", "7").apply("users/:user-id/:user"))
+        .isEqualTo("users/7/:user");
+  }
+
+  @Test
+  public void replaceShouldFillThePlaceholdersWithQueryParametersToo() {
+    assertThat(
+            TokenTemplate.replace(
+                "orders/:id/:sort",
+                TokenParameter.of("id", "7"),
+                TokenParameter.query("sort", "date")))
+        .isEqualTo("orders/7/date");
+
+    JVMHistory history = new JVMHistory();
+    history.pushState(StateToken.of("orders/:sort"), TokenParameter.query("sort", "date"));
+
+    assertThat(history.currentToken().value()).isEqualTo("orders/date");
+  }
+
+  @Test
+  public void pushStateShouldFillTheTokenInOnePass() {
+    JVMHistory history = new JVMHistory();
+
+    history.pushState(
+        StateToken.of("orders/:id/items/:idx"),
+        TokenParameter.of("id", "7"),
+        TokenParameter.of("idx", "3"));
+
+    assertThat(history.currentToken().value()).isEqualTo("orders/7/items/3");
+  }
+}
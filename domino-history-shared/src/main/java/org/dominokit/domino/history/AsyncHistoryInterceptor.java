@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+/**
+ * An interceptor that decides asynchronously whether a navigation can proceed, used with an {@link
+ * AsyncInterceptorChain}.
+ */
+@FunctionalInterface
+public interface AsyncHistoryInterceptor {
+
+  /**
+   * @param tokenEvent the navigation {@link TokenEvent}
+   * @return {@link InterceptorCompletion} completed with the interceptor decision
+   */
+  InterceptorCompletion intercept(TokenEvent tokenEvent);
+}
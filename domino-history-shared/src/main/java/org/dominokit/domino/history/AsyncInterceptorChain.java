@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.dominokit.domino.history.InterceptorScheduler.ScheduledTask;
+
+/**
+ * A {@link HistoryInterceptor} running a sequence of {@link AsyncHistoryInterceptor}s, the
+ * navigation proceeds to the next history interceptor once all of them proceed and is dropped as
+ * soon as one of them blocks it.
+ *
+ * <p>Each interceptor decision and the whole sequence can be limited by timeouts scheduled with the
+ * {@link InterceptorScheduler}, a timed out navigation is blocked. When a newer navigation reaches
+ * the chain while an older one is still waiting for a decision the older one is dropped and its
+ * late decisions are ignored.
+ *
+ * <p>Interceptors added together with {@link #addIndependent(AsyncHistoryInterceptor...)} are
+ * started at the same time and the navigation waits for all of their decisions.
+ *
+ * <p>Decisions made after the chain returns and timeouts are handed back to the navigating thread
+ * with {@link InterceptorScheduler#execute(Runnable)}, so the next stages, the history interceptor
+ * chain and the navigation itself continue there. A navigation blocked after the chain returned is
+ * canceled so it can no longer be resumed, a navigation blocked before the chain returns is dropped
+ * by never calling the next history interceptor.
+ *
+ * <pre>
+ * history.addInterceptor(
+ *     new AsyncInterceptorChain(scheduler)
+ *         .addIndependent(authGuard, featureGuard)
+ *         .add(unsavedChangesGuard)
+ *         .interceptorTimeout(2000)
+ *         .chainTimeout(5000));
+ * </pre>
+ */
+public class AsyncInterceptorChain implements HistoryInterceptor {
+
+  private final InterceptorScheduler scheduler;
+  private AsyncHistoryInterceptor[][] stages = new AsyncHistoryInterceptor[0][];
+  private int interceptorTimeout;
+  private int chainTimeout;
+  private Consumer<TokenEvent> onBlocked = tokenEvent -> {};
+  private Run activeRun;
+
+  /** @param scheduler the {@link InterceptorScheduler} used for the timeouts */
+  public AsyncInterceptorChain(InterceptorScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Adds an interceptor that runs after the previously added ones proceed
+   *
+   * @param interceptor {@link AsyncHistoryInterceptor}
+   * @return same chain instance
+   */
+  public AsyncInterceptorChain add(AsyncHistoryInterceptor interceptor) {
+    return addIndependent(interceptor);
+  }
+
+  /**
+   * Adds interceptors that do not depend on each other, they run after the previously added ones
+   * proceed and all of them are started at the same time.
+   *
+   * @param interceptors the {@link AsyncHistoryInterceptor}s
+   * @return same chain instance
+   */
+  public synchronized AsyncInterceptorChain addIndependent(
+      AsyncHistoryInterceptor... interceptors) {
+    if (interceptors.length > 0) {
+      AsyncHistoryInterceptor[][] updated = Arrays.copyOf(stages, stages.length + 1);
+      updated[stages.length] = Arrays.copyOf(interceptors, interceptors.length);
+      stages = updated;
+    }
+    return this;
+  }
+
+  /**
+   * @param timeoutMillis the maximum time to wait for each interceptor decision, <b>0</b> for no
+   *     timeout
+   * @return same chain instance
+   */
+  public AsyncInterceptorChain interceptorTimeout(int timeoutMillis) {
+    this.interceptorTimeout = requireNonNegative(timeoutMillis);
+    return this;
+  }
+
+  /**
+   * @param timeoutMillis the maximum time to wait for all the interceptors decisions of a
+   *     navigation, <b>0</b> for no timeout
+   * @return same chain instance
+   */
+  public AsyncInterceptorChain chainTimeout(int timeoutMillis) {
+    this.chainTimeout = requireNonNegative(timeoutMillis);
+    return this;
+  }
+
+  /**
+   * @param onBlocked called with the navigation event when an interceptor blocks it or it times out
+   * @return same chain instance
+   */
+  public AsyncInterceptorChain onBlocked(Consumer<TokenEvent> onBlocked) {
+    this.onBlocked = requireNonNull(onBlocked);
+    return this;
+  }
+
+  @Override
+  public void onBeforeChangeState(TokenEvent tokenEvent, IsInterceptorChain chain) {
+    Run run;
+    Run staleRun;
+    synchronized (this) {
+      staleRun = activeRun;
+      run = new Run(tokenEvent, chain, stages);
+      activeRun = run;
+    }
+    if (nonNull(staleRun)) {
+      staleRun.finish(Outcome.SUPERSEDED);
+    }
+    run.start();
+  }
+
+  private static int requireNonNegative(int timeoutMillis) {
+    if (timeoutMillis < 0) {
+      throw new IllegalArgumentException("Timeout cannot be negative : " + timeoutMillis);
+    }
+    return timeoutMillis;
+  }
+
+  private enum Outcome {
+    PROCEEDED,
+    BLOCKED,
+    SUPERSEDED
+  }
+
+  /** The interception of a single navigation, stages are advanced by an index cursor */
+  private final class Run {
+    private final TokenEvent tokenEvent;
+    private final IsInterceptorChain chain;
+    private final AsyncHistoryInterceptor[][] stages;
+    private int stage;
+    private boolean done;
+    private ScheduledTask chainTimer;
+    private ScheduledTask stageTimer;
+    private boolean intercepting;
+
+    private Run(
+        TokenEvent tokenEvent, IsInterceptorChain chain, AsyncHistoryInterceptor[][] stages) {
+      this.tokenEvent = tokenEvent;
+      this.chain = chain;
+      this.stages = stages;
+    }
+
+    private void start() {
+      synchronized (this) {
+        intercepting = true;
+      }
+      if (chainTimeout > 0) {
+        ScheduledTask timer =
+            scheduler.schedule(
+                () -> scheduler.execute(() -> finish(Outcome.BLOCKED)), chainTimeout);
+        synchronized (this) {
+          chainTimer = timer;
+        }
+      }
+      try {
+        advance();
+      } finally {
+        synchronized (this) {
+          intercepting = false;
+        }
+      }
+    }
+
+    /** Runs the stages in a loop as long as their decisions complete synchronously */
+    private void advance() {
+      while (true) {
+        int current;
+        synchronized (this) {
+          if (done) {
+            return;
+          }
+          current = stage;
+        }
+        if (current == stages.length) {
+          finish(Outcome.PROCEEDED);
+          return;
+        }
+
+        InterceptorCompletion completion = startStage(stages[current]);
+        if (completion.isDone()) {
+          if (!onStageDecision(current, completion.isProceeded())) {
+            return;
+          }
+          continue;
+        }
+
+        if (interceptorTimeout > 0) {
+          ScheduledTask timer =
+              scheduler.schedule(
+                  () -> scheduler.execute(() -> onStageTimeout(current)), interceptorTimeout);
+          synchronized (this) {
+            stageTimer = timer;
+          }
+        }
+        completion.onComplete(
+            proceed ->
+                scheduler.execute(
+                    () -> {
+                      if (onStageDecision(current, proceed)) {
+                        advance();
+                      }
+                    }));
+        return;
+      }
+    }
+
+    /** @return <b>true</b> if the run moved to the next stage */
+    private boolean onStageDecision(int decidedStage, boolean proceed) {
+      synchronized (this) {
+        if (done || stage != decidedStage) {
+          return false;
+        }
+        cancelStageTimer();
+        if (proceed) {
+          stage++;
+          return true;
+        }
+      }
+      finish(Outcome.BLOCKED);
+      return false;
+    }
+
+    private void onStageTimeout(int timedOutStage) {
+      synchronized (this) {
+        if (done || stage != timedOutStage) {
+          return;
+        }
+      }
+      finish(Outcome.BLOCKED);
+    }
+
+    private InterceptorCompletion startStage(AsyncHistoryInterceptor[] interceptors) {
+      if (interceptors.length == 1) {
+        return requireNonNull(interceptors[0].intercept(tokenEvent));
+      }
+      InterceptorCompletion combined = InterceptorCompletion.create();
+      AtomicInteger remaining = new AtomicInteger(interceptors.length);
+      for (AsyncHistoryInterceptor interceptor : interceptors) {
+        requireNonNull(interceptor.intercept(tokenEvent))
+            .onComplete(
+                proceed -> {
+                  if (!proceed) {
+                    combined.block();
+                  } else if (remaining.decrementAndGet() == 0) {
+                    combined.proceed();
+                  }
+                });
+        if (combined.isDone() && !combined.isProceeded()) {
+          break;
+        }
+      }
+      return combined;
+    }
+
+    private void finish(Outcome outcome) {
+      boolean returned;
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        done = true;
+        returned = !intercepting;
+        cancelStageTimer();
+        if (nonNull(chainTimer)) {
+          chainTimer.cancel();
+        }
+      }
+      synchronized (AsyncInterceptorChain.this) {
+        if (activeRun == this) {
+          activeRun = null;
+        }
+      }
+      if (outcome == Outcome.PROCEEDED) {
+        chain.next();
+      } else if (outcome == Outcome.BLOCKED) {
+        if (returned) {
+          tokenEvent.cancel();
+        }
+        onBlocked.accept(tokenEvent);
+      }
+    }
+
+    private void cancelStageTimer() {
+      if (nonNull(stageTimer)) {
+        stageTimer.cancel();
+        stageTimer = null;
+      }
+    }
+  }
+}
@@ -41,6 +41,19 @@ public class DefaultNormalizedToken implements NormalizedToken {
     this.token = new StateHistoryToken(rootPath, token);
   }
 
+  /**
+   * @param normalizedToken the {@link NormalizedToken} to copy
+   * @return a copy of the normalized token that does not share its token or parameters
+   */
+  public static DefaultNormalizedToken copyOf(NormalizedToken normalizedToken) {
+    HistoryToken token = normalizedToken.getToken();
+    DefaultNormalizedToken copy =
+        new DefaultNormalizedToken(new StateHistoryToken(token.getRootPath(), token.noRootValue()));
+    copy.pathParameters.putAll(normalizedToken.getPathParameters());
+    copy.fragmentParameters.putAll(normalizedToken.getFragmentParameters());
+    return copy;
+  }
+
   @Override
   public HistoryToken getToken() {
     return token;
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resolved result of matching a token against the registered listeners, it holds the listeners
+ * that should be called for the token in dispatch order along with the {@link NormalizedToken}
+ * computed for each one of them.
+ *
+ * <p>Listeners can change the token they receive, so the plan keeps its own copy of each normalized
+ * token and hands out a new copy on every dispatch.
+ *
+ * @param <L> the history implementation listener type
+ */
+public class DispatchPlan<L> {
+
+  private final List<L> listeners = new ArrayList<>();
+  private final List<NormalizedToken> normalizedTokens = new ArrayList<>();
+  private final List<L> completedListeners = new ArrayList<>();
+  private final List<Boolean> removeOnCompleteFlags = new ArrayList<>();
+
+  /**
+   * Adds a matching listener to the plan
+   *
+   * @param listener the matching listener
+   * @param normalizedToken the token normalized against the listener token filter
+   * @param removeOnComplete true if the listener should be removed after being called
+   */
+  public void add(L listener, NormalizedToken normalizedToken, boolean removeOnComplete) {
+    listeners.add(listener);
+    normalizedTokens.add(DefaultNormalizedToken.copyOf(normalizedToken));
+    removeOnCompleteFlags.add(removeOnComplete);
+    if (removeOnComplete) {
+      completedListeners.add(listener);
+    }
+  }
+
+  /** @return the number of matching listeners */
+  public int size() {
+    return listeners.size();
+  }
+
+  /**
+   * @param index the listener index in dispatch order
+   * @return the matching listener at the specified index
+   */
+  public L getListener(int index) {
+    return listeners.get(index);
+  }
+
+  /**
+   * @param index the listener index in dispatch order
+   * @return a new copy of the {@link NormalizedToken} of the listener at the specified index
+   */
+  public NormalizedToken getNormalizedToken(int index) {
+    return DefaultNormalizedToken.copyOf(normalizedTokens.get(index));
+  }
+
+  /** @return <b>true</b> if any of the matching listeners should be removed after dispatch */
+  public boolean hasCompletedListeners() {
+    return !completedListeners.isEmpty();
+  }
+
+  /** @return the matching listeners that should be removed after dispatch */
+  public List<L> getCompletedListeners() {
+    return completedListeners;
+  }
+
+  /**
+   * The listeners that should be removed when the dispatch stopped after calling only the first
+   * listeners of the plan, see {@link DominoHistory.State#stopPropagation()}.
+   *
+   * @param calledCount the number of listeners called from the start of the plan
+   * @return the called listeners that should be removed after dispatch
+   */
+  public List<L> getCompletedListeners(int calledCount) {
+    if (calledCount >= listeners.size()) {
+      return completedListeners;
+    }
+    List<L> called = new ArrayList<>();
+    for (int i = 0; i < calledCount; i++) {
+      if (removeOnCompleteFlags.get(i)) {
+        called.add(listeners.get(i));
+      }
+    }
+    return called;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of {@link DispatchPlan}s keyed by the dispatched token.
+ *
+ * <p>Each plan is bound to the {@link ListenerRegistry#getVersion()} it was resolved against, once
+ * the registry version changes -for example a listener is added or removed- all cached plans are
+ * dropped and will be resolved again on the next dispatch.
+ *
+ * <p>Cached plans assume that token filters are pure functions of the token, a cache size of
+ * <b>0</b> disables caching for applications with filters that depend on other state.
+ *
+ * @param <L> the history implementation listener type
+ */
+public class DispatchPlanCache<L> {
+
+  public static final int DEFAULT_SIZE = 32;
+
+  private final Map<String, DispatchPlan<L>> plans;
+  private int maxSize;
+  private int version;
+
+  public DispatchPlanCache() {
+    this(DEFAULT_SIZE);
+  }
+
+  public DispatchPlanCache(int maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    this.plans =
+        new LinkedHashMap<String, DispatchPlan<L>>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, DispatchPlan<L>> eldest) {
+            return size() > DispatchPlanCache.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * @param token the dispatched token
+   * @param registryVersion the current version of the listeners registry
+   * @return the cached {@link DispatchPlan} or <b>null</b> if the token has no plan for the
+   *     specified registry version
+   */
+  public DispatchPlan<L> get(String token, int registryVersion) {
+    if (registryVersion != version) {
+      plans.clear();
+      version = registryVersion;
+      return null;
+    }
+    return plans.get(token);
+  }
+
+  /**
+   * Caches a plan for the token
+   *
+   * @param token the dispatched token
+   * @param registryVersion the version of the listeners registry the plan was resolved against
+   * @param plan the resolved {@link DispatchPlan}
+   */
+  public void put(String token, int registryVersion, DispatchPlan<L> plan) {
+    if (maxSize == 0) {
+      return;
+    }
+    if (registryVersion != version) {
+      plans.clear();
+      version = registryVersion;
+    }
+    plans.put(token, plan);
+  }
+
+  /** Drops all cached plans */
+  public void invalidate() {
+    plans.clear();
+  }
+
+  /**
+   * Changes the maximum number of cached plans, <b>0</b> disables the cache.
+   *
+   * @param maxSize int
+   */
+  public void setMaxSize(int maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    plans.clear();
+  }
+
+  /** @return the maximum number of cached plans */
+  public int getMaxSize() {
+    return maxSize;
+  }
+}
@@ -83,6 +83,11 @@ public class DominoDirectState implements DirectState {
       return state.data();
     }
 
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return state.payload(codec);
+    }
+
     @Override
     public String title() {
       return state.title();
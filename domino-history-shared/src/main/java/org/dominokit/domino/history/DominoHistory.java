@@ -19,6 +19,9 @@ import java.util.Optional;
 
 public interface DominoHistory {
 
+  /** The priority of listeners registered without an explicit priority */
+  int DEFAULT_PRIORITY = 0;
+
   /**
    * Create a listener that will listen for any change in the url.
    *
@@ -65,6 +68,37 @@ public interface DominoHistory {
    */
   DirectState listen(TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete);
 
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter, listeners with a higher priority are called first and can stop lower priority
+   * listeners from being called using {@link State#stopPropagation()}. Listeners with the same
+   * priority are called in registration order.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param priority the listener priority, {@link #DEFAULT_PRIORITY} for the other listen methods
+   * @return {@link DirectState}
+   */
+  default DirectState listen(TokenFilter tokenFilter, StateListener listener, int priority) {
+    return listen(tokenFilter, listener, false, priority);
+  }
+
+  /**
+   * Create a listener that will listen for any change that matches the criteria defined by the
+   * token filter with the specified priority and will be removed after being fired if
+   * {removeOnComplete} is true, implementations that do not support priorities ignore the priority.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param listener {@link StateListener}
+   * @param removeOnComplete boolean
+   * @param priority the listener priority
+   * @return {@link DirectState}
+   */
+  default DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete, int priority) {
+    return listen(tokenFilter, listener, removeOnComplete);
+  }
+
   /**
    * A flag to enable/disable listening to popstate events in case we have multiple instances of the
    * history in the same application
@@ -81,6 +115,18 @@ public interface DominoHistory {
   /** Go forward one step simulating a forward button */
   void forward();
 
+  /**
+   * Moves any number of entries back or forward in one step and calls the listeners with the final
+   * state only, moving outside the history entries does nothing.
+   *
+   * @param delta the number of entries to move, negative to go back
+   * @throws UnsupportedOperationException if the implementation does not support it
+   */
+  default void go(int delta) {
+    throw new UnsupportedOperationException(
+        "Moving by several entries is not supported by this history implementation!");
+  }
+
   /**
    * The count if the current history entries
    *
@@ -157,10 +203,48 @@ public interface DominoHistory {
 
   void addInterceptor(HistoryInterceptor interceptor);
 
+  /**
+   * Adds an interceptor that only applies to the navigations with a token matching the token
+   * filter, navigations to other tokens do not run it at all.
+   *
+   * @param tokenFilter {@link TokenFilter}
+   * @param interceptor {@link HistoryInterceptor}
+   * @throws UnsupportedOperationException if the implementation does not support scoped
+   *     interceptors
+   */
+  default void addInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    throw new UnsupportedOperationException(
+        "Scoped interceptors are not supported by this history implementation!");
+  }
+
   void removeInterceptor(HistoryInterceptor interceptor);
 
   void reload();
 
+  /**
+   * Runs the navigations made by the runnable as a single navigation to the final token, where the
+   * implementation supports it interceptors run once and listeners are called once with the final
+   * state. By default the navigations are applied as they are made.
+   *
+   * @param navigations the navigations to batch
+   */
+  default void batch(Runnable navigations) {
+    navigations.run();
+  }
+
+  /**
+   * Sets how bursts of navigations are collapsed, see {@link NavigationCoalescing}.
+   *
+   * @param coalescing {@link NavigationCoalescing}, <b>null</b> disables coalescing
+   * @throws UnsupportedOperationException if the implementation cannot coalesce navigations
+   */
+  default void setCoalescing(NavigationCoalescing coalescing) {
+    if (coalescing != null && coalescing.isEnabled()) {
+      throw new UnsupportedOperationException(
+          "Navigation coalescing is not supported by this history implementation!");
+    }
+  }
+
   /** A functional interface to define a listener to be called when url state is changed. */
   interface StateListener {
     /**
@@ -190,6 +274,17 @@ public interface DominoHistory {
      */
     Optional<String> data();
 
+    /**
+     * The typed payload assigned to the url state, decoded at most once per state and codec
+     *
+     * @param codec the {@link PayloadCodec} to decode the state data
+     * @param <T> the payload type
+     * @return the payload
+     */
+    default <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return data().map(codec::decode);
+    }
+
     /**
      * The page title
      *
@@ -210,6 +305,17 @@ public interface DominoHistory {
     default boolean isDirect() {
       return false;
     }
+
+    /**
+     * Stops calling the remaining lower priority listeners for this navigation, ignored by
+     * implementations that do not support it.
+     */
+    default void stopPropagation() {}
+
+    /** @return <b>true</b> if a listener stopped the propagation of this navigation */
+    default boolean isPropagationStopped() {
+      return false;
+    }
   }
 
   @FunctionalInterface
@@ -17,9 +17,6 @@ package org.dominokit.domino.history;
 
 import static java.util.Objects.isNull;
 
-import java.util.Arrays;
-import java.util.List;
-
 public class EffectiveToken {
 
   private String root;
@@ -30,7 +27,7 @@ public class EffectiveToken {
     this.root = root;
     this.state = state;
 
-    String tokenWithParameters = replaceParameters(state.token, Arrays.asList(parameters));
+    String tokenWithParameters = TokenTemplate.apply(state.token, parameters);
     processedToken = attachRoot(tokenWithParameters);
   }
 
@@ -43,14 +40,6 @@ public class EffectiveToken {
     return root + separator + token;
   }
 
-  private String replaceParameters(String token, List<TokenParameter> parametersList) {
-    String result = token;
-    for (TokenParameter parameter : parametersList) {
-      result = parameter.apply(result);
-    }
-    return result;
-  }
-
   public StateToken getState() {
     return state;
   }
@@ -64,6 +53,10 @@ public class EffectiveToken {
   }
 
   public String getData() {
-    return state.data;
+    return state.getData();
+  }
+
+  public StatePayload getPayload() {
+    return state.getPayload();
   }
 }
@@ -15,40 +15,77 @@
  */
 package org.dominokit.domino.history;
 
-import static java.util.Objects.nonNull;
-
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * Runs the history interceptors of a navigation starting from the last added one, the navigation
+ * completes once all interceptors call {@link #next()} or one of them cancels the {@link
+ * TokenEvent}.
+ *
+ * <p>The chain walks an array snapshot of the interceptors with an index cursor, interceptors
+ * calling {@link #next()} before returning are run one after the other in a loop so the stack does
+ * not grow with the number of interceptors, an interceptor can also call {@link #next()} later to
+ * resume the chain asynchronously.
+ */
 public class InterceptorChain implements IsInterceptorChain {
-  private final Deque<HistoryInterceptor> interceptors = new LinkedList<>();
+  private static final HistoryInterceptor[] EMPTY = new HistoryInterceptor[0];
+
+  private final HistoryInterceptor[] interceptors;
   private final Runnable onCompleted;
   private TokenEvent activeEvent;
+  private int cursor;
+  private boolean running;
+  private boolean nextRequested;
 
   public InterceptorChain(List<HistoryInterceptor> interceptors, Runnable onCompleteHandler) {
-    interceptors.forEach(this.interceptors::push);
+    this(interceptors.toArray(EMPTY), onCompleteHandler);
+  }
+
+  /**
+   * @param interceptors a snapshot of the interceptors in the order they were added, the array is
+   *     not copied and must not be modified while the chain is running
+   * @param onCompleteHandler called once the navigation is allowed to complete
+   */
+  public InterceptorChain(HistoryInterceptor[] interceptors, Runnable onCompleteHandler) {
+    this.interceptors = interceptors;
+    this.cursor = interceptors.length;
     this.onCompleted = onCompleteHandler;
   }
 
   public void intercept(TokenEvent event) {
     this.activeEvent = event;
+    run();
+  }
 
-    if (nonNull(interceptors.peek())) {
-      HistoryInterceptor popped = interceptors.pop();
-      popped.onBeforeChangeState(event, this);
-      if (event.isCanceled()) {
-        onCompleted.run();
-      }
+  @Override
+  public void next() {
+    if (activeEvent.isCanceled()) {
+      return;
+    }
+    if (running) {
+      nextRequested = true;
     } else {
-      onCompleted.run();
+      run();
     }
   }
 
-  @Override
-  public void next() {
-    if (!activeEvent.isCanceled()) {
-      intercept(activeEvent);
+  private void run() {
+    running = true;
+    try {
+      while (cursor > 0) {
+        HistoryInterceptor interceptor = interceptors[--cursor];
+        nextRequested = false;
+        interceptor.onBeforeChangeState(activeEvent, this);
+        if (activeEvent.isCanceled()) {
+          break;
+        }
+        if (!nextRequested) {
+          return;
+        }
+      }
+    } finally {
+      running = false;
     }
+    onCompleted.run();
   }
 }
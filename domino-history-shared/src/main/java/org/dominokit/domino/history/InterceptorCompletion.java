@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The decision of an {@link AsyncHistoryInterceptor}, completed once either to let the navigation
+ * proceed or to block it. Completing an already completed decision has no effect.
+ */
+public class InterceptorCompletion {
+
+  private Boolean proceeded;
+  private List<Consumer<Boolean>> handlers = new ArrayList<>();
+
+  /** @return a new pending {@link InterceptorCompletion} */
+  public static InterceptorCompletion create() {
+    return new InterceptorCompletion();
+  }
+
+  /** @return {@link InterceptorCompletion} already completed to let the navigation proceed */
+  public static InterceptorCompletion proceeded() {
+    InterceptorCompletion completion = new InterceptorCompletion();
+    completion.proceed();
+    return completion;
+  }
+
+  /** @return {@link InterceptorCompletion} already completed to block the navigation */
+  public static InterceptorCompletion blocked() {
+    InterceptorCompletion completion = new InterceptorCompletion();
+    completion.block();
+    return completion;
+  }
+
+  /**
+   * Lets the navigation proceed
+   *
+   * @return <b>true</b> if this call completed the decision
+   */
+  public boolean proceed() {
+    return complete(true);
+  }
+
+  /**
+   * Blocks the navigation
+   *
+   * @return <b>true</b> if this call completed the decision
+   */
+  public boolean block() {
+    return complete(false);
+  }
+
+  /** @return <b>true</b> if the decision is completed */
+  public synchronized boolean isDone() {
+    return !isNull(proceeded);
+  }
+
+  /** @return <b>true</b> if the decision is completed and lets the navigation proceed */
+  public synchronized boolean isProceeded() {
+    return Boolean.TRUE.equals(proceeded);
+  }
+
+  /**
+   * Calls the handler with the decision once completed, immediately if already completed
+   *
+   * @param handler receives <b>true</b> if the navigation can proceed
+   * @return same completion instance
+   */
+  public InterceptorCompletion onComplete(Consumer<Boolean> handler) {
+    Boolean result;
+    synchronized (this) {
+      result = proceeded;
+      if (isNull(result)) {
+        handlers.add(handler);
+        return this;
+      }
+    }
+    handler.accept(result);
+    return this;
+  }
+
+  private boolean complete(boolean proceed) {
+    List<Consumer<Boolean>> completedHandlers;
+    synchronized (this) {
+      if (!isNull(proceeded)) {
+        return false;
+      }
+      proceeded = proceed;
+      completedHandlers = handlers;
+      handlers = null;
+    }
+    for (Consumer<Boolean> handler : completedHandlers) {
+      handler.accept(proceed);
+    }
+    return true;
+  }
+}
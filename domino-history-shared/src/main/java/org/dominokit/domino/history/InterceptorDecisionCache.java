@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * An opt-in cache of {@link PureHistoryInterceptor} decisions, interceptors wrapped with {@link
+ * #cached(PureHistoryInterceptor)} are only called for a token when there is no live decision
+ * cached for that interceptor and token.
+ *
+ * <p>A decision is recorded when the interceptor either calls {@link IsInterceptorChain#next()} or
+ * cancels the {@link TokenEvent}, cached decisions are replayed without calling the interceptor
+ * until they expire or the cache is invalidated, for example when the user permissions change. Only
+ * interceptors declaring themselves pure are accepted, as a replayed decision skips any side effect
+ * of the interceptor.
+ *
+ * <p>The cache is thread safe, so it can be shared by histories navigating from several threads
+ * such as the {@code ConcurrentJVMHistory}.
+ *
+ * <pre>
+ * InterceptorDecisionCache decisions = new InterceptorDecisionCache(60_000, 256);
+ * history.addInterceptor(decisions.cached(permissionsInterceptor));
+ * ...
+ * decisions.invalidate();
+ * </pre>
+ */
+public class InterceptorDecisionCache {
+
+  private final long ttlMillis;
+  private final int maxSize;
+  private final LongSupplier clock;
+  private final Map<Key, Decision> decisions;
+
+  /**
+   * @param ttlMillis the time in milliseconds a decision is kept for
+   * @param maxSize the maximum number of decisions kept, least recently used decisions are dropped
+   *     first
+   */
+  public InterceptorDecisionCache(long ttlMillis, int maxSize) {
+    this(ttlMillis, maxSize, System::currentTimeMillis);
+  }
+
+  /**
+   * @param ttlMillis the time in milliseconds a decision is kept for
+   * @param maxSize the maximum number of decisions kept, least recently used decisions are dropped
+   *     first
+   * @param clock the current time in milliseconds
+   */
+  public InterceptorDecisionCache(long ttlMillis, int maxSize, LongSupplier clock) {
+    if (ttlMillis < 0 || maxSize < 0) {
+      throw new IllegalArgumentException(
+          "Decision cache ttl and size cannot be negative : " + ttlMillis + ", " + maxSize);
+    }
+    this.ttlMillis = ttlMillis;
+    this.maxSize = maxSize;
+    this.clock = clock;
+    this.decisions =
+        new LinkedHashMap<Key, Decision>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, Decision> eldest) {
+            return size() > InterceptorDecisionCache.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * Wraps an interceptor so its decisions are cached, add the returned interceptor to the history
+   * instead of the original one.
+   *
+   * @param interceptor {@link PureHistoryInterceptor}
+   * @return {@link HistoryInterceptor} caching the decisions of the interceptor
+   */
+  public HistoryInterceptor cached(PureHistoryInterceptor interceptor) {
+    return new CachedInterceptor(interceptor);
+  }
+
+  /** Drops all the cached decisions */
+  public synchronized void invalidate() {
+    decisions.clear();
+  }
+
+  /**
+   * Drops the cached decisions of an interceptor
+   *
+   * @param interceptor the original {@link HistoryInterceptor} passed to {@link
+   *     #cached(PureHistoryInterceptor)}
+   */
+  public synchronized void invalidate(HistoryInterceptor interceptor) {
+    Iterator<Key> keys = decisions.keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().interceptor == interceptor) {
+        keys.remove();
+      }
+    }
+  }
+
+  /** @return the number of cached decisions, including expired ones not yet dropped */
+  public synchronized int size() {
+    return decisions.size();
+  }
+
+  private synchronized Decision get(Key key) {
+    Decision decision = decisions.get(key);
+    if (isNull(decision)) {
+      return null;
+    }
+    if (clock.getAsLong() - decision.time >= ttlMillis) {
+      decisions.remove(key);
+      return null;
+    }
+    return decision;
+  }
+
+  private synchronized void put(Key key, boolean proceed) {
+    if (maxSize > 0 && ttlMillis > 0) {
+      decisions.put(key, new Decision(proceed, clock.getAsLong()));
+    }
+  }
+
+  private final class CachedInterceptor implements HistoryInterceptor {
+    private final PureHistoryInterceptor interceptor;
+
+    private CachedInterceptor(PureHistoryInterceptor interceptor) {
+      this.interceptor = interceptor;
+    }
+
+    @Override
+    public void onBeforeChangeState(TokenEvent tokenEvent, IsInterceptorChain chain) {
+      Key key = new Key(interceptor, tokenEvent.getParsedToken().value());
+      Decision decision = get(key);
+      if (isNull(decision)) {
+        RecordingChain recordingChain = new RecordingChain(key, chain);
+        interceptor.onBeforeChangeState(tokenEvent, recordingChain);
+        if (tokenEvent.isCanceled() && !recordingChain.recorded) {
+          recordingChain.recorded = true;
+          put(key, false);
+        }
+      } else if (decision.proceed) {
+        chain.next();
+      } else {
+        tokenEvent.cancel();
+      }
+    }
+  }
+
+  private final class RecordingChain implements IsInterceptorChain {
+    private final Key key;
+    private final IsInterceptorChain chain;
+    private boolean recorded;
+
+    private RecordingChain(Key key, IsInterceptorChain chain) {
+      this.key = key;
+      this.chain = chain;
+    }
+
+    @Override
+    public void next() {
+      if (!recorded) {
+        recorded = true;
+        put(key, true);
+      }
+      chain.next();
+    }
+  }
+
+  private static final class Decision {
+    private final boolean proceed;
+    private final long time;
+
+    private Decision(boolean proceed, long time) {
+      this.proceed = proceed;
+      this.time = time;
+    }
+  }
+
+  private static final class Key {
+    private final HistoryInterceptor interceptor;
+    private final String token;
+
+    private Key(HistoryInterceptor interceptor, String token) {
+      this.interceptor = interceptor;
+      this.token = token;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return interceptor == key.interceptor && token.equals(key.token);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(interceptor) + token.hashCode();
+    }
+  }
+}
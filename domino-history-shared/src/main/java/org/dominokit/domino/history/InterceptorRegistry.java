@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The history interceptors of a history implementation, global interceptors apply to every
+ * navigation while scoped interceptors only apply to the navigations with a token matching their
+ * {@link TokenFilter}.
+ *
+ * <p>The interceptors selected for a token are cached in a bounded least recently used cache that
+ * is dropped whenever an interceptor is added or removed, so scoped interceptor filters are only
+ * evaluated the first time a token is navigated to. As for dispatch plans, filters are assumed to
+ * be pure functions of the token.
+ */
+public class InterceptorRegistry {
+
+  public static final int DEFAULT_CACHE_SIZE = DispatchPlanCache.DEFAULT_SIZE;
+
+  private static final HistoryInterceptor[] EMPTY = new HistoryInterceptor[0];
+
+  private final ListenerRegistry<ScopedInterceptor> entries =
+      new ListenerRegistry<>(new ScopedInterceptor[0]);
+  private final Map<String, HistoryInterceptor[]> selections;
+  private HistoryInterceptor[] all = EMPTY;
+  private int scopedCount;
+  private int maxSize;
+
+  public InterceptorRegistry() {
+    this.maxSize = DEFAULT_CACHE_SIZE;
+    this.selections =
+        new LinkedHashMap<String, HistoryInterceptor[]>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, HistoryInterceptor[]> eldest) {
+            return size() > InterceptorRegistry.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * Adds an interceptor applied to all navigations
+   *
+   * @param interceptor {@link HistoryInterceptor}
+   */
+  public void add(HistoryInterceptor interceptor) {
+    add(null, interceptor);
+  }
+
+  /**
+   * Adds an interceptor applied only to the navigations matching the token filter
+   *
+   * @param tokenFilter {@link TokenFilter}, <b>null</b> to apply the interceptor to all navigations
+   * @param interceptor {@link HistoryInterceptor}
+   */
+  public void add(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    entries.add(new ScopedInterceptor(tokenFilter, interceptor));
+    if (nonNull(tokenFilter)) {
+      scopedCount++;
+    }
+    update();
+  }
+
+  /**
+   * Removes all the registrations of an interceptor
+   *
+   * @param interceptor {@link HistoryInterceptor}
+   */
+  public void remove(HistoryInterceptor interceptor) {
+    if (entries.removeIf(entry -> entry.interceptor.equals(interceptor))) {
+      scopedCount = 0;
+      for (ScopedInterceptor entry : entries.snapshot()) {
+        if (nonNull(entry.tokenFilter)) {
+          scopedCount++;
+        }
+      }
+      update();
+    }
+  }
+
+  /** @return <b>true</b> if no interceptor is registered */
+  public boolean isEmpty() {
+    return all.length == 0;
+  }
+
+  /**
+   * The interceptors applying to a token in the order they were added, the returned array must not
+   * be modified.
+   *
+   * @param rootPath the history root path
+   * @param token the navigation token
+   * @return the interceptors array
+   */
+  public HistoryInterceptor[] select(String rootPath, String token) {
+    if (scopedCount == 0) {
+      return all;
+    }
+    HistoryInterceptor[] selected = selections.get(token);
+    if (isNull(selected)) {
+      selected = resolve(rootPath, token);
+      if (maxSize > 0) {
+        selections.put(token, selected);
+      }
+    }
+    return selected;
+  }
+
+  /** Drops the cached selections, for example when the history root path changes */
+  public void invalidate() {
+    selections.clear();
+  }
+
+  /**
+   * Changes the maximum number of tokens to cache the selected interceptors for, <b>0</b> disables
+   * the cache.
+   *
+   * @param maxSize int
+   */
+  public void setCacheSize(int maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    selections.clear();
+  }
+
+  private HistoryInterceptor[] resolve(String rootPath, String token) {
+    ScopedInterceptor[] snapshot = entries.snapshot();
+    HistoryInterceptor[] selected = new HistoryInterceptor[snapshot.length];
+    int count = 0;
+    for (ScopedInterceptor entry : snapshot) {
+      if (entry.matches(rootPath, token)) {
+        selected[count++] = entry.interceptor;
+      }
+    }
+    return count == selected.length ? selected : Arrays.copyOf(selected, count);
+  }
+
+  private void update() {
+    ScopedInterceptor[] snapshot = entries.snapshot();
+    HistoryInterceptor[] updated = new HistoryInterceptor[snapshot.length];
+    for (int i = 0; i < snapshot.length; i++) {
+      updated[i] = snapshot[i].interceptor;
+    }
+    all = updated;
+    selections.clear();
+  }
+
+  private static class ScopedInterceptor {
+    private final TokenFilter tokenFilter;
+    private final HistoryInterceptor interceptor;
+
+    private ScopedInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+      this.tokenFilter = tokenFilter;
+      this.interceptor = interceptor;
+    }
+
+    private boolean matches(String rootPath, String token) {
+      if (isNull(tokenFilter)) {
+        return true;
+      }
+      NormalizedToken normalized = tokenFilter.normalizeToken(rootPath, token);
+      String value = isNull(normalized) ? token : normalized.getToken().value();
+      return tokenFilter.filter(new StateHistoryToken(rootPath, value));
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+/**
+ * Schedules the timeouts of an {@link AsyncInterceptorChain} on the platform timer and runs the
+ * continuations of its asynchronous decisions on the thread the navigations are made on.
+ */
+@FunctionalInterface
+public interface InterceptorScheduler {
+
+  /**
+   * @param task the task to run
+   * @param delayMillis the delay in milliseconds before running the task
+   * @return {@link ScheduledTask} to cancel the task
+   */
+  ScheduledTask schedule(Runnable task, int delayMillis);
+
+  /**
+   * Runs the continuation of an asynchronous decision or a timeout on the thread the navigations
+   * are made on, by default the task is scheduled with no delay.
+   *
+   * @param task the task to run
+   */
+  default void execute(Runnable task) {
+    schedule(task, 0);
+  }
+
+  /** A scheduled task that can be cancelled before it runs */
+  @FunctionalInterface
+  interface ScheduledTask {
+    void cancel();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A versioned, copy-on-write registry of history listeners.
+ *
+ * <p>Every modification replaces the backing array and increments the registry version, so a
+ * dispatch can iterate the array returned from {@link #snapshot()} without copying it while
+ * listeners are being added or removed re-entrantly. Listeners are kept in descending priority
+ * order, listeners with the same priority are kept in registration order.
+ *
+ * @param <L> the history implementation listener type
+ */
+public class ListenerRegistry<L> {
+
+  private L[] listeners;
+  private int[] priorities = new int[0];
+  private int version;
+
+  /** @param empty an empty array of the listener type used to create the backing arrays */
+  public ListenerRegistry(L[] empty) {
+    this.listeners = Arrays.copyOf(empty, 0);
+  }
+
+  /**
+   * The current listeners in dispatch order, the returned array is never modified by the registry
+   * and must not be modified by the caller.
+   *
+   * @return the listeners array
+   */
+  public L[] snapshot() {
+    return listeners;
+  }
+
+  /** @return the registry version, incremented on each modification */
+  public int getVersion() {
+    return version;
+  }
+
+  /** @return the number of registered listeners */
+  public int size() {
+    return listeners.length;
+  }
+
+  /**
+   * Adds a listener to the registry with the {@link DominoHistory#DEFAULT_PRIORITY}
+   *
+   * @param listener the listener to add
+   */
+  public void add(L listener) {
+    add(listener, DominoHistory.DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Adds a listener to the registry after all listeners with the same or a higher priority
+   *
+   * @param listener the listener to add
+   * @param priority the listener priority, higher priority listeners are dispatched first
+   */
+  public void add(L listener, int priority) {
+    int index = listeners.length;
+    while (index > 0 && priorities[index - 1] < priority) {
+      index--;
+    }
+    L[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+    int[] updatedPriorities = Arrays.copyOf(priorities, priorities.length + 1);
+    System.arraycopy(listeners, index, updated, index + 1, listeners.length - index);
+    System.arraycopy(priorities, index, updatedPriorities, index + 1, priorities.length - index);
+    updated[index] = listener;
+    updatedPriorities[index] = priority;
+    replace(updated, updatedPriorities);
+  }
+
+  /**
+   * Removes all listeners matching the predicate
+   *
+   * @param predicate the removal criteria
+   * @return <b>true</b> if any listener was removed
+   */
+  public boolean removeIf(Predicate<? super L> predicate) {
+    int remaining = 0;
+    for (L listener : listeners) {
+      if (!predicate.test(listener)) {
+        remaining++;
+      }
+    }
+    if (remaining == listeners.length) {
+      return false;
+    }
+
+    L[] updated = Arrays.copyOf(listeners, remaining);
+    int[] updatedPriorities = new int[remaining];
+    int index = 0;
+    for (int i = 0; i < listeners.length; i++) {
+      if (!predicate.test(listeners[i])) {
+        updatedPriorities[index] = priorities[i];
+        updated[index++] = listeners[i];
+      }
+    }
+    replace(updated, updatedPriorities);
+    return true;
+  }
+
+  /**
+   * Removes all the specified listeners in a single modification
+   *
+   * @param toRemove the listeners to remove
+   * @return <b>true</b> if any listener was removed
+   */
+  public boolean removeAll(Collection<? extends L> toRemove) {
+    if (toRemove.isEmpty()) {
+      return false;
+    }
+    return removeIf(toRemove::contains);
+  }
+
+  /** @return an unmodifiable view of the current listeners in dispatch order */
+  public List<L> asList() {
+    return Collections.unmodifiableList(Arrays.asList(listeners));
+  }
+
+  private void replace(L[] updated, int[] updatedPriorities) {
+    this.listeners = updated;
+    this.priorities = updatedPriorities;
+    this.version++;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The batching and coalescing bookkeeping shared by history implementations: the batch depth, the
+ * {@link PendingNavigation} collapsed from the batched or coalesced navigations and the callbacks
+ * the implementation attaches to it.
+ *
+ * <p>When a batch throws, the navigations and callbacks added by the batch are discarded and the
+ * navigation that was pending before the batch started, for example a coalesced one, is restored.
+ *
+ * @param <A> the type of the callbacks attached to the pending navigation
+ */
+public class NavigationBatch<A> {
+
+  private final List<A> attachments = new ArrayList<>();
+  private NavigationCoalescing coalescing = NavigationCoalescing.none();
+  private PendingNavigation pending;
+  private PendingNavigation beforeBatch;
+  private int attachmentsBeforeBatch;
+  private int depth;
+
+  /** @return <b>true</b> if navigations are deferred, inside a batch or while coalescing */
+  public boolean isDeferred() {
+    return depth > 0 || coalescing.isEnabled();
+  }
+
+  /** @return <b>true</b> inside a batch */
+  public boolean isBatching() {
+    return depth > 0;
+  }
+
+  /** @return the current {@link NavigationCoalescing} */
+  public NavigationCoalescing getCoalescing() {
+    return coalescing;
+  }
+
+  /** @param coalescing {@link NavigationCoalescing}, <b>null</b> disables coalescing */
+  public void setCoalescing(NavigationCoalescing coalescing) {
+    this.coalescing = isNull(coalescing) ? NavigationCoalescing.none() : coalescing;
+  }
+
+  /**
+   * Collapses a navigation into the pending one
+   *
+   * @param stateToken the navigation token
+   * @param replace <b>true</b> if the navigation replaces the current entry
+   * @param fire <b>true</b> if the navigation fires the listeners
+   * @param parameters the navigation token parameters
+   * @return <b>true</b> if the navigation started a new pending navigation outside of a batch, the
+   *     implementation should then schedule its coalescing flush
+   */
+  public boolean add(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    boolean started = isNull(pending);
+    if (started) {
+      pending = new PendingNavigation();
+    }
+    pending.add(stateToken, replace, fire, parameters);
+    return started && depth == 0;
+  }
+
+  /**
+   * Attaches a callback to the pending navigation, it is handed back when the navigation is flushed
+   * or discarded.
+   *
+   * @param attachment the callback
+   */
+  public void attach(A attachment) {
+    attachments.add(attachment);
+  }
+
+  /**
+   * Runs the navigations in a batch, nested batches are part of the outermost one.
+   *
+   * @param navigations the navigations to batch
+   * @param onDiscarded receives the callbacks attached by the batch if it throws
+   * @return <b>true</b> if the outermost batch completed, the pending navigation should then be
+   *     flushed
+   */
+  public boolean run(Runnable navigations, Consumer<List<A>> onDiscarded) {
+    if (depth == 0) {
+      beforeBatch = isNull(pending) ? null : pending.copy();
+      attachmentsBeforeBatch = attachments.size();
+    }
+    depth++;
+    boolean completed = false;
+    try {
+      navigations.run();
+      completed = true;
+    } finally {
+      depth--;
+      if (depth == 0) {
+        if (!completed) {
+          restore(onDiscarded);
+        }
+        beforeBatch = null;
+      }
+    }
+    return depth == 0;
+  }
+
+  private void restore(Consumer<List<A>> onDiscarded) {
+    pending = beforeBatch;
+    List<A> added = attachments.subList(attachmentsBeforeBatch, attachments.size());
+    List<A> discarded = new ArrayList<>(added);
+    added.clear();
+    if (!discarded.isEmpty()) {
+      onDiscarded.accept(discarded);
+    }
+  }
+
+  /**
+   * Takes the pending navigation and its callbacks to apply them, nothing is taken inside a batch.
+   *
+   * @param commit receives the pending navigation and its callbacks in the order they were attached
+   */
+  public void flush(BiConsumer<PendingNavigation, List<A>> commit) {
+    if (depth == 0) {
+      flushNow(commit);
+    }
+  }
+
+  /**
+   * Takes the pending navigation and its callbacks to apply them even inside a batch, for example
+   * before moving through the history entries which cannot be deferred without reordering the
+   * navigations. A batch that throws afterwards can no longer discard them.
+   *
+   * @param commit receives the pending navigation and its callbacks in the order they were attached
+   */
+  public void flushNow(BiConsumer<PendingNavigation, List<A>> commit) {
+    if (isNull(pending)) {
+      return;
+    }
+    PendingNavigation navigation = pending;
+    List<A> callbacks = new ArrayList<>(attachments);
+    pending = null;
+    attachments.clear();
+    beforeBatch = null;
+    attachmentsBeforeBatch = 0;
+    commit.accept(navigation, callbacks);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+/**
+ * Defines how a {@link DominoHistory} collapses bursts of navigations, when coalescing is enabled
+ * all the push, replace and fire navigations made within the same window are collapsed into a
+ * single history entry for the last token and listeners are called once with the final state.
+ *
+ * <p>The collapsed intermediate tokens are available to interceptors from {@link
+ * TokenEvent#getCoalescedTokens()}.
+ */
+public class NavigationCoalescing {
+
+  private static final NavigationCoalescing NONE = new NavigationCoalescing(Mode.NONE, 0);
+  private static final NavigationCoalescing FRAME = new NavigationCoalescing(Mode.FRAME, 0);
+
+  private final Mode mode;
+  private final int windowMillis;
+
+  private NavigationCoalescing(Mode mode, int windowMillis) {
+    this.mode = mode;
+    this.windowMillis = windowMillis;
+  }
+
+  /** @return {@link NavigationCoalescing} that applies every navigation immediately */
+  public static NavigationCoalescing none() {
+    return NONE;
+  }
+
+  /**
+   * @param windowMillis the time in milliseconds since the first navigation of a burst to wait for
+   *     more navigations before applying the final one
+   * @return {@link NavigationCoalescing} that collapses navigations within a time window
+   */
+  public static NavigationCoalescing window(int windowMillis) {
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("Coalescing window cannot be negative : " + windowMillis);
+    }
+    return new NavigationCoalescing(Mode.WINDOW, windowMillis);
+  }
+
+  /** @return {@link NavigationCoalescing} that collapses navigations made within one frame */
+  public static NavigationCoalescing frame() {
+    return FRAME;
+  }
+
+  /** @return the coalescing {@link Mode} */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /** @return the coalescing window in milliseconds for {@link Mode#WINDOW} */
+  public int getWindowMillis() {
+    return windowMillis;
+  }
+
+  /** @return <b>true</b> if navigations are coalesced */
+  public boolean isEnabled() {
+    return mode != Mode.NONE;
+  }
+
+  public enum Mode {
+    /** Navigations are applied immediately */
+    NONE,
+    /** Navigations within a time window are collapsed */
+    WINDOW,
+    /** Navigations within one rendering frame are collapsed */
+    FRAME
+  }
+}
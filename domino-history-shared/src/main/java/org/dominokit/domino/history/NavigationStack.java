@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The entries of a virtual history kept in an array ring buffer with a cursor on the current entry.
+ *
+ * <p>Pushing an entry drops the entries after the cursor like a browser does, and once the stack
+ * holds its maximum number of entries the oldest entry is evicted for each new one. Moving the
+ * cursor any distance with {@link #go(int)} is O(1).
+ *
+ * <p>Subclasses storing entries that depend on each other can override {@link #onRemove(int,
+ * Object)} to be told about each entry before it leaves the stack.
+ *
+ * @param <E> the entry type
+ */
+public class NavigationStack<E> {
+
+  /** The maximum size of a stack without a configured maximum */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Object[] entries = new Object[0];
+  private int head;
+  private int size;
+  private int cursor = -1;
+  private int maxSize;
+  private long evictedCount;
+
+  /** Creates an unbounded stack */
+  public NavigationStack() {
+    this(UNBOUNDED);
+  }
+
+  /** @param maxSize the maximum number of entries kept by the stack */
+  public NavigationStack(int maxSize) {
+    setMaxSize(maxSize);
+  }
+
+  /**
+   * Sets the maximum number of entries kept by the stack, evicting the oldest entries if it holds
+   * more than that. The current entry is never evicted, once it is the oldest entry the newest
+   * entries after it are dropped instead.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  public void setMaxSize(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Navigation stack max size must be positive : " + maxSize);
+    }
+    this.maxSize = maxSize;
+    while (size > maxSize && cursor > 0) {
+      evictOldest();
+    }
+    while (size > maxSize) {
+      removeNewest();
+    }
+  }
+
+  /** @return the maximum number of entries kept by the stack */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Adds an entry after the current one and makes it the current entry, the entries after the
+   * current one are dropped.
+   *
+   * @param entry the new entry
+   */
+  public void push(E entry) {
+    truncateAfterCursor();
+    if (size == maxSize) {
+      evictOldest();
+    }
+    if (size == entries.length) {
+      grow();
+    }
+    entries[index(size)] = entry;
+    size++;
+    cursor = size - 1;
+  }
+
+  /**
+   * Replaces the current entry, or pushes the entry if the stack is empty
+   *
+   * @param entry the new entry
+   */
+  public void replace(E entry) {
+    if (cursor < 0) {
+      push(entry);
+    } else {
+      onRemove(cursor, entryAt(cursor));
+      entries[index(cursor)] = entry;
+    }
+  }
+
+  /** @return the current entry, or <b>null</b> if the stack is empty */
+  public E current() {
+    return cursor < 0 ? null : entryAt(cursor);
+  }
+
+  /**
+   * @param position the entry position, <b>0</b> being the oldest entry
+   * @return the entry at the position
+   */
+  public E get(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("Entry position is out of range : " + position);
+    }
+    return entryAt(position);
+  }
+
+  /**
+   * @param delta the number of entries to move, negative to move back
+   * @return <b>true</b> if moving the cursor by the delta stays within the stack
+   */
+  public boolean canGo(int delta) {
+    long target = (long) cursor + delta;
+    return size > 0 && target >= 0 && target < size;
+  }
+
+  /**
+   * Moves the cursor by the delta, moving outside the stack does nothing
+   *
+   * @param delta the number of entries to move, negative to move back
+   * @return the new current entry, or <b>null</b> if the cursor did not move
+   */
+  public E go(int delta) {
+    if (delta == 0 || !canGo(delta)) {
+      return null;
+    }
+    cursor += delta;
+    return entryAt(cursor);
+  }
+
+  /** @return the number of entries in the stack */
+  public int size() {
+    return size;
+  }
+
+  /** @return <b>true</b> if the stack has no entries */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** @return the position of the current entry from the oldest entry, <b>-1</b> if empty */
+  public int getCursor() {
+    return cursor;
+  }
+
+  /** @return the number of entries evicted since the stack was created */
+  public long getEvictedCount() {
+    return evictedCount;
+  }
+
+  /** @return a snapshot of the entries up to the current one, the current entry first */
+  public Deque<E> toBackDeque() {
+    Deque<E> deque = new ArrayDeque<>(Math.max(cursor + 1, 1));
+    for (int i = cursor; i >= 0; i--) {
+      deque.addLast(entryAt(i));
+    }
+    return deque;
+  }
+
+  /** @return a snapshot of the entries after the current one, the nearest entry first */
+  public Deque<E> toForwardDeque() {
+    Deque<E> deque = new ArrayDeque<>(Math.max(size - cursor - 1, 1));
+    for (int i = cursor + 1; i < size; i++) {
+      deque.addLast(entryAt(i));
+    }
+    return deque;
+  }
+
+  /** Removes all the entries */
+  public void clear() {
+    while (size > 0) {
+      removeNewest();
+    }
+    Arrays.fill(entries, null);
+    head = 0;
+    size = 0;
+    cursor = -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private E entryAt(int position) {
+    return (E) entries[index(position)];
+  }
+
+  private int index(int position) {
+    int index = head + position;
+    return index < entries.length ? index : index - entries.length;
+  }
+
+  /**
+   * Called before an entry is evicted, dropped or replaced, while it is still at its position.
+   * Entries are dropped newest first, so only an evicted or replaced entry can have a following
+   * entry in the stack.
+   *
+   * @param position the position of the entry, <b>0</b> being the oldest entry
+   * @param entry the entry leaving the stack
+   */
+  protected void onRemove(int position, E entry) {}
+
+  private void truncateAfterCursor() {
+    while (size > cursor + 1) {
+      removeNewest();
+    }
+  }
+
+  private void removeNewest() {
+    int index = index(size - 1);
+    onRemove(size - 1, entryAt(size - 1));
+    entries[index] = null;
+    size--;
+  }
+
+  private void evictOldest() {
+    onRemove(0, entryAt(0));
+    entries[head] = null;
+    head = index(1);
+    size--;
+    cursor = Math.max(cursor - 1, size == 0 ? -1 : 0);
+    evictedCount++;
+  }
+
+  private void grow() {
+    int capacity =
+        entries.length == 0
+            ? Math.min(INITIAL_CAPACITY, maxSize)
+            : (int) Math.min((long) entries.length * 2, maxSize);
+    Object[] grown = new Object[capacity];
+    for (int i = 0; i < size; i++) {
+      grown[i] = entries[index(i)];
+    }
+    entries = grown;
+    head = 0;
+  }
+}
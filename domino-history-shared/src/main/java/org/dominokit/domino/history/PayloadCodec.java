@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+/**
+ * Converts a typed state payload to and from the data string stored with a history entry
+ *
+ * @param <T> the payload type
+ */
+public interface PayloadCodec<T> {
+
+  /**
+   * @param payload the payload object
+   * @return the payload data string
+   */
+  String encode(T payload);
+
+  /**
+   * @param data the payload data string
+   * @return the payload object
+   */
+  T decode(String data);
+}
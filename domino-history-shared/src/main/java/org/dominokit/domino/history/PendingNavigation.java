@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The net result of several navigations collapsed into one, used by history implementations while
+ * batching or coalescing navigations.
+ *
+ * <p>The collapsed navigation targets the last added token, it is a push if any of the added
+ * navigations was a push otherwise it is a replace, and it fires the listeners if any of the added
+ * navigations was a fire.
+ */
+public class PendingNavigation {
+
+  private final List<StateToken> coalescedTokens = new ArrayList<>();
+  private StateToken stateToken;
+  private TokenParameter[] parameters = new TokenParameter[0];
+  private boolean push;
+  private boolean fire;
+
+  /**
+   * Collapse a navigation into this one
+   *
+   * @param stateToken the navigation token
+   * @param replace <b>true</b> if the navigation replaces the current entry
+   * @param fire <b>true</b> if the navigation fires the listeners
+   * @param parameters the navigation token parameters
+   */
+  public void add(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    if (nonNull(this.stateToken)) {
+      coalescedTokens.add(this.stateToken);
+    }
+    this.stateToken = stateToken;
+    this.parameters = parameters;
+    this.push = this.push || !replace;
+    this.fire = this.fire || fire;
+  }
+
+  PendingNavigation copy() {
+    PendingNavigation copy = new PendingNavigation();
+    copy.coalescedTokens.addAll(coalescedTokens);
+    copy.stateToken = stateToken;
+    copy.parameters = parameters;
+    copy.push = push;
+    copy.fire = fire;
+    return copy;
+  }
+
+  /** @return the final token */
+  public StateToken getStateToken() {
+    return stateToken;
+  }
+
+  /** @return the final token parameters */
+  public TokenParameter[] getParameters() {
+    return parameters;
+  }
+
+  /** @return <b>true</b> if the collapsed navigation adds a new entry */
+  public boolean isPush() {
+    return push;
+  }
+
+  /** @return <b>true</b> if the collapsed navigation fires the listeners */
+  public boolean isFire() {
+    return fire;
+  }
+
+  /** @return the intermediate tokens, oldest first */
+  public List<StateToken> getCoalescedTokens() {
+    return coalescedTokens;
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+/**
+ * A {@link HistoryInterceptor} whose decision only depends on the token and that has no side
+ * effects, such as showing a confirmation, logging or redirecting, so its decision for a token can
+ * be replayed without calling it again, see {@link InterceptorDecisionCache}.
+ */
+@FunctionalInterface
+public interface PureHistoryInterceptor extends HistoryInterceptor {}
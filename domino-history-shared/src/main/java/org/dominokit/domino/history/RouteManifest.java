@@ -0,0 +1,305 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.dominokit.domino.history.DominoHistory.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A manifest of lazily loaded routes, each route is a {@link TokenFilter} and a {@link RouteLoader}
+ * that loads the module owning the route and registers its real listeners.
+ *
+ * <p>The loader of a route is only called when a matching token is dispatched, navigations matching
+ * the route while it is loading are queued and dispatched to the listeners registered by the loader
+ * once it calls {@link RouteRegistration#loaded()}.
+ *
+ * <pre>
+ * RouteManifest manifest =
+ *     new RouteManifest(history)
+ *         .route(
+ *             TokenFilter.startsWithPathFilter("orders"),
+ *             registration -&gt;
+ *                 GWT.runAsync(
+ *                     () -&gt; {
+ *                       new OrdersModule().registerListeners(registration);
+ *                       registration.loaded();
+ *                     }));
+ * manifest.onDirectUrl();
+ * </pre>
+ */
+public class RouteManifest {
+
+  private final DominoHistory history;
+  private final List<Route> routes = new ArrayList<>();
+
+  /** @param history the {@link DominoHistory} to register the routes to */
+  public RouteManifest(DominoHistory history) {
+    this.history = history;
+  }
+
+  /**
+   * Adds a lazily loaded route to the manifest
+   *
+   * @param tokenFilter {@link TokenFilter} matching the tokens of the route
+   * @param loader {@link RouteLoader} to load the route module
+   * @return same manifest instance
+   */
+  public RouteManifest route(TokenFilter tokenFilter, RouteLoader loader) {
+    Route route = new Route(loader);
+    route.directState = history.listen(tokenFilter, route.placeholder);
+    routes.add(route);
+    return this;
+  }
+
+  /**
+   * Loads the routes matching the url the history had when the routes were added, use this instead
+   * of the {@link DirectState#onDirectUrl()} of the route modules listeners.
+   */
+  public void onDirectUrl() {
+    for (Route route : new ArrayList<>(routes)) {
+      if (route.status == Status.NOT_LOADED) {
+        route.directState.onDirectUrl();
+      }
+    }
+  }
+
+  /** Loads a route module and registers its listeners */
+  @FunctionalInterface
+  public interface RouteLoader {
+    /**
+     * Loads the route module, this can be asynchronous for example behind a split point
+     *
+     * @param registration the {@link RouteRegistration} to register the module listeners with
+     */
+    void load(RouteRegistration registration);
+  }
+
+  /** Registers the listeners of a loaded route module */
+  public interface RouteRegistration {
+    /**
+     * Create a listener for the route module, queued navigations are dispatched to it once the
+     * module is loaded and only then the listener is registered with the history, so each
+     * navigation reaches it once.
+     *
+     * @param tokenFilter {@link TokenFilter}
+     * @param listener {@link StateListener}
+     * @return {@link DirectState} that does nothing until the module is loaded, the queued
+     *     navigations already include the direct url
+     */
+    DirectState listen(TokenFilter tokenFilter, StateListener listener);
+
+    /** Marks the module as loaded and dispatches the queued navigations to its listeners */
+    void loaded();
+
+    /**
+     * Marks the module loading as failed, the queued navigations are dropped and the module will be
+     * loaded again by the next matching navigation.
+     *
+     * @param error the loading error
+     */
+    void failed(Throwable error);
+  }
+
+  private enum Status {
+    NOT_LOADED,
+    LOADING,
+    LOADED
+  }
+
+  private class Route implements RouteRegistration {
+    private final RouteLoader loader;
+    private final StateListener placeholder = this::onRouteState;
+    private final List<State> pendingStates = new ArrayList<>();
+    private final List<RouteListener> routeListeners = new ArrayList<>();
+    private DirectState directState;
+    private Status status = Status.NOT_LOADED;
+
+    private Route(RouteLoader loader) {
+      this.loader = loader;
+    }
+
+    private void onRouteState(State state) {
+      if (status == Status.LOADED) {
+        return;
+      }
+      pendingStates.add(state);
+      if (status == Status.NOT_LOADED) {
+        status = Status.LOADING;
+        loader.load(this);
+      }
+    }
+
+    @Override
+    public DirectState listen(TokenFilter tokenFilter, StateListener listener) {
+      RouteListener routeListener = new RouteListener(tokenFilter, listener);
+      routeListeners.add(routeListener);
+      return routeListener;
+    }
+
+    /**
+     * Dispatches the queued navigations, including the ones made by the listeners while being
+     * dispatched which the placeholder keeps queuing, then hands the listeners over to the history.
+     */
+    @Override
+    public void loaded() {
+      if (status != Status.LOADING) {
+        return;
+      }
+      while (!pendingStates.isEmpty()) {
+        replay(pendingStates.remove(0));
+      }
+      status = Status.LOADED;
+      history.removeListener(placeholder);
+      routes.remove(this);
+      for (RouteListener routeListener : routeListeners) {
+        routeListener.registered =
+            history.listen(routeListener.tokenFilter, routeListener.listener);
+      }
+    }
+
+    /**
+     * Dispatches a queued navigation to the matching listeners in registration order the way the
+     * history does, each listener gets its own normalized token and the navigation is only direct
+     * if the queued one was.
+     */
+    private void replay(State state) {
+      Propagation propagation = new Propagation();
+      for (RouteListener routeListener : routeListeners) {
+        if (propagation.stopped) {
+          return;
+        }
+        TokenFilter tokenFilter = routeListener.tokenFilter;
+        NormalizedToken normalized =
+            tokenFilter.normalizeToken(state.rootPath(), state.token().value());
+        if (isNull(normalized)) {
+          normalized = new DefaultNormalizedToken(state.token());
+        }
+        if (tokenFilter.filter(
+            new StateHistoryToken(state.rootPath(), normalized.getToken().value()))) {
+          routeListener.listener.onPopState(new RouteState(state, normalized, propagation));
+        }
+      }
+    }
+
+    @Override
+    public void failed(Throwable error) {
+      if (status != Status.LOADING) {
+        return;
+      }
+      status = Status.NOT_LOADED;
+      pendingStates.clear();
+      routeListeners.clear();
+    }
+  }
+
+  private static class RouteListener implements DirectState {
+    private final TokenFilter tokenFilter;
+    private final StateListener listener;
+    private DirectState registered;
+
+    private RouteListener(TokenFilter tokenFilter, StateListener listener) {
+      this.tokenFilter = tokenFilter;
+      this.listener = listener;
+    }
+
+    @Override
+    public void onDirectUrl() {
+      if (nonNull(registered)) {
+        registered.onDirectUrl();
+      }
+    }
+
+    @Override
+    public void onDirectUrl(TokenFilter tokenFilter) {
+      if (nonNull(registered)) {
+        registered.onDirectUrl(tokenFilter);
+      }
+    }
+  }
+
+  /** A queued navigation replayed to a single route listener */
+  private static class RouteState implements State {
+    private final State state;
+    private NormalizedToken normalizedToken;
+    private final Propagation propagation;
+
+    private RouteState(State state, NormalizedToken normalizedToken, Propagation propagation) {
+      this.state = state;
+      this.normalizedToken = normalizedToken;
+      this.propagation = propagation;
+    }
+
+    @Override
+    public String rootPath() {
+      return state.rootPath();
+    }
+
+    @Override
+    public HistoryToken token() {
+      return state.token();
+    }
+
+    @Override
+    public Optional<String> data() {
+      return state.data();
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return state.payload(codec);
+    }
+
+    @Override
+    public String title() {
+      return state.title();
+    }
+
+    @Override
+    public NormalizedToken normalizedToken() {
+      return normalizedToken;
+    }
+
+    @Override
+    public void setNormalizedToken(NormalizedToken normalizedToken) {
+      this.normalizedToken = normalizedToken;
+    }
+
+    @Override
+    public boolean isDirect() {
+      return state.isDirect();
+    }
+
+    @Override
+    public void stopPropagation() {
+      propagation.stopped = true;
+    }
+
+    @Override
+    public boolean isPropagationStopped() {
+      return propagation.stopped;
+    }
+  }
+
+  /** The propagation status shared by the route states of a single replayed navigation */
+  private static class Propagation {
+    private boolean stopped;
+  }
+}
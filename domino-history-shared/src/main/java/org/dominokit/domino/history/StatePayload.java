@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+
+/**
+ * The payload of a history entry, either a data string or a typed object with its {@link
+ * PayloadCodec}.
+ *
+ * <p>The conversions are lazy and done at most once, a typed payload is only encoded when its data
+ * string is needed, for example to store it in the browser history, and a data string is only
+ * decoded when a listener asks for the typed payload, the decoded object is then shared by all the
+ * listeners of the entry.
+ */
+public final class StatePayload {
+
+  private final boolean typed;
+  private String data;
+  private Object value;
+  private PayloadCodec<?> codec;
+  private boolean encoded;
+
+  private StatePayload(boolean typed) {
+    this.typed = typed;
+  }
+
+  /**
+   * @param data the payload data string
+   * @return a {@link StatePayload} of the data string, or <b>null</b> if the data is null
+   */
+  public static StatePayload ofData(String data) {
+    if (isNull(data)) {
+      return null;
+    }
+    StatePayload payload = new StatePayload(false);
+    payload.data = data;
+    payload.encoded = true;
+    return payload;
+  }
+
+  /**
+   * @param value the payload object
+   * @param codec the {@link PayloadCodec} to encode the payload when its data string is needed
+   * @param <T> the payload type
+   * @return a {@link StatePayload} of the object
+   */
+  public static <T> StatePayload of(T value, PayloadCodec<T> codec) {
+    StatePayload payload = new StatePayload(true);
+    payload.value = value;
+    payload.codec = codec;
+    return payload;
+  }
+
+  /** @return the payload data string, encoded on the first call for typed payloads */
+  @SuppressWarnings("unchecked")
+  public synchronized String data() {
+    if (!encoded) {
+      data = isNull(value) ? null : ((PayloadCodec<Object>) codec).encode(value);
+      encoded = true;
+    }
+    return data;
+  }
+
+  /**
+   * Returns the typed payload, a payload created from an object returns that same object when asked
+   * with its own codec and otherwise decodes its data string with the given codec on each call,
+   * while a payload created from a data string decodes it once and decodes it again only when asked
+   * with a different codec.
+   *
+   * @param codec the {@link PayloadCodec} to decode the data string
+   * @param <T> the payload type
+   * @return the payload object
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> T value(PayloadCodec<T> codec) {
+    if (typed && this.codec != codec) {
+      String encodedData = data();
+      return isNull(encodedData) ? null : codec.decode(encodedData);
+    }
+    if (!typed && this.codec != codec) {
+      value = codec.decode(data);
+      this.codec = codec;
+    }
+    return (T) value;
+  }
+
+  /** @return <b>true</b> if the payload was created from an object */
+  public boolean isTyped() {
+    return typed;
+  }
+}
@@ -15,10 +15,12 @@
  */
 package org.dominokit.domino.history;
 
+import static java.util.Objects.isNull;
+
 public class StateToken {
   final String token;
   String title;
-  String data;
+  StatePayload payload;
 
   private StateToken(String token) {
     this.token = token;
@@ -41,7 +43,12 @@ public class StateToken {
   }
 
   public String getData() {
-    return data;
+    return isNull(payload) ? null : payload.data();
+  }
+
+  /** @return the {@link StatePayload} of the token, or <b>null</b> if it has no data */
+  public StatePayload getPayload() {
+    return payload;
   }
 
   public StateToken title(String title) {
@@ -50,7 +57,21 @@ public class StateToken {
   }
 
   public StateToken data(String data) {
-    this.data = data;
+    this.payload = StatePayload.ofData(data);
+    return this;
+  }
+
+  /**
+   * Assigns a typed payload to the token, the payload is only encoded by histories that need its
+   * data string.
+   *
+   * @param payload the payload object
+   * @param codec the {@link PayloadCodec} of the payload
+   * @param <T> the payload type
+   * @return same token instance
+   */
+  public <T> StateToken payload(T payload, PayloadCodec<T> codec) {
+    this.payload = StatePayload.of(payload, codec);
     return this;
   }
 }
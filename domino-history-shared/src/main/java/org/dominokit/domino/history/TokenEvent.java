@@ -15,20 +15,35 @@
  */
 package org.dominokit.domino.history;
 
+import java.util.Collections;
+import java.util.List;
+
 public class TokenEvent {
 
   private final StateToken stateToken;
   private final HistoryToken parsedToken;
+  private final List<StateToken> coalescedTokens;
   private boolean canceled;
 
   public TokenEvent(StateToken stateToken) {
     this.stateToken = stateToken;
     this.parsedToken = new StateHistoryToken(stateToken.getToken());
+    this.coalescedTokens = Collections.emptyList();
   }
 
   public TokenEvent(String rootPath, StateToken stateToken) {
+    this(rootPath, stateToken, Collections.emptyList());
+  }
+
+  /**
+   * @param rootPath the history root path
+   * @param stateToken the final token of the navigation
+   * @param coalescedTokens the intermediate tokens collapsed into this navigation, oldest first
+   */
+  public TokenEvent(String rootPath, StateToken stateToken, List<StateToken> coalescedTokens) {
     this.stateToken = stateToken;
     this.parsedToken = new StateHistoryToken(rootPath, stateToken.getToken());
+    this.coalescedTokens = Collections.unmodifiableList(coalescedTokens);
   }
 
   public StateToken getStateToken() {
@@ -46,4 +61,14 @@ public class TokenEvent {
   public HistoryToken getParsedToken() {
     return parsedToken;
   }
+
+  /**
+   * The intermediate tokens of the navigations that were collapsed into this one when the history
+   * coalesces navigations, see {@link NavigationCoalescing}.
+   *
+   * @return the collapsed tokens oldest first, empty if no navigation was collapsed
+   */
+  public List<StateToken> getCoalescedTokens() {
+    return coalescedTokens;
+  }
 }
@@ -41,7 +41,12 @@ public class TokenParameter {
     return value;
   }
 
+  /**
+   * @param token the token pattern
+   * @return the token with the placeholders starting with the name of this parameter filled with
+   *     its value
+   */
   public String apply(String token) {
-    return token.replace(":" + getName(), getValue());
+    return TokenTemplate.compile(token).replace(this);
   }
 }
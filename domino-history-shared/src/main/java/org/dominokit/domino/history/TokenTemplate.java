@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2019 Dominokit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dominokit.domino.history;
+
+import static java.util.Objects.isNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A token pattern compiled into literal parts and <b>:name</b> placeholder slots, filled with
+ * {@link TokenParameter}s in a single pass.
+ *
+ * <p>A placeholder runs from the colon to the next <b>/ ? &amp; # = :</b> or the end of the pattern
+ * and is filled by the parameter with the longest name it starts with, the rest of the placeholder
+ * is kept after the value. This is what replacing <b>:name</b> with each parameter in turn did, so
+ * <b>:id.json</b> is still filled by <b>id</b>, except that <b>:idx</b> is filled by <b>idx</b>
+ * whatever the order of the parameters and a filled value is never replaced again. Placeholders
+ * without a matching parameter are kept as they are.
+ *
+ * <p>{@link #fill(TokenParameter...)} applies the parameters of other types than {@link
+ * TokenParameter} itself, like {@link TokenQueryParameter}, to the filled token afterwards in order
+ * as {@link EffectiveToken} always did, while {@link #replace(TokenParameter...)} fills the
+ * placeholders with every parameter as the JVM and test histories always did.
+ *
+ * <p>Compiled templates are cached per pattern by {@link #of(String)} and {@link #apply(String,
+ * TokenParameter...)}.
+ */
+public class TokenTemplate {
+
+  public static final int CACHE_SIZE = 256;
+
+  private static final Map<String, TokenTemplate> TEMPLATES =
+      new LinkedHashMap<String, TokenTemplate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenTemplate> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+
+  private final String pattern;
+  private final String[] literals;
+  private final String[] slots;
+  private final int literalsLength;
+
+  private TokenTemplate(String pattern, String[] literals, String[] slots) {
+    this.pattern = pattern;
+    this.literals = literals;
+    this.slots = slots;
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalsLength = length;
+  }
+
+  /**
+   * @param pattern the token pattern
+   * @return the compiled {@link TokenTemplate} of the pattern
+   */
+  public static TokenTemplate of(String pattern) {
+    synchronized (TEMPLATES) {
+      TokenTemplate template = TEMPLATES.get(pattern);
+      if (isNull(template)) {
+        template = compile(pattern);
+        TEMPLATES.put(pattern, template);
+      }
+      return template;
+    }
+  }
+
+  /**
+   * Fills the placeholders of a token pattern
+   *
+   * @param pattern the token pattern
+   * @param parameters the {@link TokenParameter}s
+   * @return the filled token
+   * @see #fill(TokenParameter...)
+   */
+  public static String apply(String pattern, TokenParameter... parameters) {
+    if (parameters.length == 0) {
+      return pattern;
+    }
+    return of(pattern).fill(parameters);
+  }
+
+  /**
+   * Fills the placeholders of a token pattern with all the parameters
+   *
+   * @param pattern the token pattern
+   * @param parameters the {@link TokenParameter}s
+   * @return the filled token
+   * @see #replace(TokenParameter...)
+   */
+  public static String replace(String pattern, TokenParameter... parameters) {
+    if (parameters.length == 0) {
+      return pattern;
+    }
+    return of(pattern).replace(parameters);
+  }
+
+  static TokenTemplate compile(String pattern) {
+    List<String> literals = new ArrayList<>();
+    List<String> slots = new ArrayList<>();
+    int literalStart = 0;
+    int index = 0;
+    while (index < pattern.length()) {
+      if (pattern.charAt(index) == ':') {
+        int nameEnd = index + 1;
+        while (nameEnd < pattern.length() && isNameChar(pattern.charAt(nameEnd))) {
+          nameEnd++;
+        }
+        if (nameEnd > index + 1) {
+          literals.add(pattern.substring(literalStart, index));
+          slots.add(pattern.substring(index + 1, nameEnd));
+          literalStart = nameEnd;
+          index = nameEnd;
+          continue;
+        }
+      }
+      index++;
+    }
+    literals.add(pattern.substring(literalStart));
+    return new TokenTemplate(
+        pattern, literals.toArray(new String[0]), slots.toArray(new String[0]));
+  }
+
+  private static boolean isNameChar(char c) {
+    return c != '/' && c != '?' && c != '&' && c != '#' && c != '=' && c != ':';
+  }
+
+  /** @return the template pattern */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /** @return the placeholder names in the order they appear in the pattern */
+  public List<String> getSlots() {
+    List<String> names = new ArrayList<>(slots.length);
+    for (String slot : slots) {
+      names.add(slot);
+    }
+    return names;
+  }
+
+  /**
+   * @param parameters the {@link TokenParameter}s
+   * @return the token with the placeholders filled by the {@link TokenParameter}s and the other
+   *     parameters applied to it
+   */
+  public String fill(TokenParameter... parameters) {
+    String token = slots.length == 0 ? pattern : fillSlots(parameters, true);
+    for (TokenParameter parameter : parameters) {
+      if (parameter.getClass() != TokenParameter.class) {
+        token = parameter.apply(token);
+      }
+    }
+    return token;
+  }
+
+  /**
+   * @param parameters the {@link TokenParameter}s
+   * @return the token with the placeholders filled by all the parameters whatever their type
+   */
+  public String replace(TokenParameter... parameters) {
+    return slots.length == 0 ? pattern : fillSlots(parameters, false);
+  }
+
+  private String fillSlots(TokenParameter[] parameters, boolean pathParametersOnly) {
+    StringBuilder token = new StringBuilder(literalsLength + slots.length * 8);
+    for (int i = 0; i < slots.length; i++) {
+      token.append(literals[i]);
+      TokenParameter parameter = parameterOf(slots[i], parameters, pathParametersOnly);
+      if (isNull(parameter)) {
+        token.append(':').append(slots[i]);
+      } else {
+        token.append(parameter.getValue()).append(slots[i].substring(parameter.getName().length()));
+      }
+    }
+    return token.append(literals[slots.length]).toString();
+  }
+
+  /** @return the parameter with the longest name the slot starts with, or <b>null</b> if none */
+  private static TokenParameter parameterOf(
+      String slot, TokenParameter[] parameters, boolean pathParametersOnly) {
+    TokenParameter match = null;
+    for (TokenParameter parameter : parameters) {
+      if (pathParametersOnly && parameter.getClass() != TokenParameter.class) {
+        continue;
+      }
+      String name = parameter.getName();
+      if (!name.isEmpty()
+          && slot.startsWith(name)
+          && (isNull(match) || name.length() > match.getName().length())) {
+        match = parameter;
+      }
+    }
+    return match;
+  }
+}
@@ -24,12 +24,14 @@ import org.dominokit.domino.history.*;
 /** A test implementation of {@link AppHistory} */
 public class TestDominoHistory implements AppHistory {
 
-  private Set<HistoryListener> listeners = new HashSet<>();
-  private Deque<HistoryState> forwards = new LinkedList<>();
-  private Deque<HistoryState> backwards = new LinkedList<>();
+  private final ListenerRegistry<HistoryListener> listeners =
+      new ListenerRegistry<>(new HistoryListener[0]);
+  private final NavigationStack<HistoryState> entries = new NavigationStack<>();
   private String rootPath;
 
-  private List<HistoryInterceptor> interceptors = new ArrayList<>();
+  private final InterceptorRegistry interceptors = new InterceptorRegistry();
+  private final DispatchPlanCache<HistoryListener> dispatchPlans = new DispatchPlanCache<>();
+  private final NavigationBatch<Void> batch = new NavigationBatch<>();
 
   public TestDominoHistory() {
     this("");
@@ -57,18 +59,24 @@ public class TestDominoHistory implements AppHistory {
   @Override
   public DirectState listen(
       TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete) {
-    listeners.add(new HistoryListener(listener, tokenFilter, removeOnComplete));
+    return listen(tokenFilter, listener, removeOnComplete, DEFAULT_PRIORITY);
+  }
+
+  @Override
+  public DirectState listen(
+      TokenFilter tokenFilter, StateListener listener, boolean removeOnComplete, int priority) {
+    listeners.add(new HistoryListener(listener, tokenFilter, removeOnComplete), priority);
     return new DominoDirectState(tokenFilter, currentState(), listener);
   }
 
   @Override
   public void removeListener(StateListener listener) {
-    listeners.remove(listener);
+    listeners.removeIf(historyListener -> historyListener.listener == listener);
   }
 
   private State currentState() {
-    if (forwards.isEmpty()) return new TestState(nullState());
-    return new TestState(forwards.peek());
+    if (entries.isEmpty()) return new TestState(nullState());
+    return new TestState(entries.current());
   }
 
   private HistoryState nullState() {
@@ -79,30 +87,62 @@ public class TestDominoHistory implements AppHistory {
     if (!isSameRoot(state.token)) {
       return;
     }
-    List<HistoryListener> completedListeners = new ArrayList<>();
-    listeners.stream()
-        .filter(
-            l -> {
-              NormalizedToken normalized = getNormalizedToken(rootPath, state.token, l);
-              if (isNull(normalized)) {
-                normalized = new DefaultNormalizedToken(rootPath, state.token);
-              }
-              return l.tokenFilter.filter(
-                  new TestState(new HistoryState(normalized.getToken().value(), "test")).token());
-            })
-        .forEach(
-            listener -> {
-              if (listener.isRemoveOnComplete()) {
-                completedListeners.add(listener);
-              }
-
-              NormalizedToken normalized = getNormalizedToken(rootPath, state.token, listener);
-              listener.listener.onPopState(
-                  new TestState(
-                      normalized, new HistoryState(normalized.getToken().value(), "test")));
-            });
-
-    listeners.removeAll(completedListeners);
+    List<HistoryListener> completedListeners = dispatch(state);
+    if (!completedListeners.isEmpty()) {
+      listeners.removeAll(completedListeners);
+    }
+  }
+
+  private List<HistoryListener> dispatch(HistoryState state) {
+    String token = state.token;
+    Propagation propagation = new Propagation();
+    DispatchPlan<HistoryListener> plan = dispatchPlans.get(token, listeners.getVersion());
+    if (nonNull(plan)) {
+      int called = 0;
+      while (called < plan.size() && !propagation.stopped) {
+        call(plan.getListener(called), plan.getNormalizedToken(called), state.payload, propagation);
+        called++;
+      }
+      return plan.getCompletedListeners(called);
+    }
+
+    int version = listeners.getVersion();
+    plan = new DispatchPlan<>();
+    for (HistoryListener l : listeners.snapshot()) {
+      NormalizedToken normalized = match(token, l);
+      if (nonNull(normalized)) {
+        plan.add(l, normalized, l.isRemoveOnComplete());
+        call(l, normalized, state.payload, propagation);
+        if (propagation.stopped) {
+          return plan.getCompletedListeners();
+        }
+      }
+    }
+    dispatchPlans.put(token, version, plan);
+    return plan.getCompletedListeners();
+  }
+
+  private void call(
+      HistoryListener l,
+      NormalizedToken normalized,
+      StatePayload payload,
+      Propagation propagation) {
+    String token = normalized.getToken().value();
+    HistoryState listenerState =
+        isNull(payload) ? new HistoryState(token, "test") : new HistoryState(token, payload);
+    l.listener.onPopState(new TestState(normalized, listenerState, propagation));
+  }
+
+  private NormalizedToken match(String token, HistoryListener l) {
+    NormalizedToken normalized = getNormalizedToken(rootPath, token, l);
+    if (isNull(normalized)) {
+      normalized = new DefaultNormalizedToken(rootPath, token);
+    }
+    if (l.tokenFilter.filter(
+        new TestState(new HistoryState(normalized.getToken().value(), "test")).token())) {
+      return normalized;
+    }
+    return null;
   }
 
   private boolean isSameRoot(String token) {
@@ -117,42 +157,62 @@ public class TestDominoHistory implements AppHistory {
     return listener.tokenFilter.normalizeToken(rootPath, token);
   }
 
+  /** Go back one step simulating a back button */
   @Override
   public void back() {
-    if (!backwards.isEmpty()) {
-      final HistoryState state = backwards.pop();
-      forwards.push(state);
-      inform(state);
-    }
+    go(-1);
   }
 
+  /** Go forward one step simulating a forward button */
   @Override
   public void forward() {
-    if (!forwards.isEmpty()) {
-      final HistoryState state = forwards.pop();
-      backwards.push(state);
+    go(1);
+  }
+
+  /**
+   * Moves any number of entries back or forward and calls the listeners with the final state only,
+   * moving outside the history entries does nothing. A batched or coalesced navigation still
+   * pending is applied first, so the move happens from the entry it adds.
+   *
+   * @param delta the number of entries to move, negative to go back
+   */
+  @Override
+  public void go(int delta) {
+    batch.flushNow(this::commit);
+    HistoryState state = entries.go(delta);
+    if (nonNull(state)) {
       inform(state);
     }
   }
 
+  /**
+   * The count if the current history entries
+   *
+   * @return int
+   */
   @Override
   public int getHistoryEntriesCount() {
-    return backwards.size();
+    return entries.size();
+  }
+
+  /**
+   * Sets the maximum number of history entries to keep, the oldest entries are evicted once the
+   * history holds that many entries. The history is unbounded by default.
+   *
+   * @param maxEntries the maximum number of entries
+   */
+  public void setMaxEntries(int maxEntries) {
+    entries.setMaxSize(maxEntries);
   }
 
   @Override
   public void pushState(StateToken stateToken) {
-    push(stateToken, new TokenParameter[0]);
+    navigate(stateToken, false, false, new TokenParameter[0]);
   }
 
   @Override
   public void pushState(StateToken stateToken, TokenParameter... parameters) {
-    push(stateToken, parameters);
-  }
-
-  private void pushState(
-      StateToken stateToken, Runnable onPushHandler, TokenParameter... parameters) {
-    push(stateToken, onPushHandler, parameters);
+    navigate(stateToken, false, false, parameters);
   }
 
   @Override
@@ -162,19 +222,65 @@ public class TestDominoHistory implements AppHistory {
 
   @Override
   public void fireState(StateToken stateToken, TokenParameter... parameters) {
-    pushState(stateToken, this::fireCurrentStateHistory, parameters);
+    navigate(stateToken, false, true, parameters);
   }
 
   @Override
   public void replaceState(StateToken stateToken) {
-    forwards.pop();
-    push(stateToken);
+    navigate(stateToken, true, false);
+  }
+
+  @Override
+  public void batch(Runnable navigations) {
+    if (batch.run(navigations, discarded -> {})) {
+      flushNavigations();
+    }
+  }
+
+  /**
+   * Collapse bursts of navigations into a single navigation to the final token, see {@link
+   * NavigationCoalescing}. The coalescing window or frame is simulated by the test, coalesced
+   * navigations are applied by {@link #flushNavigations()} or at the end of a {@link
+   * #batch(Runnable)}.
+   *
+   * @param coalescing {@link NavigationCoalescing}, <b>null</b> disables coalescing
+   */
+  @Override
+  public void setCoalescing(NavigationCoalescing coalescing) {
+    flushNavigations();
+    batch.setCoalescing(coalescing);
+  }
+
+  /**
+   * Applies the navigation collapsed from the coalesced navigations made so far, as if the
+   * coalescing window or frame elapsed. Does nothing inside a {@link #batch(Runnable)}.
+   */
+  public void flushNavigations() {
+    batch.flush(this::commit);
+  }
+
+  private void commit(PendingNavigation pending, List<Void> callbacks) {
+    push(
+        pending.getStateToken(),
+        !pending.isPush(),
+        pending.isFire() ? this::fireCurrentStateHistory : () -> {},
+        pending.getCoalescedTokens(),
+        pending.getParameters());
+  }
+
+  private void navigate(
+      StateToken stateToken, boolean replace, boolean fire, TokenParameter... parameters) {
+    if (batch.isDeferred()) {
+      batch.add(stateToken, replace, fire, parameters);
+    } else {
+      push(stateToken, replace, fire ? this::fireCurrentStateHistory : () -> {}, parameters);
+    }
   }
 
   @Override
   public HistoryToken currentToken() {
-    if (isNull(forwards.peek())) return new StateHistoryToken(rootPath, "");
-    return new StateHistoryToken(rootPath, forwards.peek().token);
+    if (entries.isEmpty()) return new StateHistoryToken(rootPath, "");
+    return new StateHistoryToken(rootPath, entries.current().token);
   }
 
   /** {@inheritDoc} */
@@ -186,11 +292,23 @@ public class TestDominoHistory implements AppHistory {
   @Override
   public void setRootPath(String path) {
     this.rootPath = isNull(path) ? "" : path.trim();
+    dispatchPlans.invalidate();
+    interceptors.invalidate();
+  }
+
+  /**
+   * Sets the maximum number of tokens to keep a resolved {@link DispatchPlan} for, use <b>0</b> to
+   * disable the cache.
+   *
+   * @param size int
+   */
+  public void setDispatchPlanCacheSize(int size) {
+    dispatchPlans.setMaxSize(size);
   }
 
   @Override
   public void fireCurrentStateHistory() {
-    if (!forwards.isEmpty()) inform(forwards.peek());
+    if (!entries.isEmpty()) inform(entries.current());
   }
 
   @Override
@@ -203,29 +321,41 @@ public class TestDominoHistory implements AppHistory {
   }
 
   private void push(StateToken stateToken, TokenParameter... parameters) {
-    push(stateToken, () -> {}, parameters);
-  }
-
-  private void push(StateToken stateToken, Runnable onPushHandler, TokenParameter... parameters) {
-    InterceptorChain interceptorChain =
-        new InterceptorChain(
-            interceptors,
-            () -> {
-              forwards.push(
-                  new HistoryState(
-                      replaceParameters(stateToken, Arrays.asList(parameters)),
-                      stateToken.getData()));
-              onPushHandler.run();
-            });
-    interceptorChain.intercept(new TokenEvent(stateToken));
-  }
-
-  private String replaceParameters(StateToken stateToken, List<TokenParameter> parametersList) {
-    String result = stateToken.getToken();
-    for (TokenParameter parameter : parametersList) {
-      result = result.replace(":" + parameter.getName(), parameter.getValue());
+    push(stateToken, false, () -> {}, parameters);
+  }
+
+  private void push(
+      StateToken stateToken,
+      boolean replace,
+      Runnable onPushHandler,
+      TokenParameter... parameters) {
+    push(stateToken, replace, onPushHandler, Collections.emptyList(), parameters);
+  }
+
+  private void push(
+      StateToken stateToken,
+      boolean replace,
+      Runnable onPushHandler,
+      List<StateToken> coalescedTokens,
+      TokenParameter... parameters) {
+    String token = TokenTemplate.replace(stateToken.getToken(), parameters);
+    Runnable onCompleted =
+        () -> {
+          HistoryState state = new HistoryState(token, stateToken.getPayload());
+          if (replace) {
+            entries.replace(state);
+          } else {
+            entries.push(state);
+          }
+          onPushHandler.run();
+        };
+    HistoryInterceptor[] snapshot = interceptors.select(rootPath, token);
+    if (snapshot.length == 0) {
+      onCompleted.run();
+    } else {
+      new InterceptorChain(snapshot, onCompleted)
+          .intercept(new TokenEvent("", stateToken, coalescedTokens));
     }
-    return result;
   }
 
   private class HistoryListener {
@@ -251,16 +381,22 @@ public class TestDominoHistory implements AppHistory {
     }
   }
 
+  /**
+   * @return a snapshot of the registered listeners in dispatch order, changing the returned set
+   *     does not add or remove listeners
+   */
   public Set<HistoryListener> getListeners() {
-    return listeners;
+    return new LinkedHashSet<>(listeners.asList());
   }
 
+  /** @return a snapshot of the entries up to the current one, the current entry first */
   public Deque<HistoryState> getForwards() {
-    return forwards;
+    return entries.toBackDeque();
   }
 
+  /** @return a snapshot of the entries after the current one, the nearest entry first */
   public Deque<HistoryState> getBackwards() {
-    return backwards;
+    return entries.toForwardDeque();
   }
 
   @Override
@@ -270,6 +406,13 @@ public class TestDominoHistory implements AppHistory {
     }
   }
 
+  @Override
+  public void addInterceptor(TokenFilter tokenFilter, HistoryInterceptor interceptor) {
+    if (nonNull(tokenFilter) && nonNull(interceptor)) {
+      this.interceptors.add(tokenFilter, interceptor);
+    }
+  }
+
   @Override
   public void removeInterceptor(HistoryInterceptor interceptor) {
     if (nonNull(interceptor)) {
@@ -279,7 +422,7 @@ public class TestDominoHistory implements AppHistory {
 
   @Override
   public void invoke() {
-    final HistoryState state = forwards.peek();
+    final HistoryState state = entries.current();
     if (nonNull(state)) {
       inform(state);
     }
@@ -294,14 +437,18 @@ public class TestDominoHistory implements AppHistory {
 
     private final HistoryState historyState;
     private NormalizedToken normalizedToken;
+    private final Propagation propagation;
 
     private TestState(HistoryState historyState) {
       this.historyState = historyState;
+      this.propagation = new Propagation();
     }
 
-    private TestState(NormalizedToken normalizedToken, HistoryState historyState) {
+    private TestState(
+        NormalizedToken normalizedToken, HistoryState historyState, Propagation propagation) {
       this.normalizedToken = normalizedToken;
       this.historyState = historyState;
+      this.propagation = propagation;
     }
 
     @Override
@@ -316,7 +463,12 @@ public class TestDominoHistory implements AppHistory {
 
     @Override
     public Optional<String> data() {
-      return Optional.ofNullable(historyState.data);
+      return Optional.ofNullable(historyState.getData());
+    }
+
+    @Override
+    public <T> Optional<T> payload(PayloadCodec<T> codec) {
+      return Optional.ofNullable(historyState.payload).map(payload -> payload.value(codec));
     }
 
     @Override
@@ -333,15 +485,33 @@ public class TestDominoHistory implements AppHistory {
     public void setNormalizedToken(NormalizedToken normalizedToken) {
       this.normalizedToken = normalizedToken;
     }
+
+    @Override
+    public void stopPropagation() {
+      propagation.stopped = true;
+    }
+
+    @Override
+    public boolean isPropagationStopped() {
+      return propagation.stopped;
+    }
+  }
+
+  private static class Propagation {
+    private boolean stopped;
   }
 
   public class HistoryState {
     private final String token;
-    private final String data;
+    private final StatePayload payload;
 
     public HistoryState(String token, String data) {
+      this(token, StatePayload.ofData(data));
+    }
+
+    public HistoryState(String token, StatePayload payload) {
       this.token = token;
-      this.data = data;
+      this.payload = payload;
     }
 
     public String getToken() {
@@ -349,7 +519,11 @@ public class TestDominoHistory implements AppHistory {
     }
 
     public String getData() {
-      return data;
+      return isNull(payload) ? null : payload.data();
+    }
+
+    public StatePayload getPayload() {
+      return payload;
     }
   }
 }
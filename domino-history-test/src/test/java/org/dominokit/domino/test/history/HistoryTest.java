@@ -17,6 +17,9 @@ package org.dominokit.domino.test.history;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.dominokit.domino.history.NavigationCoalescing;
 import org.dominokit.domino.history.StateToken;
 import org.dominokit.domino.history.TokenUtil;
 import org.junit.Test;
@@ -47,4 +50,33 @@ public class HistoryTest {
     assertThat(TokenUtil.unHashFragment("fragment1/#fragment2")).isEqualTo("fragment2");
     assertThat(TokenUtil.unHashFragment("#fragment1/#fragment2")).isEqualTo("fragment2");
   }
+
+  @Test
+  public void coalescedNavigationsShouldBeAppliedOnFlush() {
+    List<String> tokens = new ArrayList<>();
+    testDominoHistory.listen(state -> tokens.add(state.token().value()));
+    testDominoHistory.setCoalescing(NavigationCoalescing.frame());
+
+    testDominoHistory.fireState(StateToken.of("orders"));
+    testDominoHistory.fireState(StateToken.of("orders/1"));
+    assertThat(tokens).isEmpty();
+
+    testDominoHistory.flushNavigations();
+    assertThat(tokens).containsExactly("orders/1");
+    assertThat(testDominoHistory.getHistoryEntriesCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void backInsideABatchShouldApplyTheBatchedPushFirst() {
+    testDominoHistory.pushState(StateToken.of("orders"));
+
+    testDominoHistory.batch(
+        () -> {
+          testDominoHistory.pushState(StateToken.of("orders/1"));
+          testDominoHistory.back();
+        });
+
+    assertThat(testDominoHistory.currentToken().value()).isEqualTo("orders");
+    assertThat(testDominoHistory.getHistoryEntriesCount()).isEqualTo(2);
+  }
 }